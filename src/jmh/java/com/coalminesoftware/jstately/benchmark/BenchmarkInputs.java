@@ -0,0 +1,28 @@
+package com.coalminesoftware.jstately.benchmark;
+
+/**
+ * Cycles through a fixed set of boxed inputs so that benchmarks don't measure the allocation of
+ * the inputs themselves.
+ */
+class BenchmarkInputs {
+	private static final int INPUT_COUNT = 1024;
+
+	private final Integer[] inputs = new Integer[INPUT_COUNT];
+	private int index;
+
+	/** Cycles through the values from zero (inclusive) to the given bound (exclusive). */
+	BenchmarkInputs(int bound) {
+		this(bound, 0);
+	}
+
+	/** Cycles through the given number of values, starting at the given offset. */
+	BenchmarkInputs(int valueCount, int offset) {
+		for(int i = 0; i < INPUT_COUNT; i++) {
+			inputs[i] = offset + i % valueCount;
+		}
+	}
+
+	Integer next() {
+		return inputs[index++ & (INPUT_COUNT - 1)];
+	}
+}
@@ -0,0 +1,69 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.CompositeStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.StateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates inputs against a state nested within a number of composite states, only the outermost
+ * of which has a transition, so every composite is consulted before the transition is found.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class CompositeNestingBenchmark {
+	@Param({ "1", "8", "32" })
+	public int depth;
+
+	@Param({ "false", "true" })
+	public boolean compiled;
+
+	private State<Integer> state;
+	private StateGraph<Integer> graph;
+	private StateMachine<Integer, Integer> machine;
+	private BenchmarkInputs inputs;
+
+	@Setup
+	public void setUp() {
+		state = new StateBuilder<Integer>().build();
+		CompositeStateBuilder<Integer> compositeBuilder = new CompositeStateBuilder<Integer>().addState(state);
+		for(int level = 1; level < depth; level++) {
+			compositeBuilder = new CompositeStateBuilder<Integer>().addCompositeState(compositeBuilder.build());
+		}
+		compositeBuilder.addTransition(new TransitionBuilder<Integer>(state, input -> true).build()).build();
+
+		StateGraph<Integer> uncompiledGraph = new StateGraphBuilder<>(state).build();
+		graph = compiled ? uncompiledGraph.compile() : uncompiledGraph;
+		machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+		inputs = new BenchmarkInputs(1);
+	}
+
+	@Benchmark
+	public Transition<Integer> findFirstValidTransitionFromState() {
+		return graph.findFirstValidTransitionFromState(state, inputs.next());
+	}
+
+	@Benchmark
+	public State<Integer> evaluateInput() {
+		machine.evaluateInput(inputs.next());
+		return machine.getState();
+	}
+}
@@ -0,0 +1,63 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.StateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Evaluates inputs against a state with a number of keyed transitions, each expecting one input. */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class FlatGraphBenchmark {
+	@Param({ "1", "16", "256" })
+	public int transitionCount;
+
+	@Param({ "false", "true" })
+	public boolean compiled;
+
+	private State<Integer> state;
+	private StateGraph<Integer> graph;
+	private StateMachine<Integer, Integer> machine;
+	private BenchmarkInputs inputs;
+
+	@Setup
+	public void setUp() {
+		state = new StateBuilder<Integer>().build();
+		StateGraphBuilder<Integer> graphBuilder = new StateGraphBuilder<>(state);
+		for(int input = 0; input < transitionCount; input++) {
+			graphBuilder.addSelfTransition(TransitionBuilder.forExpectedInputs(state, input).build());
+		}
+
+		graph = compiled ? graphBuilder.build().compile() : graphBuilder.build();
+		machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+		inputs = new BenchmarkInputs(transitionCount);
+	}
+
+	@Benchmark
+	public Transition<Integer> findFirstValidTransitionFromState() {
+		return graph.findFirstValidTransitionFromState(state, inputs.next());
+	}
+
+	@Benchmark
+	public State<Integer> evaluateInput() {
+		machine.evaluateInput(inputs.next());
+		return machine.getState();
+	}
+}
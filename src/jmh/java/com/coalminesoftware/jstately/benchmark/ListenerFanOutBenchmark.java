@@ -0,0 +1,107 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.StateMachineBuilder;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates inputs on a machine with a number of event listeners, each of which is notified of
+ * every event of every transition.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class ListenerFanOutBenchmark {
+	@Param({ "0", "1", "4", "16" })
+	public int listenerCount;
+
+	private StateMachine<Integer, Integer> machine;
+	private BenchmarkInputs inputs;
+
+	@Setup
+	public void setUp() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, new TransitionBuilder<Integer>(stateB, input -> true).build())
+				.addTransition(stateB, new TransitionBuilder<Integer>(stateA, input -> true).build())
+				.build();
+
+		StateMachineBuilder<Integer, Integer> machineBuilder = StateMachineBuilder.forMatchingInputTypes(graph);
+		for(int i = 0; i < listenerCount; i++) {
+			machineBuilder.addEventListener(new CountingListener());
+		}
+
+		machine = machineBuilder.build();
+		machine.start();
+		inputs = new BenchmarkInputs(16);
+	}
+
+	@Benchmark
+	public State<Integer> evaluateInput() {
+		machine.evaluateInput(inputs.next());
+		return machine.getState();
+	}
+
+	/** Counts events so that notifying the listener isn't optimized away. */
+	private static class CountingListener implements StateMachineEventListener<Integer> {
+		private long eventCount;
+
+		@Override
+		public void beforeEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void afterEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void beforeStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void beforeStateExited(State<Integer> state, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void afterStateExited(State<Integer> state, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void beforeTransition(Transition<Integer> transition, Integer input, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+
+		@Override
+		public void afterTransition(Transition<Integer> transition, Integer input, StateMachine<?, Integer> machine) {
+			eventCount++;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.MachineArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Evaluates a column of inputs across an array of machines, one input per machine. */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class MachineArrayBenchmark {
+	@Param({ "10000", "1000000" })
+	public int machineCount;
+
+	private MachineArray<Integer> machines;
+	private Integer[] inputs;
+
+	@Setup
+	public void setUp() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateA, 1, 2).build())
+				.build();
+
+		machines = new MachineArray<>(graph, machineCount);
+		inputs = new Integer[machineCount];
+		for(int machine = 0; machine < machineCount; machine++) {
+			inputs[machine] = machine % 3;
+		}
+	}
+
+	@Benchmark
+	public int evaluateInputs() {
+		return machines.evaluateInputs(inputs);
+	}
+}
@@ -0,0 +1,99 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.StateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates inputs on a machine nested within a number of submachine states, so each input is
+ * delegated through every enclosing machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class SubmachineNestingBenchmark {
+	private static final Integer RESULT = -1;
+
+	@Param({ "1", "8", "32" })
+	public int depth;
+
+	@Param({ "false", "true" })
+	public boolean compiled;
+
+	private StateMachine<Integer, Integer> delegatingMachine;
+	private StateMachine<Integer, Integer> completingMachine;
+	private BenchmarkInputs inputs;
+
+	@Setup
+	public void setUp() {
+		State<Integer> innermostState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> delegatingGraph = new StateGraphBuilder<>(innermostState)
+				.addSelfTransition(new TransitionBuilder<Integer>(innermostState, input -> true).build())
+				.build();
+		delegatingMachine = StateMachineBuilder.forMatchingInputTypes(nest(delegatingGraph)).build();
+		delegatingMachine.start();
+
+		// The innermost machine finishes on every input, so each input exits and re-enters every
+		// submachine state.
+		State<Integer> startState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> completingGraph = new StateGraphBuilder<>(startState)
+				.addTransition(startState, new TransitionBuilder<Integer>(new FinalStateBuilder<>(RESULT).build(), input -> true).build())
+				.build();
+		completingMachine = StateMachineBuilder.forMatchingInputTypes(nest(completingGraph)).build();
+		completingMachine.start();
+
+		inputs = new BenchmarkInputs(1);
+	}
+
+	/**
+	 * Wraps the graph in the configured number of submachine states. Each one finishes when its
+	 * submachine does, leaving only the outermost, which restarts its submachine instead.
+	 */
+	private StateGraph<Integer> nest(StateGraph<Integer> graph) {
+		for(int level = 0; level < depth; level++) {
+			SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(maybeCompile(graph)).build();
+			State<Integer> head = level == depth - 1 ?
+					submachineState :
+					new FinalStateBuilder<>(RESULT).build();
+			graph = new StateGraphBuilder<>(submachineState)
+					.addTransition(submachineState, TransitionBuilder.forExpectedInputs(head, RESULT).build())
+					.build();
+		}
+
+		return maybeCompile(graph);
+	}
+
+	private StateGraph<Integer> maybeCompile(StateGraph<Integer> graph) {
+		return compiled ? graph.compile() : graph;
+	}
+
+	@Benchmark
+	public State<Integer> evaluateDelegatedInput() {
+		delegatingMachine.evaluateInput(inputs.next());
+		return delegatingMachine.getState();
+	}
+
+	@Benchmark
+	public State<Integer> evaluateInputCompletingSubmachines() {
+		completingMachine.evaluateInput(inputs.next());
+		return completingMachine.getState();
+	}
+}
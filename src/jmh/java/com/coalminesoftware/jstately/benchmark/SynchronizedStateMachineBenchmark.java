@@ -0,0 +1,70 @@
+package com.coalminesoftware.jstately.benchmark;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.SynchronizedStateMachineBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Evaluates inputs on a single synchronized machine shared by a number of threads. */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class SynchronizedStateMachineBenchmark {
+	private StateMachine<Integer, Integer> machine;
+
+	@Setup
+	public void setUp() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 0).build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateA, 1).build())
+				.build()
+				.compile();
+
+		machine = SynchronizedStateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean evaluateInputWithOneThread(ThreadInputs inputs) {
+		return machine.evaluateInput(inputs.next());
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean evaluateInputWithFourThreads(ThreadInputs inputs) {
+		return machine.evaluateInput(inputs.next());
+	}
+
+	@Benchmark
+	@Threads(16)
+	public boolean evaluateInputWithSixteenThreads(ThreadInputs inputs) {
+		return machine.evaluateInput(inputs.next());
+	}
+
+	/** Each thread cycles through its own inputs. */
+	@org.openjdk.jmh.annotations.State(Scope.Thread)
+	public static class ThreadInputs {
+		private final BenchmarkInputs inputs = new BenchmarkInputs(2);
+
+		Integer next() {
+			return inputs.next();
+		}
+	}
+}
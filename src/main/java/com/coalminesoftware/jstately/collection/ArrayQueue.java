@@ -0,0 +1,60 @@
+package com.coalminesoftware.jstately.collection;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue backed by a circular array that grows as needed, so adding a value only allocates when the
+ * array is full. Unlike {@link java.util.ArrayDeque}, null values are permitted. Instances are not
+ * safe for use by multiple threads.
+ */
+public class ArrayQueue<T> implements SimpleQueue<T> {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int head;
+	private int size;
+
+	@Override
+	public void add(@Nullable T value) {
+		if(size == values.length) {
+			Object[] newValues = new Object[values.length * 2];
+			int headLength = values.length - head;
+			System.arraycopy(values, head, newValues, 0, headLength);
+			System.arraycopy(values, 0, newValues, headLength, head);
+			values = newValues;
+			head = 0;
+		}
+
+		values[(head + size) % values.length] = value;
+		size++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public T remove() {
+		if(size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		T value = (T) values[head];
+		values[head] = null;
+		head = (head + 1) % values.length;
+		size--;
+
+		return value;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		head = 0;
+		size = 0;
+	}
+}
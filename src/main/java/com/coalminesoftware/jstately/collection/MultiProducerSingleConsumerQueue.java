@@ -0,0 +1,148 @@
+package com.coalminesoftware.jstately.collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unbounded, lock-free queue that any number of threads can add values to but only one thread at a
+ * time may remove values from. Values are stored in linked, fixed-size arrays ("chunks") so adding
+ * a value only allocates when a new chunk is needed. Null values are permitted.
+ * <p>
+ * A producer claims a position in the queue before storing its value there, so a value is not
+ * visible to the consumer until the values of every earlier position have been stored.
+ */
+public class MultiProducerSingleConsumerQueue<T> implements SimpleQueue<T> {
+	private static final int CHUNK_SIZE = 64;
+	private static final Object NULL_VALUE = new Object();
+
+	private final AtomicLong producerIndex = new AtomicLong();
+	private final AtomicReference<Chunk> producerChunk;
+
+	// Only accessed by the consumer
+	private Chunk consumerChunk;
+	private long consumerIndex;
+
+	public MultiProducerSingleConsumerQueue() {
+		consumerChunk = new Chunk(0, null);
+		producerChunk = new AtomicReference<>(consumerChunk);
+	}
+
+	/** Adds a value to the end of the queue. Safe for use by any thread. */
+	@Override
+	public void add(@Nullable T value) {
+		long index = producerIndex.getAndIncrement();
+		Chunk chunk = findChunk(index);
+		chunk.values.set((int) (index - chunk.firstIndex), value == null ? NULL_VALUE : value);
+	}
+
+	/**
+	 * Adds the given values to the end of the queue, in iteration order, without values added by
+	 * other threads in between. Safe for use by any thread.
+	 */
+	@Override
+	public void addAll(@Nonnull Collection<? extends T> values) {
+		// Copy the values before claiming positions for them, as every claimed position must be
+		// filled, even if the collection changes or fails to iterate.
+		Object[] valueArray = values.toArray();
+
+		long index = producerIndex.getAndAdd(valueArray.length);
+		Chunk chunk = findChunk(index);
+		for(Object value : valueArray) {
+			if(index == chunk.firstIndex + CHUNK_SIZE) {
+				chunk = findChunk(index);
+			}
+			chunk.values.set((int) (index - chunk.firstIndex), value == null ? NULL_VALUE : value);
+			index++;
+		}
+	}
+
+	/** Finds or creates the chunk that holds the value at the given index. */
+	private Chunk findChunk(long index) {
+		Chunk chunk = producerChunk.get();
+
+		// Other producers with later indexes may have moved producerChunk past this index's chunk.
+		while(index < chunk.firstIndex) {
+			chunk = chunk.previous;
+		}
+
+		while(index >= chunk.firstIndex + CHUNK_SIZE) {
+			Chunk next = chunk.next.get();
+			if(next == null) {
+				Chunk newChunk = new Chunk(chunk.firstIndex + CHUNK_SIZE, chunk);
+				next = chunk.next.compareAndSet(null, newChunk) ?
+						newChunk :
+						chunk.next.get();
+			}
+			producerChunk.compareAndSet(chunk, next);
+			chunk = next;
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * @return Whether no value is available to {@link #remove()}. Must only be called by the
+	 * consumer.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return peekValue() == null;
+	}
+
+	/**
+	 * Removes and returns the value at the front of the queue. Must only be called by the consumer.
+	 *
+	 * @throws NoSuchElementException Thrown if no value is available.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public T remove() {
+		Object value = peekValue();
+		if(value == null) {
+			throw new NoSuchElementException();
+		}
+
+		consumerChunk.values.lazySet((int) (consumerIndex - consumerChunk.firstIndex), null);
+		consumerIndex++;
+
+		return value == NULL_VALUE ? null : (T) value;
+	}
+
+	/**
+	 * @return The masked value at the front of the queue, or null if it hasn't been stored, moving
+	 * on to the next chunk if the current one has been consumed.
+	 */
+	@Nullable
+	private Object peekValue() {
+		if(consumerIndex == consumerChunk.firstIndex + CHUNK_SIZE) {
+			Chunk next = consumerChunk.next.get();
+			if(next == null) {
+				return null;
+			}
+
+			// Every value of the consumed chunk has been stored, so no producer will walk back to it.
+			next.previous = null;
+			consumerChunk = next;
+		}
+
+		return consumerChunk.values.get((int) (consumerIndex - consumerChunk.firstIndex));
+	}
+
+	private static class Chunk {
+		private final long firstIndex;
+		private final AtomicReferenceArray<Object> values = new AtomicReferenceArray<>(CHUNK_SIZE);
+		private final AtomicReference<Chunk> next = new AtomicReference<>();
+		private volatile Chunk previous;
+
+		private Chunk(long firstIndex, @Nullable Chunk previous) {
+			this.firstIndex = firstIndex;
+			this.previous = previous;
+		}
+	}
+}
@@ -11,7 +11,7 @@ import java.util.*;
  * @param <V> Value type
  */
 public class Multimap<K,V> {
-	private final Map<K, Set<V>> valuesByKey = new HashMap<>();
+	private final Map<K, Set<V>> valuesByKey = new LinkedHashMap<>();
 
 	public boolean put(@Nullable K key, @Nullable V value) {
 		return valuesByKey.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(value);
@@ -24,6 +24,12 @@ public class Multimap<K,V> {
 				Collections.emptySet();
 	}
 
+	/** @return The map's keys, in the order they were first added. */
+	@Nonnull
+	public Set<K> keySet() {
+		return Collections.unmodifiableSet(valuesByKey.keySet());
+	}
+
 	@Nonnull
 	public List<V> values() {
 		List<V> values = new ArrayList<>();
@@ -0,0 +1,28 @@
+package com.coalminesoftware.jstately.collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/** Minimal first-in-first-out queue that permits null values. */
+public interface SimpleQueue<T> {
+	void add(@Nullable T value);
+
+	/** Adds the given values to the end of the queue, in iteration order. */
+	default void addAll(@Nonnull Collection<? extends T> values) {
+		for(T value : values) {
+			add(value);
+		}
+	}
+
+	boolean isEmpty();
+
+	/**
+	 * Removes and returns the value at the front of the queue.
+	 *
+	 * @throws NoSuchElementException Thrown if the queue is empty.
+	 */
+	@Nullable
+	T remove();
+}
@@ -0,0 +1,274 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.collection.Multimap;
+import com.coalminesoftware.jstately.graph.state.CompositeState;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import static com.coalminesoftware.jstately.collection.CollectionUtil.unmodifiableCopy;
+
+/**
+ * A {@link StateGraph} whose transition lookups have been flattened ahead of time. For each state
+ * in the graph, the transitions that {@link StateGraph#findFirstValidTransitionFromState(State, Object)}
+ * would evaluate (the state's own transitions, followed by those of its enclosing
+ * {@link CompositeState}s and then the graph's global transitions) are stored in a single table,
+ * making a lookup allocation-free. Transitions built from expected inputs are additionally indexed
+ * by input, so they are found without testing each one's predicate.
+ * <p>
+ * The composite states exited and entered when following each of those transitions are also
+ * precomputed, so a machine traversing the graph can walk prebuilt lists rather than comparing
+ * the ancestry of the two states on every transition.
+ * <p>
+ * Each state the graph knows of is assigned a dense id, from zero up to {@link #getStateCount()},
+ * in the order states are discovered from the start state (whose id is always zero). Ids are
+ * stable as long as the graph is built the same way, so they can stand in for states wherever
+ * holding the states themselves would be too costly.
+ * <p>
+ * Instances are immutable and can be shared between machines. See {@link StateGraph#compile()}.
+ */
+public class CompiledStateGraph<TransitionInput> extends StateGraph<TransitionInput> {
+	/** The position returned by {@link #findFirstValidTransitionPosition(int, Object)} when no transition is valid. */
+	public static final int NO_VALID_TRANSITION = -1;
+
+	private final Map<State<TransitionInput>, TransitionTable<TransitionInput>> tablesByState = new IdentityHashMap<>();
+	private final Map<State<TransitionInput>, Integer> idsByState = new IdentityHashMap<>();
+	private final List<State<TransitionInput>> statesById;
+	private final TransitionTable<TransitionInput>[] tablesById;
+	private final Map<State<TransitionInput>, Map<State<TransitionInput>, CompositePaths<TransitionInput>>> compositePathsByTail =
+			new IdentityHashMap<>();
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	CompiledStateGraph(@Nonnull State<TransitionInput> startState,
+			@Nonnull Multimap<State<TransitionInput>, Transition<TransitionInput>> transitionsByTail,
+			@Nullable StartListener startListener) {
+		super(startState, transitionsByTail, startListener);
+
+		Set<Transition<TransitionInput>> globalTransitions =
+				transitionsByTail.get((State<TransitionInput>) GLOBAL_TRANSITION_KEY);
+
+		statesById = unmodifiableCopy(collectStates(startState, transitionsByTail));
+		for(State<TransitionInput> state : statesById) {
+			idsByState.put(state, idsByState.size());
+		}
+
+		tablesById = new TransitionTable[statesById.size()];
+		for(int stateId = 0; stateId < statesById.size(); stateId++) {
+			State<TransitionInput> state = statesById.get(stateId);
+			List<Transition<TransitionInput>> transitions = new ArrayList<>(transitionsByTail.get(state));
+			for(CompositeState<TransitionInput> composite : state.getComposites()) {
+				while(composite != null) {
+					transitions.addAll(composite.getTransitions());
+					composite = composite.getParent();
+				}
+			}
+			transitions.addAll(globalTransitions);
+
+			TransitionTable<TransitionInput> table = new TransitionTable<>(transitions, idsByState);
+			tablesById[stateId] = table;
+			tablesByState.put(state, table);
+
+			Map<State<TransitionInput>, CompositePaths<TransitionInput>> compositePathsByHead = new IdentityHashMap<>();
+			for(Transition<TransitionInput> transition : transitions) {
+				compositePathsByHead.computeIfAbsent(transition.getHead(), head -> new CompositePaths<>(
+						super.getCompositesExited(state, head),
+						super.getCompositesEntered(state, head)));
+			}
+			compositePathsByTail.put(state, compositePathsByHead);
+		}
+	}
+
+	/**
+	 * Collects every state reachable in the graph: the start state, the tails of its transitions
+	 * and the heads of any transition that can be followed from those states. States are returned
+	 * in the order they were discovered.
+	 */
+	@SuppressWarnings("unchecked")
+	@Nonnull
+	private static <TransitionInput> List<State<TransitionInput>> collectStates(
+			@Nonnull State<TransitionInput> startState,
+			@Nonnull Multimap<State<TransitionInput>, Transition<TransitionInput>> transitionsByTail) {
+		Set<State<TransitionInput>> visitedStates = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<State<TransitionInput>> orderedStates = new ArrayList<>();
+		Queue<State<TransitionInput>> pendingStates = new ArrayDeque<>();
+
+		pendingStates.add(startState);
+		for(State<TransitionInput> tail : transitionsByTail.keySet()) {
+			if(tail != GLOBAL_TRANSITION_KEY) {
+				pendingStates.add(tail);
+			}
+		}
+		for(Transition<TransitionInput> transition : transitionsByTail.get((State<TransitionInput>) GLOBAL_TRANSITION_KEY)) {
+			pendingStates.add(transition.getHead());
+		}
+
+		while(!pendingStates.isEmpty()) {
+			State<TransitionInput> state = pendingStates.remove();
+			if(!visitedStates.add(state)) {
+				continue;
+			}
+			orderedStates.add(state);
+
+			for(Transition<TransitionInput> transition : transitionsByTail.get(state)) {
+				pendingStates.add(transition.getHead());
+			}
+			for(CompositeState<TransitionInput> composite : state.getComposites()) {
+				while(composite != null) {
+					for(Transition<TransitionInput> transition : composite.getTransitions()) {
+						pendingStates.add(transition.getHead());
+					}
+					composite = composite.getParent();
+				}
+			}
+		}
+
+		return orderedStates;
+	}
+
+	@Override
+	@Nullable
+	public Transition<TransitionInput> findFirstValidTransitionFromState(
+			@Nonnull State<TransitionInput> state,
+			@Nullable TransitionInput input) {
+		TransitionTable<TransitionInput> table = tablesByState.get(state);
+		if(table == null) {
+			// The state wasn't reachable when the graph was compiled.
+			return super.findFirstValidTransitionFromState(state, input);
+		}
+
+		return table.findFirstValidTransition(input);
+	}
+
+	/**
+	 * Equivalent to {@link #findFirstValidTransitionFromState(State, Object)}, identifying the state
+	 * by its id.
+	 *
+	 * @throws IndexOutOfBoundsException Thrown if the id isn't that of a state in the graph.
+	 */
+	@Nullable
+	public Transition<TransitionInput> findFirstValidTransitionFromState(int stateId, @Nullable TransitionInput input) {
+		return tablesById[stateId].findFirstValidTransition(input);
+	}
+
+	/**
+	 * Equivalent to {@link #findFirstValidTransitionFromState(int, Object)}, but identifies the
+	 * transition by its position among those followed from the state, so its head's id can be read
+	 * with {@link #getHeadId(int, int)} rather than looked up.
+	 *
+	 * @return The transition's position, or {@link #NO_VALID_TRANSITION} if no valid transition was found.
+	 * @throws IndexOutOfBoundsException Thrown if the id isn't that of a state in the graph.
+	 */
+	public int findFirstValidTransitionPosition(int stateId, @Nullable TransitionInput input) {
+		return tablesById[stateId].findFirstValidPosition(input);
+	}
+
+	/**
+	 * @return The transition at the given position among those followed from the state with the
+	 * given id.
+	 * @see #findFirstValidTransitionPosition(int, Object)
+	 */
+	@Nonnull
+	public Transition<TransitionInput> getTransition(int stateId, int position) {
+		return tablesById[stateId].getTransition(position);
+	}
+
+	/**
+	 * @return The id of the head of the transition at the given position among those followed from
+	 * the state with the given id.
+	 * @see #findFirstValidTransitionPosition(int, Object)
+	 */
+	public int getHeadId(int stateId, int position) {
+		return tablesById[stateId].getHeadId(position);
+	}
+
+	/**
+	 * @return Whether every transition followed from the state with the given id is pure, in which
+	 * case a lookup from the state always finds the same transition for the same input.
+	 * @see Transition#isPure()
+	 */
+	public boolean isPure(int stateId) {
+		return tablesById[stateId].isPure();
+	}
+
+	/** @return The number of states in the graph, each of which has an id below this number. */
+	public int getStateCount() {
+		return statesById.size();
+	}
+
+	/**
+	 * @return The id of the given state.
+	 * @throws IllegalArgumentException Thrown if the state isn't in the graph.
+	 */
+	public int getStateId(@Nonnull State<TransitionInput> state) {
+		Integer id = idsByState.get(state);
+		if(id == null) {
+			throw new IllegalArgumentException("State (" + state + ") is not in the graph");
+		}
+
+		return id;
+	}
+
+	/**
+	 * @return The state with the given id.
+	 * @throws IndexOutOfBoundsException Thrown if the id isn't that of a state in the graph.
+	 */
+	@Nonnull
+	public State<TransitionInput> getState(int stateId) {
+		return statesById.get(stateId);
+	}
+
+	@Override
+	@Nonnull
+	public List<CompositeState<TransitionInput>> getCompositesEntered(
+			@Nullable State<TransitionInput> oldState,
+			@Nonnull State<TransitionInput> newState) {
+		CompositePaths<TransitionInput> paths = findCompositePaths(oldState, newState);
+		return paths == null ?
+				super.getCompositesEntered(oldState, newState) :
+				paths.entered;
+	}
+
+	@Override
+	@Nonnull
+	public List<CompositeState<TransitionInput>> getCompositesExited(
+			@Nonnull State<TransitionInput> oldState,
+			@Nullable State<TransitionInput> newState) {
+		CompositePaths<TransitionInput> paths = findCompositePaths(oldState, newState);
+		return paths == null ?
+				super.getCompositesExited(oldState, newState) :
+				paths.exited;
+	}
+
+	/** @return The precomputed paths between the given states, or null if none were computed. */
+	@Nullable
+	private CompositePaths<TransitionInput> findCompositePaths(
+			@Nullable State<TransitionInput> oldState,
+			@Nullable State<TransitionInput> newState) {
+		Map<State<TransitionInput>, CompositePaths<TransitionInput>> compositePathsByHead = compositePathsByTail.get(oldState);
+		return compositePathsByHead == null ?
+				null :
+				compositePathsByHead.get(newState);
+	}
+
+	/** The composite states exited and entered, in order, when moving from one state to another. */
+	private static class CompositePaths<TransitionInput> {
+		private final List<CompositeState<TransitionInput>> exited;
+		private final List<CompositeState<TransitionInput>> entered;
+
+		private CompositePaths(@Nonnull List<CompositeState<TransitionInput>> exited,
+				@Nonnull List<CompositeState<TransitionInput>> entered) {
+			this.exited = unmodifiableCopy(exited);
+			this.entered = unmodifiableCopy(entered);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.collection.Multimap;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.IntTransition;
+import com.coalminesoftware.jstately.machine.IntStateMachine;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Counterpart of {@link StateGraph} whose transitions evaluate primitive int inputs, for workloads
+ * like tokenizing text where boxing each input would be prohibitively expensive. Lookups are
+ * resolved from per-state tables built when the graph is built.
+ * <p>
+ * Primitive graphs support states, transitions and global transitions but not composite states or
+ * submachine states.
+ *
+ * @see IntStateMachine
+ */
+public class IntStateGraph {
+	private final State<Integer> startState;
+	private final Map<State<Integer>, IntTransitionTable> tablesByState = new IdentityHashMap<>();
+	private final IntTransitionTable globalTable;
+	private final StateGraph.StartListener startListener;
+
+	IntStateGraph(@Nonnull State<Integer> startState,
+			@Nonnull Multimap<State<Integer>, IntTransition> transitionsByTail,
+			@Nullable StateGraph.StartListener startListener) {
+		this.startState = requireNonNull(startState);
+		this.startListener = startListener;
+
+		List<IntTransition> globalTransitions = new ArrayList<>(transitionsByTail.get(null));
+		globalTable = new IntTransitionTable(globalTransitions);
+
+		for(State<Integer> tail : requireNonNull(transitionsByTail).keySet()) {
+			if(tail != null) {
+				List<IntTransition> transitions = new ArrayList<>(transitionsByTail.get(tail));
+				transitions.addAll(globalTransitions);
+				tablesByState.put(tail, new IntTransitionTable(transitions));
+			}
+		}
+	}
+
+	@Nullable
+	public IntTransition findFirstValidTransitionFromState(@Nonnull State<Integer> state, int input) {
+		IntTransitionTable table = tablesByState.get(state);
+		return table == null ?
+				globalTable.findFirstValidTransition(input) :
+				table.findFirstValidTransition(input);
+	}
+
+	public void notifyStartListener() {
+		if (startListener != null) {
+			startListener.onStart();
+		}
+	}
+
+	@Nonnull
+	public State<Integer> getStartState() {
+		return startState;
+	}
+}
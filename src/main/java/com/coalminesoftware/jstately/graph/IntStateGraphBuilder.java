@@ -0,0 +1,78 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.collection.Multimap;
+import com.coalminesoftware.jstately.graph.state.FinalState;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.transition.IntTransition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+public class IntStateGraphBuilder {
+	private final State<Integer> startState;
+	private final Multimap<State<Integer>, IntTransition> transitionsByTail = new Multimap<>();
+	private StateGraph.StartListener startListener;
+
+	public IntStateGraphBuilder(@Nonnull State<Integer> startState) {
+		if(startState instanceof FinalState) {
+			throw new IllegalArgumentException("Start state cannot be an instance of FinalState");
+		}
+		this.startState = requireSupportedState(requireNonNull(startState, "Start state is required"));
+	}
+
+	@Nonnull
+	public IntStateGraphBuilder addTransition(@Nonnull State<Integer> transitionTail, @Nonnull IntTransition transition) {
+		transitionsByTail.put(
+				requireSupportedState(requireNonNull(transitionTail, "Tail state is required")),
+				requireSupportedHead(requireNonNull(transition, "Transition is required")));
+
+		return this;
+	}
+
+	@Nonnull
+	public IntStateGraphBuilder addSelfTransition(@Nonnull IntTransition transition) {
+		requireNonNull(transition, "Transition is required");
+		return addTransition(transition.getHead(), transition);
+	}
+
+	/**
+	 * Adds a transitions that will be evaluated if no valid transition is found for the given
+	 * input from the current state.
+	 */
+	@Nonnull
+	public IntStateGraphBuilder addGlobalTransition(@Nonnull IntTransition transition) {
+		transitionsByTail.put(null, requireSupportedHead(requireNonNull(transition, "Transition is required")));
+		return this;
+	}
+
+	@Nonnull
+	public IntStateGraphBuilder setStartListener(@Nullable StateGraph.StartListener listener) {
+		startListener = listener;
+		return this;
+	}
+
+	@Nonnull
+	private static IntTransition requireSupportedHead(@Nonnull IntTransition transition) {
+		requireSupportedState(transition.getHead());
+		return transition;
+	}
+
+	@Nonnull
+	private static State<Integer> requireSupportedState(@Nonnull State<Integer> state) {
+		if(state instanceof SubmachineState) {
+			throw new IllegalArgumentException("Primitive graphs do not support submachine states");
+		}
+		if(!state.getComposites().isEmpty()) {
+			throw new IllegalArgumentException("Primitive graphs do not support states in composite states");
+		}
+		return state;
+	}
+
+	@Nonnull
+	public IntStateGraph build() {
+		return new IntStateGraph(startState, transitionsByTail, startListener);
+	}
+}
@@ -0,0 +1,116 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.graph.transition.IntTransition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The transitions that can be followed from a single state of an {@link IntStateGraph}, in the
+ * order they are evaluated.
+ * <p>
+ * Transitions built from expected inputs or ranges are indexed by a table of non-overlapping
+ * input intervals, each mapped to the first keyed transition that accepts it, so only the
+ * predicates of the remaining transitions that precede that transition need to be tested. Inputs
+ * below {@link #DIRECT_INPUT_LIMIT}, such as ASCII characters, are looked up in a directly indexed
+ * array instead.
+ */
+class IntTransitionTable {
+	private static final int NO_POSITION = -1;
+	private static final int DIRECT_INPUT_LIMIT = 128;
+
+	private final IntTransition[] transitions;
+	private final int[] predicatePositions;
+	private final int[] intervalStarts;
+	private final int[] intervalPositions;
+	private final int[] keyedPositionsByInput = new int[DIRECT_INPUT_LIMIT];
+
+	IntTransitionTable(@Nonnull List<IntTransition> transitions) {
+		this.transitions = transitions.toArray(new IntTransition[0]);
+
+		int predicateCount = 0;
+		int[] predicatePositions = new int[this.transitions.length];
+		int[][] rangesByPosition = new int[this.transitions.length][];
+		TreeSet<Long> intervalBounds = new TreeSet<>();
+		for(int position = 0; position < this.transitions.length; position++) {
+			int[] ranges = this.transitions[position].getExpectedRanges();
+			if(ranges == null) {
+				predicatePositions[predicateCount++] = position;
+			} else {
+				rangesByPosition[position] = ranges;
+				for(int i = 0; i < ranges.length; i += 2) {
+					intervalBounds.add((long) ranges[i]);
+					intervalBounds.add((long) ranges[i + 1] + 1);
+				}
+			}
+		}
+		this.predicatePositions = Arrays.copyOf(predicatePositions, predicateCount);
+
+		// Every interval starts at a bound and ends just before the next one. The bound following
+		// Integer.MAX_VALUE can't start an interval of ints, so it's skipped.
+		intervalBounds.remove((long) Integer.MAX_VALUE + 1);
+		intervalStarts = new int[intervalBounds.size()];
+		intervalPositions = new int[intervalBounds.size()];
+		int intervalIndex = 0;
+		for(long bound : intervalBounds) {
+			intervalStarts[intervalIndex] = (int) bound;
+			intervalPositions[intervalIndex] = findFirstKeyedPosition(rangesByPosition, (int) bound);
+			intervalIndex++;
+		}
+
+		for(int input = 0; input < DIRECT_INPUT_LIMIT; input++) {
+			keyedPositionsByInput[input] = searchIntervals(input);
+		}
+	}
+
+	private static int findFirstKeyedPosition(@Nonnull int[][] rangesByPosition, int input) {
+		for(int position = 0; position < rangesByPosition.length; position++) {
+			int[] ranges = rangesByPosition[position];
+			if(ranges != null) {
+				for(int i = 0; i < ranges.length; i += 2) {
+					if(ranges[i] <= input && input <= ranges[i + 1]) {
+						return position;
+					}
+				}
+			}
+		}
+
+		return NO_POSITION;
+	}
+
+	@Nullable
+	IntTransition findFirstValidTransition(int input) {
+		int keyedPosition = input >= 0 && input < DIRECT_INPUT_LIMIT ?
+				keyedPositionsByInput[input] :
+				searchIntervals(input);
+		int limit = keyedPosition == NO_POSITION ? transitions.length : keyedPosition;
+
+		for(int position : predicatePositions) {
+			if(position >= limit) {
+				break;
+			}
+			if(transitions[position].isValid(input)) {
+				return transitions[position];
+			}
+		}
+
+		return keyedPosition == NO_POSITION ?
+				null :
+				transitions[keyedPosition];
+	}
+
+	private int searchIntervals(int input) {
+		int index = Arrays.binarySearch(intervalStarts, input);
+		if(index < 0) {
+			// Use the interval starting before the input's insertion point, if there is one.
+			index = -index - 2;
+		}
+
+		return index < 0 ?
+				NO_POSITION :
+				intervalPositions[index];
+	}
+}
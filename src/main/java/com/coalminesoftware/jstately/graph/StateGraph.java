@@ -8,6 +8,9 @@ import com.coalminesoftware.jstately.machine.StateMachine;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static java.util.Objects.requireNonNull;
 
@@ -62,6 +65,79 @@ public class StateGraph<TransitionInput> {
 		return null;
 	}
 
+	/**
+	 * Determines which composite states are being entered when a machine enters newState from
+	 * oldState.
+	 *
+	 * @param oldState The state being left, or null if no state is being left.
+	 * @return A list of CompositeStates being entered in order they are being entered (from the
+	 * root CompositeState to nested ones.)
+	 */
+	@Nonnull
+	public List<CompositeState<TransitionInput>> getCompositesEntered(
+			@Nullable State<TransitionInput> oldState,
+			@Nonnull State<TransitionInput> newState) {
+		List<CompositeState<TransitionInput>> newStateComposites = collectCompositeStates(newState);
+		if(oldState != null) {
+			newStateComposites.removeAll(collectCompositeStates(oldState));
+		}
+
+		return newStateComposites;
+	}
+
+	/**
+	 * Determines which composite states are being exited when a machine leaves oldState for
+	 * newState.
+	 *
+	 * @param newState The state being entered, or null if no state is being entered.
+	 * @return A list of CompositeStates being exited in order they are being exited (from the
+	 * State's immediate CompositeState to its root CompositeState.)
+	 */
+	@Nonnull
+	public List<CompositeState<TransitionInput>> getCompositesExited(
+			@Nonnull State<TransitionInput> oldState,
+			@Nullable State<TransitionInput> newState) {
+		List<CompositeState<TransitionInput>> oldStateComposites = collectCompositeStates(oldState);
+		if(newState != null) {
+			oldStateComposites.removeAll(collectCompositeStates(newState));
+		}
+
+		Collections.reverse(oldStateComposites);
+		return oldStateComposites;
+	}
+
+	/**
+	 * @return All of the CompositeStates that enclose the given State. The values are returned in
+	 * the order returned by {@link State#getComposites()}, with nested composites ordered from the
+	 * State's outer-most composite to its immediate parent composite.
+	 */
+	@Nonnull
+	private static <TransitionInput> List<CompositeState<TransitionInput>> collectCompositeStates(
+			@Nonnull State<TransitionInput> state) {
+		List<CompositeState<TransitionInput>> composites = new ArrayList<>();
+
+		for(CompositeState<TransitionInput> composite : state.getComposites()) {
+			int insertionPosition = composites.size();
+			while(composite != null) {
+				composites.add(insertionPosition,composite);
+				composite = composite.getParent();
+			}
+		}
+
+		return composites;
+	}
+
+	/**
+	 * Creates a {@link CompiledStateGraph} with the same start state, transitions and start
+	 * listener as this graph, whose lookups are resolved from precomputed per-state tables.
+	 * Because the tables capture {@link CompositeState} membership at the time of the call, a
+	 * graph should be compiled after all of the composites containing its states have been built.
+	 */
+	@Nonnull
+	public CompiledStateGraph<TransitionInput> compile() {
+		return new CompiledStateGraph<>(startState, transitionsByTail, startListener);
+	}
+
 	public void notifyStartListener() {
 		if (startListener != null) {
 			startListener.onStart();
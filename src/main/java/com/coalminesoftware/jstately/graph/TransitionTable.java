@@ -0,0 +1,153 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The transitions that can be followed from a single state of a {@link CompiledStateGraph}, in
+ * the order they are evaluated.
+ * <p>
+ * Transitions built from expected inputs (see {@link Transition#getExpectedInputs()}) are indexed
+ * by input, so only the predicates of the remaining transitions that precede the input's first
+ * keyed transition need to be tested. When every expected input is a constant of the same enum,
+ * the index is an array indexed by ordinal rather than a hash map.
+ * <p>
+ * Each transition is identified by its position in the table, for which the id of its head is
+ * also stored, so callers that track states by id needn't look the head's id up.
+ */
+class TransitionTable<TransitionInput> {
+	private static final int NO_POSITION = CompiledStateGraph.NO_VALID_TRANSITION;
+
+	private final Transition<TransitionInput>[] transitions;
+	private final int[] headIds;
+	private final Map<TransitionInput, Integer> keyedPositionsByInput = new HashMap<>();
+	private final Class<?> inputEnumType;
+	private final int[] keyedPositionsByOrdinal;
+	private final int[] predicatePositions;
+	private final boolean pure;
+
+	/** @param idsByState The id of each transition's head. */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	TransitionTable(@Nonnull List<Transition<TransitionInput>> transitions,
+			@Nonnull Map<State<TransitionInput>, Integer> idsByState) {
+		this.transitions = transitions.toArray(new Transition[0]);
+		headIds = new int[this.transitions.length];
+
+		int predicateCount = 0;
+		int[] predicatePositions = new int[this.transitions.length];
+		boolean pure = true;
+		for(int position = 0; position < this.transitions.length; position++) {
+			headIds[position] = idsByState.get(this.transitions[position].getHead());
+
+			Set<TransitionInput> expectedInputs = this.transitions[position].getExpectedInputs();
+			if(expectedInputs == null) {
+				predicatePositions[predicateCount++] = position;
+				pure &= this.transitions[position].isPure();
+			} else {
+				for(TransitionInput input : expectedInputs) {
+					keyedPositionsByInput.putIfAbsent(input, position);
+				}
+			}
+		}
+		this.predicatePositions = Arrays.copyOf(predicatePositions, predicateCount);
+		this.pure = pure;
+
+		inputEnumType = findCommonEnumType(keyedPositionsByInput.keySet());
+		if(inputEnumType == null) {
+			keyedPositionsByOrdinal = null;
+		} else {
+			keyedPositionsByOrdinal = new int[inputEnumType.getEnumConstants().length];
+			Arrays.fill(keyedPositionsByOrdinal, NO_POSITION);
+			for(Map.Entry<TransitionInput, Integer> entry : keyedPositionsByInput.entrySet()) {
+				keyedPositionsByOrdinal[((Enum<?>) entry.getKey()).ordinal()] = entry.getValue();
+			}
+		}
+	}
+
+	/**
+	 * @return The enum class declaring every one of the given inputs, or null if there are no
+	 * inputs or any of them is not a constant of that enum.
+	 */
+	@Nullable
+	private static Class<?> findCommonEnumType(@Nonnull Set<?> inputs) {
+		Class<?> enumType = null;
+		for(Object input : inputs) {
+			if(!(input instanceof Enum)) {
+				return null;
+			}
+
+			Class<?> inputEnumType = ((Enum<?>) input).getDeclaringClass();
+			if(enumType == null) {
+				enumType = inputEnumType;
+			} else if(enumType != inputEnumType) {
+				return null;
+			}
+		}
+
+		return enumType;
+	}
+
+	/** @return Whether every transition in the table is pure. See {@link Transition#isPure()}. */
+	boolean isPure() {
+		return pure;
+	}
+
+	@Nullable
+	Transition<TransitionInput> findFirstValidTransition(@Nullable TransitionInput input) {
+		int position = findFirstValidPosition(input);
+		return position == NO_POSITION ?
+				null :
+				transitions[position];
+	}
+
+	/** @return The position of the first valid transition for the input, or {@link #NO_POSITION} if there's none. */
+	int findFirstValidPosition(@Nullable TransitionInput input) {
+		int keyedPosition = findKeyedPosition(input);
+		int limit = keyedPosition == NO_POSITION ? transitions.length : keyedPosition;
+
+		for(int position : predicatePositions) {
+			if(position >= limit) {
+				break;
+			}
+			if(transitions[position].isValid(input)) {
+				return position;
+			}
+		}
+
+		return keyedPosition;
+	}
+
+	@Nonnull
+	Transition<TransitionInput> getTransition(int position) {
+		return transitions[position];
+	}
+
+	/** @return The id of the head of the transition at the given position. */
+	int getHeadId(int position) {
+		return headIds[position];
+	}
+
+	private int findKeyedPosition(@Nullable TransitionInput input) {
+		if(keyedPositionsByOrdinal != null) {
+			// Enum constants are only equal to themselves, so any other input has no keyed transition.
+			return input instanceof Enum && ((Enum<?>) input).getDeclaringClass() == inputEnumType ?
+					keyedPositionsByOrdinal[((Enum<?>) input).ordinal()] :
+					NO_POSITION;
+		}
+
+		if(keyedPositionsByInput.isEmpty()) {
+			return NO_POSITION;
+		}
+
+		Integer position = keyedPositionsByInput.get(input);
+		return position == null ? NO_POSITION : position;
+	}
+}
@@ -62,6 +62,12 @@ public class CompositeState<TransitionInput> {
 				.collect(Collectors.toSet());
 	}
 
+	/** @return The composite's transitions, in the order they were added. */
+	@Nonnull
+	public List<Transition<TransitionInput>> getTransitions() {
+		return transitions;
+	}
+
 	@Nullable
 	public CompositeState<TransitionInput> getParent() {
 		return parent;
@@ -0,0 +1,67 @@
+package com.coalminesoftware.jstately.graph.transition;
+
+import com.coalminesoftware.jstately.graph.state.State;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.IntPredicate;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A transition whose validity is determined by a primitive int input, avoiding the boxing that a
+ * {@link Transition} of Integer or Character would require.
+ *
+ * @see com.coalminesoftware.jstately.graph.IntStateGraphBuilder#addTransition(State, IntTransition)
+ */
+public class IntTransition {
+	private final State<Integer> head;
+	private final IntPredicate validityPredicate;
+	private final int[] expectedRanges;
+	private final IntTransitionListener transitionListener;
+
+	IntTransition(@Nonnull State<Integer> head,
+			@Nonnull IntPredicate validityPredicate,
+			@Nullable int[] expectedRanges,
+			@Nullable IntTransitionListener transitionListener) {
+		this.head = requireNonNull(head, "Head is required");
+		this.validityPredicate = requireNonNull(validityPredicate, "Validity predicate is required");
+		this.expectedRanges = expectedRanges;
+		this.transitionListener = transitionListener;
+	}
+
+	/** @return State that transition transitions to. */
+	@Nonnull
+	public State<Integer> getHead() {
+		return head;
+	}
+
+	/**
+	 * @param input Input from a state machine used to determine which state (if any) the machine can transition to.
+	 * @return Whether or not the transition is valid for the given input.
+	 */
+	public boolean isValid(int input) {
+		return validityPredicate.test(input);
+	}
+
+	/**
+	 * @return The inclusive ranges of inputs for which the transition is valid, as consecutive
+	 * minimum/maximum pairs, if the transition was built from expected inputs or ranges. Returns
+	 * null if its validity is determined by an arbitrary predicate.
+	 */
+	@Nullable
+	public int[] getExpectedRanges() {
+		return expectedRanges == null ? null : expectedRanges.clone();
+	}
+
+	public void notifyTransitionListener(int input) {
+		if (transitionListener != null) {
+			transitionListener.onTransition(input);
+		}
+	}
+
+	@Nonnull
+	public String toString() {
+		return super.toString() + "[head=" + head + "]";
+	}
+}
@@ -0,0 +1,99 @@
+package com.coalminesoftware.jstately.graph.transition;
+
+import com.coalminesoftware.jstately.graph.state.State;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import static java.util.Objects.requireNonNull;
+
+public class IntTransitionBuilder {
+	private final State<Integer> head;
+	private final IntPredicate validityPredicate;
+	private final int[] expectedRanges;
+	private IntTransitionListener transitionListener;
+
+	public IntTransitionBuilder(@Nonnull State<Integer> head, @Nonnull IntPredicate validityPredicate) {
+		this(head, validityPredicate, null);
+	}
+
+	private IntTransitionBuilder(@Nonnull State<Integer> head,
+			@Nonnull IntPredicate validityPredicate,
+			@Nullable int[] expectedRanges) {
+		this.head = requireNonNull(head, "Head is required");
+		this.validityPredicate = requireNonNull(validityPredicate, "Validity predicate is required");
+		this.expectedRanges = expectedRanges;
+	}
+
+	@Nonnull
+	public static IntTransitionBuilder forExpectedInputs(@Nonnull State<Integer> head, @Nonnull int... validInputs) {
+		if(validInputs == null || validInputs.length == 0) {
+			throw new IllegalArgumentException("Valid inputs are required");
+		}
+
+		int[] ranges = new int[validInputs.length * 2];
+		for(int i = 0; i < validInputs.length; i++) {
+			ranges[i * 2] = validInputs[i];
+			ranges[i * 2 + 1] = validInputs[i];
+		}
+
+		return forRanges(head, ranges);
+	}
+
+	/** Builds a transition that is valid for inputs between min and max, inclusive. */
+	@Nonnull
+	public static IntTransitionBuilder forRange(@Nonnull State<Integer> head, int min, int max) {
+		if(min > max) {
+			throw new IllegalArgumentException("Range minimum cannot exceed its maximum");
+		}
+
+		return forRanges(head, new int[] { min, max });
+	}
+
+	@Nonnull
+	private static IntTransitionBuilder forRanges(@Nonnull State<Integer> head, @Nonnull int[] ranges) {
+		// With inclusive bounds, membership can be checked with a binary search of the sorted bounds:
+		// an input falls within a range if it's a bound or its insertion point is odd.
+		int[] bounds = mergeRanges(ranges);
+		return new IntTransitionBuilder(head, input -> {
+			int index = Arrays.binarySearch(bounds, input);
+			return index >= 0 || (-index - 1) % 2 == 1;
+		}, bounds);
+	}
+
+	/** @return The given minimum/maximum pairs, sorted and with overlapping or adjacent ranges merged. */
+	@Nonnull
+	private static int[] mergeRanges(@Nonnull int[] ranges) {
+		long[][] pairs = new long[ranges.length / 2][];
+		for(int i = 0; i < pairs.length; i++) {
+			pairs[i] = new long[] { ranges[i * 2], ranges[i * 2 + 1] };
+		}
+		Arrays.sort(pairs, (first, second) -> Long.compare(first[0], second[0]));
+
+		int[] merged = new int[ranges.length];
+		int mergedLength = 0;
+		for(long[] pair : pairs) {
+			if(mergedLength > 0 && pair[0] <= (long) merged[mergedLength - 1] + 1) {
+				merged[mergedLength - 1] = (int) Math.max(merged[mergedLength - 1], pair[1]);
+			} else {
+				merged[mergedLength++] = (int) pair[0];
+				merged[mergedLength++] = (int) pair[1];
+			}
+		}
+
+		return Arrays.copyOf(merged, mergedLength);
+	}
+
+	@Nonnull
+	public IntTransitionBuilder setTransitionListener(@Nullable IntTransitionListener listener) {
+		transitionListener = listener;
+		return this;
+	}
+
+	@Nonnull
+	public IntTransition build() {
+		return new IntTransition(head, validityPredicate, expectedRanges, transitionListener);
+	}
+}
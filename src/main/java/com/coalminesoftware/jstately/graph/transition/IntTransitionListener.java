@@ -0,0 +1,9 @@
+package com.coalminesoftware.jstately.graph.transition;
+
+public interface IntTransitionListener {
+	/**
+	 * Called by a state machine when transitioning.
+	 * @param input Input that caused the transition.
+	 */
+	void onTransition(int input);
+}
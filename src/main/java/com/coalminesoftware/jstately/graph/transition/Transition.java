@@ -5,6 +5,7 @@ import com.coalminesoftware.jstately.graph.state.State;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import static java.util.Objects.requireNonNull;
@@ -20,13 +21,19 @@ import static java.util.Objects.requireNonNull;
 public class Transition<TransitionInput> {
 	private final State<TransitionInput> head;
 	private final Predicate<TransitionInput> validityPredicate;
+	private final Set<TransitionInput> expectedInputs;
+	private final boolean pure;
 	private final TransitionListener<TransitionInput> transitionListener;
 
 	Transition(@Nonnull State<TransitionInput> head,
 			@Nonnull Predicate<TransitionInput> validityPredicate,
+			@Nullable Set<TransitionInput> expectedInputs,
+			boolean pure,
 			@Nullable TransitionListener<TransitionInput> transitionListener) {
 		this.head = requireNonNull(head, "Head is required");
 		this.validityPredicate = requireNonNull(validityPredicate, "Validity predicate is required");
+		this.expectedInputs = expectedInputs;
+		this.pure = pure;
 		this.transitionListener = transitionListener;
 	}
 
@@ -44,6 +51,25 @@ public class Transition<TransitionInput> {
 		return validityPredicate.test(input);
 	}
 
+	/**
+	 * @return The exact set of inputs for which the transition is valid if it was built from
+	 * expected inputs (see {@link TransitionBuilder#forExpectedInputs(State, Object[])}), or null
+	 * if its validity is determined by an arbitrary predicate.
+	 */
+	@Nullable
+	public Set<TransitionInput> getExpectedInputs() {
+		return expectedInputs;
+	}
+
+	/**
+	 * @return Whether the transition's validity depends only on the input, so that it can be
+	 * determined once for any number of machines evaluating the same input. Transitions built from
+	 * expected inputs are always pure. Otherwise, see {@link TransitionBuilder#setPure(boolean)}.
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+
 	public void notifyTransitionListener(@Nullable TransitionInput input) {
 		if (transitionListener != null) {
 			transitionListener.onTransition(input);
@@ -15,12 +15,21 @@ import static java.util.Objects.requireNonNull;
 public class TransitionBuilder<TransitionInput> {
 	private final State<TransitionInput> head;
 	private final Predicate<TransitionInput> validityPredicate;
+	private final Set<TransitionInput> expectedInputs;
 	private TransitionListener<TransitionInput> transitionListener;
+	private boolean pure;
 
 	public TransitionBuilder(@Nonnull State<TransitionInput> head,
 			@Nonnull Predicate<TransitionInput> validityPredicate) {
+		this(head, validityPredicate, null);
+	}
+
+	private TransitionBuilder(@Nonnull State<TransitionInput> head,
+			@Nonnull Predicate<TransitionInput> validityPredicate,
+			@Nullable Set<TransitionInput> expectedInputs) {
 		this.head = requireNonNull(head, "Head is required");
 		this.validityPredicate = requireNonNull(validityPredicate, "Validity predicate is required");
+		this.expectedInputs = expectedInputs;
 	}
 
 	@SafeVarargs
@@ -35,7 +44,7 @@ public class TransitionBuilder<TransitionInput> {
 		Set<TransitionInput> inputSet = new HashSet<>(validInputs.length);
 		Collections.addAll(inputSet, validInputs);
 
-		return new TransitionBuilder<>(head, inputSet::contains);
+		return new TransitionBuilder<>(head, inputSet::contains, Collections.unmodifiableSet(inputSet));
 	}
 
 	@Nonnull
@@ -44,8 +53,21 @@ public class TransitionBuilder<TransitionInput> {
 		return this;
 	}
 
+	/**
+	 * Declares whether the transition's predicate is pure: free of side effects, and dependent only
+	 * on its input. Pure transitions allow an input broadcast to many machines to be evaluated once
+	 * per state rather than once per machine. Transitions built from expected inputs are always pure.
+	 *
+	 * @see Transition#isPure()
+	 */
+	@Nonnull
+	public TransitionBuilder<TransitionInput> setPure(boolean pure) {
+		this.pure = pure;
+		return this;
+	}
+
 	@Nonnull
 	public Transition<TransitionInput> build() {
-		return new Transition<>(head, validityPredicate, transitionListener);
+		return new Transition<>(head, validityPredicate, expectedInputs, pure || expectedInputs != null, transitionListener);
 	}
 }
@@ -0,0 +1,388 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.state.CompositeState;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Listener that notifies other listeners of a machine's events on a dedicated thread, so that slow
+ * listeners, such as those writing to metrics or audit sinks, don't hold up the machine. Each event
+ * is recorded in a preallocated slot of a ring buffer and returns immediately. The listener's
+ * thread delivers recorded events in the order they were recorded, a batch at a time, freeing the
+ * batch's slots once it's delivered. Events that none of the listeners override aren't recorded.
+ * <p>
+ * When the buffer is full, the {@link OverflowPolicy} decides whether the machine waits for room or
+ * the event is dropped. Events recorded by the listener's own thread, such as by a listener
+ * evaluating an input, are dropped rather than waited on, as no room would ever be made.
+ * <p>
+ * Exceptions thrown by listeners are passed to the exception handler, and delivery continues. If a
+ * listener throws an {@link Error}, the listener's thread ends, and later events are dropped.
+ * <p>
+ * Listeners are passed the machine and the event's state, transition or input, but by the time
+ * they're notified, the machine may have moved on, so they shouldn't inspect its current state.
+ * The listener can be added to any number of machines, which can be used by any threads.
+ *
+ * @see AsyncEventListenerBuilder
+ */
+public class AsyncEventListener<TransitionInput> implements StateMachineEventListener<TransitionInput> {
+	/** What a machine does when an event is recorded while the buffer is full. */
+	public enum OverflowPolicy {
+		/** The machine waits until the listener's thread has made room for the event. */
+		WAIT,
+		/** The event is dropped and counted. See {@link #getDroppedEventCount()}. */
+		DROP
+	}
+
+	private static final int BEFORE_EVALUATING_INPUT = 0;
+	private static final int AFTER_EVALUATING_INPUT = 1;
+	private static final int BEFORE_STATE_ENTERED = 2;
+	private static final int AFTER_STATE_ENTERED = 3;
+	private static final int BEFORE_STATE_EXITED = 4;
+	private static final int AFTER_STATE_EXITED = 5;
+	private static final int BEFORE_TRANSITION = 6;
+	private static final int AFTER_TRANSITION = 7;
+	private static final int NO_VALID_TRANSITION = 8;
+	private static final int BEFORE_COMPOSITE_STATE_ENTERED = 9;
+	private static final int AFTER_COMPOSITE_STATE_ENTERED = 10;
+	private static final int BEFORE_COMPOSITE_STATE_EXITED = 11;
+	private static final int AFTER_COMPOSITE_STATE_EXITED = 12;
+
+	private static final int SPINS_BEFORE_PARKING = 100;
+	private static final long ROOM_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+	private final EventListenerRegistry<TransitionInput> listeners;
+	private final OverflowPolicy overflowPolicy;
+	private final Consumer<? super RuntimeException> exceptionHandler;
+	private final Slot<TransitionInput>[] slots;
+	private final int slotMask;
+	private final Thread deliveryThread;
+
+	// The sequence number of the next event to be recorded, and of the first event not yet delivered.
+	// An event's slot is its sequence number modulo the buffer's capacity.
+	private final AtomicLong recordedSequence = new AtomicLong();
+	private volatile long deliveredSequence;
+
+	private final AtomicLong droppedEventCount = new AtomicLong();
+	private volatile boolean deliveryThreadParked;
+	private volatile boolean shutDown;
+	private volatile boolean deliveryEnded;
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	AsyncEventListener(@Nonnull List<StateMachineEventListener<TransitionInput>> listeners,
+			int capacity,
+			@Nonnull OverflowPolicy overflowPolicy,
+			@Nonnull ThreadFactory threadFactory,
+			@Nullable Consumer<? super RuntimeException> exceptionHandler) {
+		this.listeners = new EventListenerRegistry<>(listeners, false);
+		this.overflowPolicy = requireNonNull(overflowPolicy, "Overflow policy is required");
+		this.exceptionHandler = exceptionHandler == null ?
+				AsyncEventListener::reportUncaughtException :
+				exceptionHandler;
+
+		slots = new Slot[capacity];
+		for(int slot = 0; slot < capacity; slot++) {
+			slots[slot] = new Slot<>();
+		}
+		slotMask = capacity - 1;
+
+		deliveryThread = requireNonNull(threadFactory, "Thread factory is required").newThread(this::deliverEvents);
+		if(deliveryThread == null) {
+			throw new IllegalStateException("Thread factory created no thread");
+		}
+		deliveryThread.start();
+	}
+
+	@Override
+	public void beforeEvaluatingInput(@Nullable TransitionInput input, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_EVALUATING_INPUT, listeners.getBeforeEvaluatingInputListeners(), null, input, machine);
+	}
+
+	@Override
+	public void afterEvaluatingInput(@Nullable TransitionInput input, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_EVALUATING_INPUT, listeners.getAfterEvaluatingInputListeners(), null, input, machine);
+	}
+
+	@Override
+	public void beforeStateEntered(@Nonnull State<TransitionInput> state, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_STATE_ENTERED, listeners.getBeforeStateEnteredListeners(), state, null, machine);
+	}
+
+	@Override
+	public void afterStateEntered(@Nonnull State<TransitionInput> state, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_STATE_ENTERED, listeners.getAfterStateEnteredListeners(), state, null, machine);
+	}
+
+	@Override
+	public void beforeStateExited(@Nonnull State<TransitionInput> state, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_STATE_EXITED, listeners.getBeforeStateExitedListeners(), state, null, machine);
+	}
+
+	@Override
+	public void afterStateExited(@Nonnull State<TransitionInput> state, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_STATE_EXITED, listeners.getAfterStateExitedListeners(), state, null, machine);
+	}
+
+	@Override
+	public void beforeTransition(@Nonnull Transition<TransitionInput> transition, @Nullable TransitionInput input, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_TRANSITION, listeners.getBeforeTransitionListeners(), transition, input, machine);
+	}
+
+	@Override
+	public void afterTransition(@Nonnull Transition<TransitionInput> transition, @Nullable TransitionInput input, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_TRANSITION, listeners.getAfterTransitionListeners(), transition, input, machine);
+	}
+
+	@Override
+	public void noValidTransition(@Nullable TransitionInput input, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(NO_VALID_TRANSITION, listeners.getNoValidTransitionListeners(), null, input, machine);
+	}
+
+	@Override
+	public void beforeCompositeStateEntered(@Nonnull CompositeState<TransitionInput> composite, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_COMPOSITE_STATE_ENTERED, listeners.getBeforeCompositeStateEnteredListeners(), composite, null, machine);
+	}
+
+	@Override
+	public void afterCompositeStateEntered(@Nonnull CompositeState<TransitionInput> composite, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_COMPOSITE_STATE_ENTERED, listeners.getAfterCompositeStateEnteredListeners(), composite, null, machine);
+	}
+
+	@Override
+	public void beforeCompositeStateExited(@Nonnull CompositeState<TransitionInput> composite, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(BEFORE_COMPOSITE_STATE_EXITED, listeners.getBeforeCompositeStateExitedListeners(), composite, null, machine);
+	}
+
+	@Override
+	public void afterCompositeStateExited(@Nonnull CompositeState<TransitionInput> composite, @Nonnull StateMachine<?,TransitionInput> machine) {
+		record(AFTER_COMPOSITE_STATE_EXITED, listeners.getAfterCompositeStateExitedListeners(), composite, null, machine);
+	}
+
+	/**
+	 * @return The number of events dropped because the buffer was full, the listener had been shut
+	 * down, or the listener's thread had ended.
+	 */
+	public long getDroppedEventCount() {
+		return droppedEventCount.get();
+	}
+
+	/**
+	 * Stops recording events. Events that have already been recorded are still delivered, after
+	 * which the listener's thread ends. Events recorded while the listener shuts down may be lost.
+	 *
+	 * @see #awaitTermination(long, TimeUnit)
+	 */
+	public void shutdown() {
+		shutDown = true;
+		LockSupport.unpark(deliveryThread);
+	}
+
+	/**
+	 * Waits until every recorded event has been delivered following {@link #shutdown()}, or until
+	 * the timeout elapses.
+	 *
+	 * @return Whether the listener's thread ended before the timeout elapsed.
+	 */
+	public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+		deliveryThread.join(Math.max(1, unit.toMillis(timeout)));
+		return !deliveryThread.isAlive();
+	}
+
+	private void record(int callback,
+			@Nonnull StateMachineEventListener<TransitionInput>[] callbackListeners,
+			@Nullable Object subject,
+			@Nullable TransitionInput input,
+			@Nonnull StateMachine<?,TransitionInput> machine) {
+		if(callbackListeners.length == 0) {
+			return;
+		}
+
+		long sequence = claimSequence();
+		if(sequence == -1) {
+			droppedEventCount.incrementAndGet();
+			return;
+		}
+
+		Slot<TransitionInput> slot = slots[(int) sequence & slotMask];
+		slot.callback = callback;
+		slot.listeners = callbackListeners;
+		slot.subject = subject;
+		slot.input = input;
+		slot.machine = machine;
+		slot.publishedSequence = sequence;
+
+		if(deliveryThreadParked) {
+			LockSupport.unpark(deliveryThread);
+		}
+	}
+
+	/** @return The sequence number of a slot claimed for an event, or -1 if the event is to be dropped. */
+	private long claimSequence() {
+		while(!shutDown && !deliveryEnded) {
+			long sequence = recordedSequence.get();
+			if(sequence - deliveredSequence >= slots.length) {
+				if(overflowPolicy == OverflowPolicy.DROP || Thread.currentThread() == deliveryThread) {
+					return -1;
+				}
+
+				LockSupport.parkNanos(this, ROOM_WAIT_NANOS);
+			} else if(recordedSequence.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+
+		return -1;
+	}
+
+	private void deliverEvents() {
+		try {
+			long sequence = 0;
+			while(true) {
+				Slot<TransitionInput> slot = slots[(int) sequence & slotMask];
+				if(slot.publishedSequence != sequence) {
+					if(shutDown && recordedSequence.get() == sequence) {
+						return;
+					}
+
+					awaitEvent(slot, sequence);
+					continue;
+				}
+
+				// Deliver every event recorded so far before freeing their slots.
+				long batchEnd = sequence;
+				do {
+					deliver(slot);
+					batchEnd++;
+					slot = slots[(int) batchEnd & slotMask];
+				} while(slot.publishedSequence == batchEnd && batchEnd - sequence < slots.length);
+
+				deliveredSequence = batchEnd;
+				sequence = batchEnd;
+			}
+		} finally {
+			// Should a listener's Error end the thread, machines drop events rather than wait for room.
+			deliveryEnded = true;
+		}
+	}
+
+	private void awaitEvent(@Nonnull Slot<TransitionInput> slot, long sequence) {
+		for(int spin = 0; spin < SPINS_BEFORE_PARKING; spin++) {
+			if(slot.publishedSequence == sequence || shutDown) {
+				return;
+			}
+			Thread.yield();
+		}
+
+		// Recording an event checks the flag after publishing it, so either the event is seen here
+		// or the recording thread unparks this one.
+		deliveryThreadParked = true;
+		if(slot.publishedSequence != sequence && !shutDown) {
+			LockSupport.park(this);
+		}
+		deliveryThreadParked = false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void deliver(@Nonnull Slot<TransitionInput> slot) {
+		int callback = slot.callback;
+		StateMachineEventListener<TransitionInput>[] callbackListeners = slot.listeners;
+		Object subject = slot.subject;
+		TransitionInput input = slot.input;
+		StateMachine<?,TransitionInput> machine = slot.machine;
+
+		// Release the slot's references so the buffer doesn't keep them reachable.
+		slot.listeners = null;
+		slot.subject = null;
+		slot.input = null;
+		slot.machine = null;
+
+		for(StateMachineEventListener<TransitionInput> listener : callbackListeners) {
+			try {
+				switch(callback) {
+					case BEFORE_EVALUATING_INPUT:
+						listener.beforeEvaluatingInput(input, machine);
+						break;
+					case AFTER_EVALUATING_INPUT:
+						listener.afterEvaluatingInput(input, machine);
+						break;
+					case BEFORE_STATE_ENTERED:
+						listener.beforeStateEntered((State<TransitionInput>) subject, machine);
+						break;
+					case AFTER_STATE_ENTERED:
+						listener.afterStateEntered((State<TransitionInput>) subject, machine);
+						break;
+					case BEFORE_STATE_EXITED:
+						listener.beforeStateExited((State<TransitionInput>) subject, machine);
+						break;
+					case AFTER_STATE_EXITED:
+						listener.afterStateExited((State<TransitionInput>) subject, machine);
+						break;
+					case BEFORE_TRANSITION:
+						listener.beforeTransition((Transition<TransitionInput>) subject, input, machine);
+						break;
+					case AFTER_TRANSITION:
+						listener.afterTransition((Transition<TransitionInput>) subject, input, machine);
+						break;
+					case NO_VALID_TRANSITION:
+						listener.noValidTransition(input, machine);
+						break;
+					case BEFORE_COMPOSITE_STATE_ENTERED:
+						listener.beforeCompositeStateEntered((CompositeState<TransitionInput>) subject, machine);
+						break;
+					case AFTER_COMPOSITE_STATE_ENTERED:
+						listener.afterCompositeStateEntered((CompositeState<TransitionInput>) subject, machine);
+						break;
+					case BEFORE_COMPOSITE_STATE_EXITED:
+						listener.beforeCompositeStateExited((CompositeState<TransitionInput>) subject, machine);
+						break;
+					case AFTER_COMPOSITE_STATE_EXITED:
+						listener.afterCompositeStateExited((CompositeState<TransitionInput>) subject, machine);
+						break;
+					default:
+						throw new IllegalStateException("Unexpected callback: " + callback);
+				}
+			} catch(RuntimeException e) {
+				handleException(e);
+			}
+		}
+	}
+
+	private void handleException(@Nonnull RuntimeException exception) {
+		try {
+			exceptionHandler.accept(exception);
+		} catch(RuntimeException handlerException) {
+			// Report the handler's failure rather than letting it end the listener's thread.
+			handlerException.addSuppressed(exception);
+			reportUncaughtException(handlerException);
+		}
+	}
+
+	private static void reportUncaughtException(@Nonnull RuntimeException exception) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+	}
+
+	/**
+	 * A recorded event. Its fields are written by the recording thread before it publishes the
+	 * event's sequence number, and read by the listener's thread after it sees the number.
+	 */
+	private static class Slot<TransitionInput> {
+		private volatile long publishedSequence = -1;
+		private int callback;
+		private StateMachineEventListener<TransitionInput>[] listeners;
+		private Object subject;
+		private TransitionInput input;
+		private StateMachine<?,TransitionInput> machine;
+	}
+}
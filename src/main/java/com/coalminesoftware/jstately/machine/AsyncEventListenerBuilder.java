@@ -0,0 +1,76 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.machine.AsyncEventListener.OverflowPolicy;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+public class AsyncEventListenerBuilder<TransitionInput> {
+	private final List<StateMachineEventListener<TransitionInput>> listeners = new ArrayList<>();
+	private int capacity = 1024;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.WAIT;
+	private ThreadFactory threadFactory = AsyncEventListenerBuilder::createDeliveryThread;
+	private Consumer<? super RuntimeException> exceptionHandler;
+
+	/** Adds a listener to be notified on the delivery thread. Listeners are notified in the order they're added. */
+	@Nonnull
+	public AsyncEventListenerBuilder<TransitionInput> addListener(@Nonnull StateMachineEventListener<TransitionInput> listener) {
+		listeners.add(requireNonNull(listener, "Listener is required"));
+		return this;
+	}
+
+	/** Sets the number of events the buffer holds, which must be a power of two and defaults to 1024. */
+	@Nonnull
+	public AsyncEventListenerBuilder<TransitionInput> setCapacity(int capacity) {
+		if(capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+
+		this.capacity = capacity;
+		return this;
+	}
+
+	/** Sets what happens to events recorded while the buffer is full. By default, machines wait for room. */
+	@Nonnull
+	public AsyncEventListenerBuilder<TransitionInput> setOverflowPolicy(@Nonnull OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = requireNonNull(overflowPolicy, "Overflow policy is required");
+		return this;
+	}
+
+	/** Sets the factory of the thread that delivers events. By default, it's a daemon thread. */
+	@Nonnull
+	public AsyncEventListenerBuilder<TransitionInput> setThreadFactory(@Nonnull ThreadFactory threadFactory) {
+		this.threadFactory = requireNonNull(threadFactory, "Thread factory is required");
+		return this;
+	}
+
+	/**
+	 * Sets the handler for exceptions thrown by listeners. By default, they're passed to the
+	 * delivery thread's uncaught exception handler. Either way, delivery continues.
+	 */
+	@Nonnull
+	public AsyncEventListenerBuilder<TransitionInput> setExceptionHandler(@Nullable Consumer<? super RuntimeException> exceptionHandler) {
+		this.exceptionHandler = exceptionHandler;
+		return this;
+	}
+
+	/** Builds the listener and starts its delivery thread. */
+	@Nonnull
+	public AsyncEventListener<TransitionInput> build() {
+		return new AsyncEventListener<>(listeners, capacity, overflowPolicy, threadFactory, exceptionHandler);
+	}
+
+	@Nonnull
+	private static Thread createDeliveryThread(@Nonnull Runnable delivery) {
+		Thread thread = new Thread(delivery, "jstately-event-delivery");
+		thread.setDaemon(true);
+		return thread;
+	}
+}
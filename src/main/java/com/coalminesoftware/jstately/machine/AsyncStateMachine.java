@@ -0,0 +1,289 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.collection.ArrayQueue;
+import com.coalminesoftware.jstately.collection.MultiProducerSingleConsumerQueue;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.input.InputManager;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Subclass of {@link StateMachine} that evaluates its inputs on an {@link Executor} rather than
+ * on the threads that provide them. Any thread may call {@link #evaluateAsync(Object)}, which
+ * queues the input and returns immediately. Inputs are evaluated one at a time, in the order they
+ * were queued, by a task that runs on the executor only while inputs are queued.
+ * <p>
+ * To keep a busy machine from monopolizing one of the executor's threads, the task gives up its
+ * thread after evaluating {@value #INPUTS_PER_TASK} inputs, resubmitting itself to evaluate the rest.
+ * <p>
+ * The machine must be started before any inputs are queued. Starting the machine, or setting its
+ * state with {@link #transition(State, State...)}, fails while any inputs are pending, rather than
+ * racing with their evaluation, unless done by a listener as an input is evaluated. Its state
+ * should only be inspected from other threads via the futures returned by
+ * {@link #evaluateAsync(Object)}, or by listeners.
+ */
+public class AsyncStateMachine<MachineInput,TransitionInput> extends StateMachine<MachineInput,TransitionInput> {
+	static final int INPUTS_PER_TASK = 256;
+
+	private final Executor executor;
+	private final MultiProducerSingleConsumerQueue<PendingInput<MachineInput,TransitionInput>> pendingInputs =
+			new MultiProducerSingleConsumerQueue<>();
+	private final AtomicInteger pendingInputCount = new AtomicInteger();
+	private final Runnable evaluationTask = this::evaluatePendingInputs;
+	// Set while the evaluation task evaluates an input. Only compared with the current thread, which
+	// always sees its own writes, so it needn't be volatile.
+	private Thread evaluatingThread;
+
+	AsyncStateMachine(@Nonnull StateGraph<TransitionInput> graph,
+			@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter,
+			@Nonnull List<StateMachineEventListener<TransitionInput>> listeners,
+			@Nullable InputJournal<MachineInput> journal,
+			@Nonnull Executor executor) {
+		// Only the evaluation task consumes transition inputs, and one machine input at a time.
+		super(graph, new InputManager<>(inputAdapter, new ArrayQueue<>(), journal), listeners);
+		this.executor = requireNonNull(executor, "Executor is required");
+	}
+
+	/**
+	 * Queues the input to be evaluated on the machine's executor and returns without waiting.
+	 *
+	 * @param machineInput Machine input from which transition inputs are generated to evaluate.
+	 * @return A future completed with the machine's states (see {@link #getStates()}) once every
+	 * transition input generated from the input has been evaluated. If evaluating the input throws
+	 * an exception, or the executor rejects the evaluation task, the future is completed
+	 * exceptionally and any later inputs are still evaluated. If the input was written to the
+	 * machine's journal but forcing it failed, it may still be replayed, so it's evaluated before
+	 * the next input once the journal has been forced.
+	 */
+	@Nonnull
+	public CompletableFuture<List<State<TransitionInput>>> evaluateAsync(@Nullable MachineInput machineInput) {
+		CompletableFuture<List<State<TransitionInput>>> future = new CompletableFuture<>();
+		queueInput(machineInput, future);
+
+		return future;
+	}
+
+	/**
+	 * Queues the input as {@link #evaluateAsync(Object)} does.
+	 *
+	 * @return False if the executor rejected the evaluation task, in which case the input won't be
+	 * evaluated.
+	 */
+	@Override
+	public boolean evaluateInput(@Nullable MachineInput machineInput) {
+		return queueInput(machineInput, new CompletableFuture<>());
+	}
+
+	/**
+	 * Queues the input as {@link #evaluateAsync(Object)} does, without waiting for it to be evaluated.
+	 *
+	 * @throws RejectedExecutionException Thrown if the executor rejected the evaluation task, in
+	 * which case the input won't be evaluated.
+	 */
+	@Override
+	public void evaluateInputOrThrow(@Nullable MachineInput machineInput) {
+		if(!queueInput(machineInput, new CompletableFuture<>())) {
+			throw new RejectedExecutionException("Executor rejected the machine's evaluation task");
+		}
+	}
+
+	/**
+	 * Queues the inputs as {@link #evaluateAsync(Object)} does. They're never evaluated by the
+	 * calling thread, so the returned summary is always {@link EvaluationSummary#wasDeferred() deferred}.
+	 *
+	 * @throws RejectedExecutionException Thrown if the executor rejected the evaluation task, in
+	 * which case none of the inputs will be evaluated.
+	 */
+	@Override
+	@Nonnull
+	public EvaluationSummary<TransitionInput> evaluateInputs(@Nonnull Collection<? extends MachineInput> machineInputs) {
+		// Count the inputs at once, so that the executor either accepts or rejects all of them.
+		int inputCount = 0;
+		for(MachineInput machineInput : requireNonNull(machineInputs, "Machine inputs are required")) {
+			pendingInputs.add(new PendingInput<>(machineInput, new CompletableFuture<>()));
+			inputCount++;
+		}
+
+		if(inputCount != 0 && pendingInputCount.getAndAdd(inputCount) == 0 && !submitEvaluationTask()) {
+			throw new RejectedExecutionException("Executor rejected the machine's evaluation task");
+		}
+
+		return EvaluationSummary.deferred();
+	}
+
+	/**
+	 * Starts the machine on the calling thread.
+	 *
+	 * @throws IllegalStateException Thrown if the machine has already started, or if inputs are pending.
+	 */
+	@Override
+	public void start() {
+		runWhileIdle(super::start);
+	}
+
+	/**
+	 * Sets the machine's state on the calling thread.
+	 *
+	 * @throws IllegalStateException Thrown if inputs are pending.
+	 */
+	@Override
+	public void transition(@Nonnull State<TransitionInput> newState, @Nonnull State<TransitionInput>... submachineStates) {
+		runWhileIdle(() -> super.transition(newState, submachineStates));
+	}
+
+	/** @throws IllegalStateException Thrown if inputs are pending. */
+	@Override
+	void restoreStates(@Nonnull List<State<TransitionInput>> states) {
+		runWhileIdle(() -> super.restoreStates(states));
+	}
+
+	/**
+	 * Runs the action on the calling thread, as though it were a pending input, so that no
+	 * evaluation task runs until it's done. Listeners notified by the evaluation task run the action
+	 * immediately.
+	 *
+	 * @throws IllegalStateException Thrown if inputs are pending.
+	 */
+	private void runWhileIdle(@Nonnull Runnable action) {
+		if(evaluatingThread == Thread.currentThread()) {
+			action.run();
+			return;
+		}
+		if(!pendingInputCount.compareAndSet(0, 1)) {
+			throw new IllegalStateException("Machine's state can't be changed while inputs are pending.");
+		}
+
+		try {
+			action.run();
+		} finally {
+			// Inputs queued in the meantime found the count above zero, so left submitting the task to this call.
+			if(pendingInputCount.decrementAndGet() != 0) {
+				submitEvaluationTask();
+			}
+		}
+	}
+
+	@Override
+	@Nonnull
+	StateMachine<TransitionInput, TransitionInput> createSubmachine(@Nonnull StateGraph<TransitionInput> graph) {
+		// Nested machines are only used by the evaluation task, which never runs concurrently with itself.
+		return new ConfinedStateMachine<>(graph, new PassthroughInputAdapter<>(), eventListeners, false);
+	}
+
+	/**
+	 * Queues the input, submitting the evaluation task if no other inputs are pending.
+	 *
+	 * @return False if the executor rejected the evaluation task.
+	 */
+	private boolean queueInput(@Nullable MachineInput machineInput,
+			@Nonnull CompletableFuture<List<State<TransitionInput>>> future) {
+		pendingInputs.add(new PendingInput<>(machineInput, future));
+
+		return pendingInputCount.getAndIncrement() != 0 || submitEvaluationTask();
+	}
+
+	/** @return False if the executor rejected the task. */
+	private boolean submitEvaluationTask() {
+		try {
+			executor.execute(evaluationTask);
+			return true;
+		} catch(RejectedExecutionException e) {
+			// No task will evaluate the queued inputs, so fail them rather than leaving them queued
+			// indefinitely. The count is then back at zero, so a later input tries again.
+			do {
+				takePendingInput().future.completeExceptionally(e);
+			} while(pendingInputCount.decrementAndGet() != 0);
+			return false;
+		}
+	}
+
+	/**
+	 * Evaluates pending inputs until none remain, or until {@value #INPUTS_PER_TASK} have been
+	 * evaluated, in which case the task is resubmitted. Only one invocation runs at a time, as the
+	 * task is only submitted by whichever call moves the count of pending inputs off of zero.
+	 */
+	private void evaluatePendingInputs() {
+		for(int evaluatedInputCount = 1; ; evaluatedInputCount++) {
+			PendingInput<MachineInput,TransitionInput> pendingInput = takePendingInput();
+			boolean evaluated = false;
+			int remainingInputCount;
+			try {
+				evaluatingThread = Thread.currentThread();
+				evaluate(pendingInput);
+				evaluated = true;
+			} finally {
+				evaluatingThread = null;
+				remainingInputCount = pendingInputCount.decrementAndGet();
+				if(!evaluated) {
+					// Failing the input failed too. Don't leave its future, or the remaining inputs, waiting.
+					pendingInput.future.cancel(false);
+					if(remainingInputCount != 0) {
+						submitEvaluationTask();
+					}
+				}
+			}
+
+			if(remainingInputCount == 0) {
+				return;
+			}
+			if(evaluatedInputCount == INPUTS_PER_TASK) {
+				submitEvaluationTask();
+				return;
+			}
+		}
+	}
+
+	/** Removes the next pending input, which must have been counted by {@link #pendingInputCount}. */
+	@Nonnull
+	private PendingInput<MachineInput,TransitionInput> takePendingInput() {
+		// A producer that claimed an earlier position in the queue may not have stored its input yet.
+		while(pendingInputs.isEmpty()) {
+			Thread.yield();
+		}
+
+		return pendingInputs.remove();
+	}
+
+	private void evaluate(@Nonnull PendingInput<MachineInput,TransitionInput> pendingInput) {
+		inputManager.queueInput(pendingInput.machineInput);
+		try {
+			while(inputManager.hasNext()) {
+				evaluateTransitionInput(inputManager.next());
+			}
+		} catch(RuntimeException | Error e) {
+			// Discard what remains of the input without adapting or journaling it, either of which may
+			// be what failed. An input that's been written but not forced is kept for the next task.
+			inputManager.clear();
+
+			pendingInput.future.completeExceptionally(e);
+			return;
+		}
+
+		pendingInput.future.complete(getStates());
+	}
+
+	private static class PendingInput<MachineInput,TransitionInput> {
+		private final MachineInput machineInput;
+		private final CompletableFuture<List<State<TransitionInput>>> future;
+
+		private PendingInput(@Nullable MachineInput machineInput,
+				@Nonnull CompletableFuture<List<State<TransitionInput>>> future) {
+			this.machineInput = machineInput;
+			this.future = future;
+		}
+	}
+}
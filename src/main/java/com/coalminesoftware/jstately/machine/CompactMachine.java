@@ -0,0 +1,76 @@
+package com.coalminesoftware.jstately.machine;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The state of a machine run by a {@link FlyweightStateMachine}, which holds everything else the
+ * machine needs so that it can be shared by any number of instances. An instance holds only the
+ * id of its current state and, while in a {@link com.coalminesoftware.jstately.graph.state.SubmachineState},
+ * the ids of the submachines' states. See {@link com.coalminesoftware.jstately.graph.CompiledStateGraph#getStateId}.
+ * <p>
+ * Instances are not safe for use by multiple threads.
+ */
+public final class CompactMachine<TransitionInput> {
+	private int stateId;
+
+	// The state ids of nested submachines, outermost first. Null unless in a submachine state.
+	private int[] submachineStateIds;
+
+	CompactMachine(int stateId) {
+		this.stateId = stateId;
+	}
+
+	/** @return The number of machines whose states are held, including nested submachines. */
+	int getDepth() {
+		return submachineStateIds == null ? 1 : submachineStateIds.length + 1;
+	}
+
+	/** @return The state id of the machine at the given depth, where the outermost machine is zero. */
+	int getStateId(int level) {
+		return level == 0 ? stateId : submachineStateIds[level - 1];
+	}
+
+	/** Sets the state id of the machine at the given depth, which may be one deeper than the current depth. */
+	void setStateId(int level, int id) {
+		if(level == 0) {
+			stateId = id;
+			return;
+		}
+
+		if(level > getDepth() - 1) {
+			submachineStateIds = submachineStateIds == null ?
+					new int[1] :
+					Arrays.copyOf(submachineStateIds, level);
+		}
+		submachineStateIds[level - 1] = id;
+	}
+
+	/** Discards the states of any submachines deeper than the given level. */
+	void truncate(int level) {
+		if(level >= getDepth() - 1) {
+			return;
+		}
+
+		submachineStateIds = level == 0 ?
+				null :
+				Arrays.copyOf(submachineStateIds, level);
+	}
+
+	/** @return The state ids held by the machine, outermost first. */
+	@Nonnull
+	int[] getStateIds() {
+		int[] stateIds = new int[getDepth()];
+		for(int level = 0; level < stateIds.length; level++) {
+			stateIds[level] = getStateId(level);
+		}
+
+		return stateIds;
+	}
+
+	@Nonnull
+	@Override
+	public String toString() {
+		return super.toString() + "[stateIds=" + Arrays.toString(getStateIds()) + "]";
+	}
+}
@@ -0,0 +1,61 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.CompiledStateGraph;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+
+import javax.annotation.Nonnull;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A compiled graph, along with the compiled graph of each {@link SubmachineState} reachable from
+ * it, so that every state a machine and its nested submachines can be in has an id.
+ */
+final class CompiledGraphHierarchy<TransitionInput> {
+	private final CompiledStateGraph<TransitionInput> graph;
+	private final Map<SubmachineState<TransitionInput>, CompiledStateGraph<TransitionInput>> graphsBySubmachineState = new IdentityHashMap<>();
+
+	CompiledGraphHierarchy(@Nonnull StateGraph<TransitionInput> graph) {
+		this.graph = compile(graph);
+	}
+
+	/** Compiles the graph, along with the graph of each submachine state within it. */
+	@Nonnull
+	private CompiledStateGraph<TransitionInput> compile(@Nonnull StateGraph<TransitionInput> graph) {
+		CompiledStateGraph<TransitionInput> compiledGraph = graph instanceof CompiledStateGraph ?
+				(CompiledStateGraph<TransitionInput>) graph :
+				graph.compile();
+
+		for(int stateId = 0; stateId < compiledGraph.getStateCount(); stateId++) {
+			State<TransitionInput> state = compiledGraph.getState(stateId);
+			if(state instanceof SubmachineState && !graphsBySubmachineState.containsKey(state)) {
+				SubmachineState<TransitionInput> submachineState = (SubmachineState<TransitionInput>) state;
+
+				// Reserve the entry, in case the submachine's graph contains the state itself.
+				graphsBySubmachineState.put(submachineState, null);
+				graphsBySubmachineState.put(submachineState, compile(submachineState.getStateGraph()));
+			}
+		}
+
+		return compiledGraph;
+	}
+
+	/** @return The compiled outermost graph. */
+	@Nonnull
+	CompiledStateGraph<TransitionInput> getGraph() {
+		return graph;
+	}
+
+	/** @return The number of distinct submachine states reachable from the outermost graph. */
+	int getSubmachineStateCount() {
+		return graphsBySubmachineState.size();
+	}
+
+	/** @return The compiled graph of the given submachine state. */
+	@Nonnull
+	CompiledStateGraph<TransitionInput> getSubmachineGraph(@Nonnull State<TransitionInput> submachineState) {
+		return graphsBySubmachineState.get(submachineState);
+	}
+}
@@ -0,0 +1,165 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.collection.ArrayQueue;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.input.InputManager;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Subclass of {@link StateMachine} for machines that are only ever used by a single thread, such as
+ * a machine per connection on an event loop. It uses no locks or atomic operations, making it the
+ * fastest configuration, but it is not safe for use by multiple threads. Inputs evaluated while the
+ * machine is already evaluating an input (e.g., by a listener) are still queued and evaluated
+ * afterwards.
+ * <p>
+ * If owner thread checking is enabled, the first thread to use the machine becomes its owner and
+ * an {@link IllegalStateException} is thrown if another thread uses it. This is intended to catch
+ * misuse during development.
+ */
+public class ConfinedStateMachine<MachineInput,TransitionInput> extends StateMachine<MachineInput,TransitionInput> {
+	private final boolean ownerThreadChecked;
+	private Thread ownerThread;
+	private boolean evaluating;
+
+	ConfinedStateMachine(@Nonnull StateGraph<TransitionInput> graph,
+			@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter,
+			@Nonnull EventListenerRegistry<TransitionInput> listeners,
+			boolean ownerThreadChecked) {
+		this(graph, new InputManager<>(inputAdapter, new ArrayQueue<>()), listeners, ownerThreadChecked);
+	}
+
+	ConfinedStateMachine(@Nonnull StateGraph<TransitionInput> graph,
+			@Nonnull InputManager<MachineInput, TransitionInput> inputManager,
+			@Nonnull EventListenerRegistry<TransitionInput> listeners,
+			boolean ownerThreadChecked) {
+		super(graph, inputManager, listeners);
+		this.ownerThreadChecked = ownerThreadChecked;
+	}
+
+	@Override
+	public void start() {
+		checkOwnerThread();
+		super.start();
+	}
+
+	@Override
+	public boolean evaluateInput(@Nullable MachineInput machineInput) {
+		evaluateInputOrThrow(machineInput);
+		return true;
+	}
+
+	/**
+	 * Provides the input to the machine's {@link InputAdapter} and evaluates the resulting
+	 * transition input(s). If the machine is already evaluating an input, the input is queued and
+	 * evaluated once the current one has been.
+	 *
+	 * @param machineInput Machine input from which transition inputs are generated to evaluate.
+	 */
+	@Override
+	public void evaluateInputOrThrow(@Nullable MachineInput machineInput) {
+		checkOwnerThread();
+
+		inputManager.queueInput(machineInput);
+		if(evaluating) {
+			return;
+		}
+
+		evaluateQueuedInputs();
+	}
+
+	@Override
+	@Nonnull
+	public EvaluationSummary<TransitionInput> evaluateInputs(@Nonnull Collection<? extends MachineInput> machineInputs) {
+		checkOwnerThread();
+
+		requireNonNull(machineInputs, "Machine inputs are required");
+		if(machineInputs.isEmpty()) {
+			return summarizeEvaluation(transitionCount, noValidTransitionCount);
+		}
+
+		inputManager.queueInputs(machineInputs);
+		if(evaluating) {
+			return EvaluationSummary.deferred();
+		}
+
+		long initialTransitionCount = transitionCount;
+		long initialNoValidTransitionCount = noValidTransitionCount;
+		evaluateQueuedInputs();
+
+		return summarizeEvaluation(initialTransitionCount, initialNoValidTransitionCount);
+	}
+
+	@Override
+	boolean isEvaluating() {
+		return evaluating;
+	}
+
+	@Override
+	boolean claimForDelegation() {
+		if(evaluating) {
+			return false;
+		}
+
+		evaluating = true;
+		return true;
+	}
+
+	@Override
+	void relinquishAfterDelegation() {
+		evaluating = false;
+		if(inputManager.hasNext()) {
+			evaluateQueuedInputs();
+		}
+	}
+
+	@Override
+	void abandonDelegation() {
+		evaluating = false;
+	}
+
+	private void evaluateQueuedInputs() {
+		evaluating = true;
+		try {
+			while(inputManager.hasNext()) {
+				evaluateTransitionInput(inputManager.next());
+			}
+		} finally {
+			evaluating = false;
+		}
+	}
+
+	@Override
+	public void transition(@Nonnull State<TransitionInput> newState, @Nonnull State<TransitionInput>... submachineStates) {
+		checkOwnerThread();
+		super.transition(newState, submachineStates);
+	}
+
+	@Override
+	@Nonnull
+	StateMachine<TransitionInput, TransitionInput> createSubmachine(@Nonnull StateGraph<TransitionInput> graph) {
+		// Nested machines are only used by this one, so they needn't check their thread.
+		return new ConfinedStateMachine<>(graph, new PassthroughInputAdapter<>(), eventListeners, false);
+	}
+
+	private void checkOwnerThread() {
+		if(!ownerThreadChecked) {
+			return;
+		}
+
+		Thread currentThread = Thread.currentThread();
+		if(ownerThread == null) {
+			ownerThread = currentThread;
+		} else if(ownerThread != currentThread) {
+			throw new IllegalStateException("Machine owned by thread (" + ownerThread.getName() +
+					") was used by thread (" + currentThread.getName() + ")");
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Summary of the transition inputs evaluated by a call to
+ * {@link StateMachine#evaluateInputs(Collection)}. Counts only include the {@link Transition}s
+ * followed, or not found, by the machine itself rather than by any nested submachine, but they do
+ * include inputs queued by other calls that were evaluated along with the batch.
+ */
+public class EvaluationSummary<TransitionInput> {
+	private static final EvaluationSummary<?> DEFERRED = new EvaluationSummary<>(0, 0, Collections.emptyList());
+
+	private final long transitionCount;
+	private final long noValidTransitionCount;
+	private final List<State<TransitionInput>> states;
+
+	EvaluationSummary(long transitionCount,
+			long noValidTransitionCount,
+			@Nonnull List<State<TransitionInput>> states) {
+		this.transitionCount = transitionCount;
+		this.noValidTransitionCount = noValidTransitionCount;
+		this.states = Collections.unmodifiableList(requireNonNull(states));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nonnull
+	static <TransitionInput> EvaluationSummary<TransitionInput> deferred() {
+		return (EvaluationSummary<TransitionInput>) DEFERRED;
+	}
+
+	/**
+	 * @return Whether evaluation of the inputs was left to another call already in progress, in
+	 * which case the summary has no counts or states.
+	 */
+	public boolean wasDeferred() {
+		return this == DEFERRED;
+	}
+
+	/** @return The number of transitions followed. */
+	public long getTransitionCount() {
+		return transitionCount;
+	}
+
+	/** @return The number of transition inputs for which no valid transition was found. */
+	public long getNoValidTransitionCount() {
+		return noValidTransitionCount;
+	}
+
+	/** @return The machine's states once the inputs were evaluated. See {@link StateMachine#getStates()}. */
+	@Nonnull
+	public List<State<TransitionInput>> getStates() {
+		return states;
+	}
+
+	/** @return The machine's own state once the inputs were evaluated. See {@link StateMachine#getState()}. */
+	@Nullable
+	public State<TransitionInput> getState() {
+		return states.isEmpty() ? null : states.get(0);
+	}
+
+	@Nonnull
+	@Override
+	public String toString() {
+		return super.toString() + "[transitionCount=" + transitionCount +
+				",noValidTransitionCount=" + noValidTransitionCount + ",states=" + states + "]";
+	}
+}
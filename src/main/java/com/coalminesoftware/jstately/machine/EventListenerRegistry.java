@@ -0,0 +1,212 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The {@link StateMachineEventListener}s of a machine, shared with its submachines. For each
+ * callback, the listeners that override it are held in an immutable array, so machines notify
+ * listeners without allocating an iterator, and do no work at all for callbacks that no listener
+ * overrides. Adding or removing a listener replaces every array at once, so listeners can be
+ * changed by any thread, including from a callback, while machines notify them.
+ */
+final class EventListenerRegistry<TransitionInput> {
+	private static final int BEFORE_EVALUATING_INPUT = 0;
+	private static final int AFTER_EVALUATING_INPUT = 1;
+	private static final int BEFORE_STATE_ENTERED = 2;
+	private static final int AFTER_STATE_ENTERED = 3;
+	private static final int BEFORE_STATE_EXITED = 4;
+	private static final int AFTER_STATE_EXITED = 5;
+	private static final int BEFORE_TRANSITION = 6;
+	private static final int AFTER_TRANSITION = 7;
+	private static final int NO_VALID_TRANSITION = 8;
+	private static final int BEFORE_COMPOSITE_STATE_ENTERED = 9;
+	private static final int AFTER_COMPOSITE_STATE_ENTERED = 10;
+	private static final int BEFORE_COMPOSITE_STATE_EXITED = 11;
+	private static final int AFTER_COMPOSITE_STATE_EXITED = 12;
+
+	// Indexed by the constants above
+	private static final String[] CALLBACK_NAMES = {
+			"beforeEvaluatingInput", "afterEvaluatingInput",
+			"beforeStateEntered", "afterStateEntered",
+			"beforeStateExited", "afterStateExited",
+			"beforeTransition", "afterTransition",
+			"noValidTransition",
+			"beforeCompositeStateEntered", "afterCompositeStateEntered",
+			"beforeCompositeStateExited", "afterCompositeStateExited" };
+
+	private static final Method[] CALLBACKS = findCallbacks();
+
+	/** For each listener class, whether it overrides each callback. */
+	private static final ClassValue<boolean[]> OVERRIDDEN_CALLBACKS = new ClassValue<boolean[]>() {
+		@Override
+		protected boolean[] computeValue(Class<?> listenerClass) {
+			boolean[] overridden = new boolean[CALLBACKS.length];
+			for(int callback = 0; callback < CALLBACKS.length; callback++) {
+				try {
+					Method method = listenerClass.getMethod(CALLBACKS[callback].getName(), CALLBACKS[callback].getParameterTypes());
+					overridden[callback] = method.getDeclaringClass() != StateMachineEventListener.class;
+				} catch(NoSuchMethodException | SecurityException e) {
+					// Notify the listener rather than risk missing an override.
+					overridden[callback] = true;
+				}
+			}
+
+			return overridden;
+		}
+	};
+
+	private final boolean modifiable;
+	private volatile Listeners<TransitionInput> listeners;
+
+	/**
+	 * @param listeners The initial listeners, which are copied.
+	 * @param modifiable Whether listeners can be added or removed.
+	 */
+	EventListenerRegistry(@Nonnull List<StateMachineEventListener<TransitionInput>> listeners, boolean modifiable) {
+		this.listeners = new Listeners<>(new ArrayList<>(requireNonNull(listeners, "Listener list is required")));
+		this.modifiable = modifiable;
+	}
+
+	/** @return An unmodifiable list of the listeners, in the order they're notified. */
+	@Nonnull
+	List<StateMachineEventListener<TransitionInput>> getListeners() {
+		return Collections.unmodifiableList(Arrays.asList(listeners.all));
+	}
+
+	/** @throws UnsupportedOperationException Thrown if the registry isn't modifiable. */
+	synchronized void add(@Nonnull StateMachineEventListener<TransitionInput> listener) {
+		checkModifiable();
+
+		List<StateMachineEventListener<TransitionInput>> newListeners = new ArrayList<>(Arrays.asList(listeners.all));
+		newListeners.add(requireNonNull(listener, "Listener is required"));
+		listeners = new Listeners<>(newListeners);
+	}
+
+	/** @throws UnsupportedOperationException Thrown if the registry isn't modifiable. */
+	synchronized void remove(@Nonnull StateMachineEventListener<TransitionInput> listener) {
+		checkModifiable();
+
+		List<StateMachineEventListener<TransitionInput>> newListeners = new ArrayList<>(Arrays.asList(listeners.all));
+		if(newListeners.remove(requireNonNull(listener, "Listener is required"))) {
+			listeners = new Listeners<>(newListeners);
+		}
+	}
+
+	private void checkModifiable() {
+		if(!modifiable) {
+			throw new UnsupportedOperationException("Listeners can't be added to or removed from this machine");
+		}
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeEvaluatingInputListeners() {
+		return listeners.byCallback[BEFORE_EVALUATING_INPUT];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterEvaluatingInputListeners() {
+		return listeners.byCallback[AFTER_EVALUATING_INPUT];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeStateEnteredListeners() {
+		return listeners.byCallback[BEFORE_STATE_ENTERED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterStateEnteredListeners() {
+		return listeners.byCallback[AFTER_STATE_ENTERED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeStateExitedListeners() {
+		return listeners.byCallback[BEFORE_STATE_EXITED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterStateExitedListeners() {
+		return listeners.byCallback[AFTER_STATE_EXITED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeTransitionListeners() {
+		return listeners.byCallback[BEFORE_TRANSITION];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterTransitionListeners() {
+		return listeners.byCallback[AFTER_TRANSITION];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getNoValidTransitionListeners() {
+		return listeners.byCallback[NO_VALID_TRANSITION];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeCompositeStateEnteredListeners() {
+		return listeners.byCallback[BEFORE_COMPOSITE_STATE_ENTERED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterCompositeStateEnteredListeners() {
+		return listeners.byCallback[AFTER_COMPOSITE_STATE_ENTERED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getBeforeCompositeStateExitedListeners() {
+		return listeners.byCallback[BEFORE_COMPOSITE_STATE_EXITED];
+	}
+
+	@Nonnull
+	StateMachineEventListener<TransitionInput>[] getAfterCompositeStateExitedListeners() {
+		return listeners.byCallback[AFTER_COMPOSITE_STATE_EXITED];
+	}
+
+	@Nonnull
+	private static Method[] findCallbacks() {
+		Method[] callbacks = new Method[CALLBACK_NAMES.length];
+		for(Method method : StateMachineEventListener.class.getMethods()) {
+			int callback = Arrays.asList(CALLBACK_NAMES).indexOf(method.getName());
+			if(callback == -1) {
+				throw new IllegalStateException("Unexpected callback: " + method.getName());
+			}
+			callbacks[callback] = method;
+		}
+
+		return callbacks;
+	}
+
+	/** An immutable snapshot of the listeners, and of those that override each callback. */
+	private static class Listeners<TransitionInput> {
+		private final StateMachineEventListener<TransitionInput>[] all;
+		private final StateMachineEventListener<TransitionInput>[][] byCallback;
+
+		@SuppressWarnings({"unchecked","rawtypes"})
+		private Listeners(@Nonnull List<StateMachineEventListener<TransitionInput>> listeners) {
+			all = listeners.toArray(new StateMachineEventListener[0]);
+			byCallback = new StateMachineEventListener[CALLBACKS.length][];
+
+			List<StateMachineEventListener<TransitionInput>> callbackListeners = new ArrayList<>(all.length);
+			for(int callback = 0; callback < CALLBACKS.length; callback++) {
+				for(StateMachineEventListener<TransitionInput> listener : all) {
+					if(OVERRIDDEN_CALLBACKS.get(listener.getClass())[callback]) {
+						callbackListeners.add(listener);
+					}
+				}
+
+				byCallback[callback] = callbackListeners.toArray(new StateMachineEventListener[0]);
+				callbackListeners.clear();
+			}
+		}
+	}
+}
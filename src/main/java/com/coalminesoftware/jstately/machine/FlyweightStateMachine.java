@@ -0,0 +1,330 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.CompiledStateGraph;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.CompositeState;
+import com.coalminesoftware.jstately.graph.state.FinalState;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs any number of {@link CompactMachine}s on a shared graph. Where a {@link StateMachine}
+ * carries its own input queue, listeners and submachines, a compact machine holds only the ids of
+ * its states, so very large numbers of machines can be kept in memory. An idle compact machine
+ * outside of any {@link SubmachineState} occupies 24 bytes on a typical 64-bit JVM.
+ * <p>
+ * Compact machines follow the same transitions, and notify the same state, composite and
+ * transition listeners, as a {@link StateMachine} with the same graph would. However, they don't
+ * queue inputs, adapt inputs or notify {@link com.coalminesoftware.jstately.machine.listener.StateMachineEventListener}s,
+ * and can't be moved to a state other than by evaluating inputs.
+ * <p>
+ * The graph, and the graph of every {@link SubmachineState} reachable from it, is compiled when the
+ * flyweight is created. Instances are immutable and can be used by multiple threads, but each
+ * compact machine must only be used by one thread at a time.
+ */
+public class FlyweightStateMachine<TransitionInput> {
+	private final CompiledGraphHierarchy<TransitionInput> graphs;
+	private final CompiledStateGraph<TransitionInput> graph;
+	private final boolean listenersNotified;
+	private final int maxDepth;
+
+	public FlyweightStateMachine(@Nonnull StateGraph<TransitionInput> graph) {
+		this(graph, true);
+	}
+
+	/**
+	 * @param maxDepth The number of nested machines whose states a compact machine may hold. A
+	 * transition that would nest them deeper isn't followed.
+	 */
+	FlyweightStateMachine(@Nonnull StateGraph<TransitionInput> graph, int maxDepth) {
+		this(new CompiledGraphHierarchy<>(requireNonNull(graph, "State graph is required")), true, maxDepth);
+	}
+
+	/**
+	 * @param listenersNotified Whether the listeners of the graph and its states, composites and
+	 * transitions are notified. If not, machines only move between states, as when replaying inputs.
+	 */
+	FlyweightStateMachine(@Nonnull StateGraph<TransitionInput> graph, boolean listenersNotified) {
+		this(new CompiledGraphHierarchy<>(requireNonNull(graph, "State graph is required")), listenersNotified);
+	}
+
+	FlyweightStateMachine(@Nonnull CompiledGraphHierarchy<TransitionInput> graphs, boolean listenersNotified) {
+		this(graphs, listenersNotified, Integer.MAX_VALUE);
+	}
+
+	private FlyweightStateMachine(@Nonnull CompiledGraphHierarchy<TransitionInput> graphs,
+			boolean listenersNotified,
+			int maxDepth) {
+		this.graphs = graphs;
+		graph = graphs.getGraph();
+		this.listenersNotified = listenersNotified;
+		this.maxDepth = maxDepth;
+	}
+
+	/** @return The compiled graph that the machines traverse. */
+	@Nonnull
+	public CompiledStateGraph<TransitionInput> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Creates a machine in the graph's start state, notifying the graph's start listener and the
+	 * listeners of the states entered, as {@link StateMachine#start()} does.
+	 *
+	 * @throws IllegalStateException Thrown if the start states of submachine graphs lead back to a
+	 * submachine state already entered, so submachines would be nested endlessly. Transitions into
+	 * such a state fail in the same way, before any listener is notified.
+	 */
+	@Nonnull
+	public CompactMachine<TransitionInput> start() {
+		CompactMachine<TransitionInput> machine = new CompactMachine<>(0);
+		start(machine);
+
+		return machine;
+	}
+
+	/** Moves the given machine, whatever its states, to the graph's start state as {@link #start()} does. */
+	void start(@Nonnull CompactMachine<TransitionInput> machine) {
+		checkDepth(0, graph.getStartState());
+		machine.truncate(0);
+		if(listenersNotified) {
+			graph.notifyStartListener();
+		}
+		enterState(machine, 0, graph, null, graph.getStartState());
+	}
+
+	/**
+	 * Evaluates the input on the given machine, following the first {@link Transition} that
+	 * considers itself valid for the input. While in a {@link SubmachineState}, the input is
+	 * evaluated by the submachine, as {@link StateMachine#evaluateInput(Object)} would do.
+	 *
+	 * @return Whether a valid transition was found.
+	 */
+	public boolean evaluateInput(@Nonnull CompactMachine<TransitionInput> machine, @Nullable TransitionInput input) {
+		return evaluateInput(requireNonNull(machine, "Machine is required"), 0, graph, input);
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean evaluateInput(@Nonnull CompactMachine<TransitionInput> machine,
+			int level,
+			@Nonnull CompiledStateGraph<TransitionInput> levelGraph,
+			@Nullable TransitionInput input) {
+		int stateId = machine.getStateId(level);
+		State<TransitionInput> state = levelGraph.getState(stateId);
+
+		// While in a submachine state, inputs are delegated. Only if the submachine is left in a
+		// FinalState is an input (FinalState#result) evaluated at this level.
+		if(state instanceof SubmachineState) {
+			CompiledStateGraph<TransitionInput> submachineGraph = graphs.getSubmachineGraph(state);
+			boolean transitioned = evaluateInput(machine, level + 1, submachineGraph, input);
+
+			State<TransitionInput> submachineState = submachineGraph.getState(machine.getStateId(level + 1));
+			if(!(submachineState instanceof FinalState)) {
+				return transitioned;
+			}
+			input = ((FinalState<TransitionInput>) submachineState).getResult();
+		}
+
+		Transition<TransitionInput> transition = levelGraph.findFirstValidTransitionFromState(stateId, input);
+		if(transition == null) {
+			return false;
+		}
+
+		followTransition(machine, level, levelGraph, state, transition, input);
+		return true;
+	}
+
+	/**
+	 * Evaluates the same input on each of the given machines. Rather than looking up a transition
+	 * for each machine, the transition is looked up once per distinct state the machines are in, and
+	 * then followed by every machine in that state, notifying listeners as
+	 * {@link #evaluateInput(CompactMachine, Object)} would. Machines are moved in iteration order.
+	 * <p>
+	 * This requires the transitions from each of those states to be pure (see {@link Transition#isPure()}),
+	 * as an impure predicate may not find the same transition for every machine. Machines in a
+	 * {@link SubmachineState} delegate the input to their submachine, and so evaluate it individually.
+	 * A machine that a listener moves, during the broadcast, into a state that no machine was in when
+	 * it began doesn't evaluate the input.
+	 *
+	 * @return The number of machines that followed a transition.
+	 * @throws IllegalStateException Thrown, before any machine has moved, if a machine is in a state
+	 * with an impure transition.
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public int broadcastInput(@Nonnull Collection<? extends CompactMachine<TransitionInput>> machines,
+			@Nullable TransitionInput input) {
+		requireNonNull(machines, "Machines are required");
+
+		// Resolve every occupied state's transition before moving any machine, so an impure state
+		// leaves every machine where it was.
+		Transition<TransitionInput>[] transitionsByStateId = new Transition[graph.getStateCount()];
+		boolean[] resolvedStateIds = new boolean[graph.getStateCount()];
+		for(CompactMachine<TransitionInput> machine : machines) {
+			int stateId = machine.getStateId(0);
+			if(!resolvedStateIds[stateId] && !(graph.getState(stateId) instanceof SubmachineState)) {
+				transitionsByStateId[stateId] = resolveBroadcastTransition(stateId, input);
+				resolvedStateIds[stateId] = true;
+			}
+		}
+
+		int transitionCount = 0;
+		for(CompactMachine<TransitionInput> machine : machines) {
+			int stateId = machine.getStateId(0);
+			State<TransitionInput> state = graph.getState(stateId);
+
+			if(state instanceof SubmachineState) {
+				if(evaluateInput(machine, 0, graph, input)) {
+					transitionCount++;
+				}
+				continue;
+			}
+
+			// A listener may have moved the machine into a state whose transitions weren't resolved,
+			// and resolving them now could fail after other machines have moved.
+			if(!resolvedStateIds[stateId]) {
+				continue;
+			}
+
+			Transition<TransitionInput> transition = transitionsByStateId[stateId];
+			if(transition != null) {
+				followTransition(machine, 0, graph, state, transition, input);
+				transitionCount++;
+			}
+		}
+
+		return transitionCount;
+	}
+
+	@Nullable
+	private Transition<TransitionInput> resolveBroadcastTransition(int stateId, @Nullable TransitionInput input) {
+		if(!graph.isPure(stateId)) {
+			throw new IllegalStateException("Inputs can't be broadcast to machines in a state with impure transitions: " +
+					graph.getState(stateId));
+		}
+
+		return graph.findFirstValidTransitionFromState(stateId, input);
+	}
+
+	private void followTransition(@Nonnull CompactMachine<TransitionInput> machine,
+			int level,
+			@Nonnull CompiledStateGraph<TransitionInput> levelGraph,
+			@Nonnull State<TransitionInput> state,
+			@Nonnull Transition<TransitionInput> transition,
+			@Nullable TransitionInput input) {
+		State<TransitionInput> head = transition.getHead();
+		checkDepth(level, head);
+		exitState(machine, level, levelGraph, state, head);
+		if(listenersNotified) {
+			transition.notifyTransitionListener(input);
+		}
+		enterState(machine, level, levelGraph, state, head);
+	}
+
+	/**
+	 * @throws IllegalStateException Thrown if entering the state at the given level would nest
+	 * submachines deeper than the maximum depth, or endlessly.
+	 */
+	private void checkDepth(int level, @Nonnull State<TransitionInput> state) {
+		int depth = level + 1;
+		int submachineStatesEntered = 0;
+		while(state instanceof SubmachineState) {
+			if(depth == maxDepth) {
+				throw new IllegalStateException("Machine's submachines would be nested beyond the max depth of " + maxDepth);
+			}
+			// Entering more submachine states than there are means one of them would be entered
+			// again, and with it the same start states, endlessly.
+			if(++submachineStatesEntered > graphs.getSubmachineStateCount()) {
+				throw new IllegalStateException("Machine's submachines would be nested endlessly, as their start states lead back to " + state);
+			}
+
+			state = graphs.getSubmachineGraph(state).getStartState();
+			depth++;
+		}
+	}
+
+	/** Exits the state at the given level, after exiting the states of any nested submachines. */
+	private void exitState(@Nonnull CompactMachine<TransitionInput> machine,
+			int level,
+			@Nonnull CompiledStateGraph<TransitionInput> levelGraph,
+			@Nonnull State<TransitionInput> state,
+			@Nullable State<TransitionInput> newState) {
+		if(state instanceof SubmachineState) {
+			CompiledStateGraph<TransitionInput> submachineGraph = graphs.getSubmachineGraph(state);
+			State<TransitionInput> submachineState = submachineGraph.getState(machine.getStateId(level + 1));
+			exitState(machine, level + 1, submachineGraph, submachineState, null);
+			machine.truncate(level);
+		}
+
+		if(listenersNotified) {
+			state.notifyExitListener();
+
+			List<CompositeState<TransitionInput>> composites = levelGraph.getCompositesExited(state, newState);
+			for(int i = 0; i < composites.size(); i++) {
+				composites.get(i).notifyExitListener();
+			}
+		}
+	}
+
+	/** Enters the state at the given level, starting a submachine if it's a submachine state. */
+	private void enterState(@Nonnull CompactMachine<TransitionInput> machine,
+			int level,
+			@Nonnull CompiledStateGraph<TransitionInput> levelGraph,
+			@Nullable State<TransitionInput> previousState,
+			@Nonnull State<TransitionInput> newState) {
+		if(listenersNotified) {
+			List<CompositeState<TransitionInput>> composites = levelGraph.getCompositesEntered(previousState, newState);
+			for(int i = 0; i < composites.size(); i++) {
+				composites.get(i).notifyEntranceListener();
+			}
+
+			newState.notifyEntranceListener();
+		}
+		machine.setStateId(level, levelGraph.getStateId(newState));
+
+		if(newState instanceof SubmachineState) {
+			CompiledStateGraph<TransitionInput> submachineGraph = graphs.getSubmachineGraph(newState);
+			if(listenersNotified) {
+				submachineGraph.notifyStartListener();
+			}
+			enterState(machine, level + 1, submachineGraph, null, submachineGraph.getStartState());
+		}
+	}
+
+	/**
+	 * @return The given machine's state, followed by the states of any nested submachines.
+	 * @see StateMachine#getStates()
+	 */
+	@Nonnull
+	public List<State<TransitionInput>> getStates(@Nonnull CompactMachine<TransitionInput> machine) {
+		List<State<TransitionInput>> states = new ArrayList<>(machine.getDepth());
+		CompiledStateGraph<TransitionInput> levelGraph = graph;
+		for(int level = 0; level < machine.getDepth(); level++) {
+			State<TransitionInput> state = levelGraph.getState(machine.getStateId(level));
+			states.add(state);
+
+			if(state instanceof SubmachineState) {
+				levelGraph = graphs.getSubmachineGraph(state);
+			}
+		}
+
+		return states;
+	}
+
+	/**
+	 * @return The given machine's own state, without the states of any nested submachines.
+	 * @see StateMachine#getState()
+	 */
+	@Nonnull
+	public State<TransitionInput> getState(@Nonnull CompactMachine<TransitionInput> machine) {
+		return graph.getState(machine.getStateId(0));
+	}
+}
@@ -0,0 +1,21 @@
+package com.coalminesoftware.jstately.machine;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the snapshots (see {@link StateSnapshotCodec}) of machines a {@link MachineCache} has
+ * hibernated, keyed as in the cache. Implementations may keep snapshots in memory or in a local
+ * store; they're only used by the cache's thread.
+ */
+public interface HibernationStore<Key> {
+	/** Stores the key's snapshot, replacing any it had. */
+	void put(@Nonnull Key key, @Nonnull byte[] snapshot);
+
+	/** @return The key's snapshot, or null if it has none. */
+	@Nullable
+	byte[] get(@Nonnull Key key);
+
+	/** Removes the key's snapshot, if it has one. */
+	void remove(@Nonnull Key key);
+}
@@ -0,0 +1,34 @@
+package com.coalminesoftware.jstately.machine;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/** Keeps hibernated machines' snapshots on the heap, at a few bytes each. Not safe for use by multiple threads. */
+public class InMemoryHibernationStore<Key> implements HibernationStore<Key> {
+	private final Map<Key, byte[]> snapshotsByKey = new HashMap<>();
+
+	@Override
+	public void put(@Nonnull Key key, @Nonnull byte[] snapshot) {
+		snapshotsByKey.put(requireNonNull(key, "Key is required"), requireNonNull(snapshot, "Snapshot is required"));
+	}
+
+	@Override
+	@Nullable
+	public byte[] get(@Nonnull Key key) {
+		return snapshotsByKey.get(key);
+	}
+
+	@Override
+	public void remove(@Nonnull Key key) {
+		snapshotsByKey.remove(key);
+	}
+
+	/** @return The number of snapshots held. */
+	public int size() {
+		return snapshotsByKey.size();
+	}
+}
@@ -0,0 +1,119 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.IntStateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.transition.IntTransition;
+import com.coalminesoftware.jstately.machine.input.IntInputAdapter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.function.IntConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Counterpart of {@link StateMachine} that traverses an {@link IntStateGraph}. Its
+ * {@link IntInputAdapter} passes primitive transition inputs straight to the machine, so evaluating
+ * them (for example, each character of a string) allocates nothing.
+ * <p>
+ * Unlike {@link StateMachine}, an IntStateMachine is not safe for use by multiple threads. An
+ * input evaluated while the machine is already evaluating one, such as from a transition listener,
+ * is queued and evaluated once the current input has been.
+ */
+public class IntStateMachine<MachineInput> {
+	private final IntStateGraph stateGraph;
+	private final IntInputAdapter<MachineInput> inputAdapter;
+	private final IntConsumer transitionInputEvaluator = this::evaluateTransitionInput;
+	private final Queue<MachineInput> pendingInputs = new LinkedList<>();
+
+	private State<Integer> currentState;
+	private boolean evaluating;
+
+	IntStateMachine(@Nonnull IntStateGraph graph, @Nonnull IntInputAdapter<MachineInput> inputAdapter) {
+		stateGraph = requireNonNull(graph, "A state graph is required.");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+	}
+
+	/**
+	 * Initialize the machine to its start state, calling its {@link State#notifyEntranceListener()} method.
+	 *
+	 * @throws IllegalStateException thrown if the machine has already been started.
+	 */
+	public void start() {
+		if(hasStarted()) {
+			throw new IllegalStateException("Machine has already started.");
+		}
+
+		stateGraph.notifyStartListener();
+		enterState(stateGraph.getStartState());
+	}
+
+	/** @return Whether the machine has a current state. */
+	public boolean hasStarted() {
+		return currentState != null;
+	}
+
+	/**
+	 * Provides the input to the machine's {@link IntInputAdapter} and evaluates the resulting
+	 * transition input(s). For each transition input, the machine follows the first
+	 * {@link IntTransition} that considers itself valid for the input.
+	 *
+	 * @param machineInput Machine input from which transition inputs are generated to evaluate.
+	 * @throws IllegalStateException Thrown if the machine has not started.
+	 */
+	public void evaluateInput(@Nullable MachineInput machineInput) {
+		if(evaluating) {
+			pendingInputs.add(machineInput);
+			return;
+		}
+
+		evaluating = true;
+		try {
+			inputAdapter.adaptInput(machineInput, transitionInputEvaluator);
+			while(!pendingInputs.isEmpty()) {
+				inputAdapter.adaptInput(pendingInputs.remove(), transitionInputEvaluator);
+			}
+		} finally {
+			// Inputs queued by an evaluation that failed are discarded along with it.
+			pendingInputs.clear();
+			evaluating = false;
+		}
+	}
+
+	private void evaluateTransitionInput(int input) {
+		if(!hasStarted()) {
+			throw new IllegalStateException("Machine has not started.");
+		}
+
+		IntTransition transition = stateGraph.findFirstValidTransitionFromState(currentState, input);
+		if(transition != null) {
+			currentState.notifyExitListener();
+			transition.notifyTransitionListener(input);
+			enterState(transition.getHead());
+		}
+	}
+
+	/**
+	 * Exits the machine's current state and enters the given state. Explicitly setting the
+	 * machine's state should generally be avoided in favor of evaluating inputs.
+	 */
+	public void transition(@Nonnull State<Integer> newState) {
+		requireNonNull(newState, "New state is required");
+		if(currentState != null) {
+			currentState.notifyExitListener();
+		}
+		enterState(newState);
+	}
+
+	private void enterState(@Nonnull State<Integer> newState) {
+		newState.notifyEntranceListener();
+		currentState = newState;
+	}
+
+	@Nullable
+	public State<Integer> getState() {
+		return currentState;
+	}
+}
@@ -0,0 +1,32 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.IntStateGraph;
+import com.coalminesoftware.jstately.machine.input.CharSequenceInputAdapter;
+import com.coalminesoftware.jstately.machine.input.IntInputAdapter;
+
+import javax.annotation.Nonnull;
+
+import static java.util.Objects.requireNonNull;
+
+public class IntStateMachineBuilder<MachineInput> {
+	private final IntStateGraph stateGraph;
+	private final IntInputAdapter<MachineInput> inputAdapter;
+
+	/** Builds a machine that evaluates each character of its input, using a {@link CharSequenceInputAdapter}. */
+	@Nonnull
+	public static IntStateMachineBuilder<CharSequence> forCharSequences(@Nonnull IntStateGraph stateGraph) {
+		return new IntStateMachineBuilder<>(stateGraph, new CharSequenceInputAdapter());
+	}
+
+	public IntStateMachineBuilder(
+			@Nonnull IntStateGraph stateGraph,
+			@Nonnull IntInputAdapter<MachineInput> inputAdapter) {
+		this.stateGraph = requireNonNull(stateGraph, "State graph is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+	}
+
+	@Nonnull
+	public IntStateMachine<MachineInput> build() {
+		return new IntStateMachine<>(stateGraph, inputAdapter);
+	}
+}
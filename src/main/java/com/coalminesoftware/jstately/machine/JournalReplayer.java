@@ -0,0 +1,98 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rebuilds a machine's states from a snapshot taken by a {@link StateSnapshotCodec} and the inputs
+ * appended to an {@link InputJournal} after the snapshot was taken. Replayed inputs are adapted by
+ * the machine's own {@link InputAdapter} and evaluated in the order they were journaled, so the
+ * machine ends up in the states it was in after evaluating the last journaled input. Replayed
+ * inputs aren't appended to the journal again.
+ * <p>
+ * Listeners are either notified as if the machine were evaluating the inputs anew, or suppressed,
+ * in which case the machine's states are computed on the graph alone and restored at the end.
+ * Restoring from the snapshot itself never notifies listeners.
+ * <p>
+ * Instances are immutable and can be used by multiple threads.
+ */
+public class JournalReplayer<MachineInput,TransitionInput> {
+	private final StateSnapshotCodec<TransitionInput> snapshotCodec;
+	private final FlyweightStateMachine<TransitionInput> silentFlyweight;
+	private final boolean listenersNotified;
+
+	/**
+	 * @param listenersNotified Whether the machine's event listeners, and the listeners of the graph
+	 * and its states, composites and transitions, are notified while inputs are replayed.
+	 */
+	public JournalReplayer(@Nonnull StateGraph<TransitionInput> graph, boolean listenersNotified) {
+		CompiledGraphHierarchy<TransitionInput> graphs = new CompiledGraphHierarchy<>(requireNonNull(graph, "State graph is required"));
+		snapshotCodec = new StateSnapshotCodec<>(graphs);
+		silentFlyweight = listenersNotified ? null : new FlyweightStateMachine<>(graphs, false);
+		this.listenersNotified = listenersNotified;
+	}
+
+	/**
+	 * Restores the machine from the snapshot, then evaluates every input journaled from the given
+	 * sequence number onwards. Without a snapshot, or with a snapshot of an unstarted machine, the
+	 * machine is started first. The machine must not be evaluating inputs while it's replayed.
+	 *
+	 * @param fromSequence The sequence number of the first input journaled after the snapshot was
+	 * taken. See {@link InputJournal#getNextSequence()}.
+	 * @return The sequence number following the last input replayed.
+	 * @throws IOException Thrown if the journal can't be read.
+	 */
+	public long replay(@Nonnull StateMachine<MachineInput,TransitionInput> machine,
+			@Nullable byte[] snapshot,
+			@Nonnull InputJournal<MachineInput> journal,
+			long fromSequence) throws IOException {
+		requireNonNull(machine, "Machine is required");
+		requireNonNull(journal, "Journal is required");
+		InputAdapter<MachineInput,TransitionInput> inputAdapter = machine.inputManager.getInputAdapter();
+
+		if(listenersNotified) {
+			if(snapshot == null) {
+				machine.restoreStates(Collections.emptyList());
+			} else {
+				snapshotCodec.restore(machine, snapshot);
+			}
+			if(!machine.hasStarted()) {
+				machine.start();
+			}
+
+			return journal.forEach(fromSequence, input -> {
+				Iterator<TransitionInput> transitionInputs = inputAdapter.adaptInput(input);
+				while(transitionInputs.hasNext()) {
+					machine.evaluateTransitionInput(transitionInputs.next());
+				}
+			});
+		}
+
+		CompactMachine<TransitionInput> compactMachine = snapshot == null ?
+				null :
+				snapshotCodec.restoreIfStarted(snapshot);
+		if(compactMachine == null) {
+			compactMachine = silentFlyweight.start();
+		}
+
+		CompactMachine<TransitionInput> replayedMachine = compactMachine;
+		long nextSequence = journal.forEach(fromSequence, input -> {
+			Iterator<TransitionInput> transitionInputs = inputAdapter.adaptInput(input);
+			while(transitionInputs.hasNext()) {
+				silentFlyweight.evaluateInput(replayedMachine, transitionInputs.next());
+			}
+		});
+
+		machine.restoreStates(silentFlyweight.getStates(replayedMachine));
+		return nextSequence;
+	}
+}
@@ -0,0 +1,321 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.CompiledStateGraph;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.machine.listener.MachineArrayListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A fixed number of independent machines sharing a graph, whose states are stored together as an
+ * array of state ids (see {@link CompiledStateGraph#getStateId(State)}). Machines are identified by
+ * their index in the array and all start in the graph's start state.
+ * <p>
+ * Rather than evaluating inputs one machine at a time, the array evaluates a column of inputs (one
+ * per machine) across every machine at once, splitting the machines between the threads of a
+ * {@link ForkJoinPool}. Transitions' predicates must therefore be safe for use by multiple threads.
+ * <p>
+ * The listeners of the graph's states, composites and transitions are not notified, as per-machine
+ * callbacks would defeat the purpose of the array. Instead, {@link MachineArrayListener}s are
+ * notified once per column, with the transition each machine followed. Submachine states aren't
+ * supported.
+ * <p>
+ * Instances are not safe for use by multiple threads, apart from the array's own use of the pool.
+ */
+public class MachineArray<TransitionInput> {
+	private static final int UNRESOLVED = -1;
+
+	private final CompiledStateGraph<TransitionInput> graph;
+	private final int[] stateIds;
+	private final ForkJoinPool pool;
+	private final int segmentSize;
+	private final List<MachineArrayListener<TransitionInput>> listeners = new ArrayList<>();
+	private Step<TransitionInput> step;
+	private int[] headIdsByStateId;
+	private Transition<TransitionInput>[] transitionsByStateId;
+
+	/** Creates an array whose inputs are evaluated using the common pool. */
+	public MachineArray(@Nonnull StateGraph<TransitionInput> graph, int machineCount) {
+		this(graph, machineCount, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @throws IllegalArgumentException Thrown if the graph contains a {@link SubmachineState}.
+	 */
+	public MachineArray(@Nonnull StateGraph<TransitionInput> graph, int machineCount, @Nonnull ForkJoinPool pool) {
+		requireNonNull(graph, "State graph is required");
+		this.graph = graph instanceof CompiledStateGraph ?
+				(CompiledStateGraph<TransitionInput>) graph :
+				graph.compile();
+		for(int stateId = 0; stateId < this.graph.getStateCount(); stateId++) {
+			if(this.graph.getState(stateId) instanceof SubmachineState) {
+				throw new IllegalArgumentException("Machine arrays do not support submachine states");
+			}
+		}
+
+		// Every machine starts in the start state, whose id is zero.
+		stateIds = new int[machineCount];
+		this.pool = requireNonNull(pool, "Pool is required");
+
+		// Split the machines into a few segments per thread, so threads that finish early can steal
+		// work from the others, but not so many that splitting dominates.
+		segmentSize = Math.max(1024, machineCount / (pool.getParallelism() * 4));
+	}
+
+	public void addListener(@Nonnull MachineArrayListener<TransitionInput> listener) {
+		listeners.add(requireNonNull(listener, "Listener is required"));
+	}
+
+	public void removeListener(@Nonnull MachineArrayListener<TransitionInput> listener) {
+		listeners.remove(listener);
+	}
+
+	/** @return The number of machines in the array. */
+	public int size() {
+		return stateIds.length;
+	}
+
+	/** @return The graph the array's state ids refer to. */
+	@Nonnull
+	public CompiledStateGraph<TransitionInput> getGraph() {
+		return graph;
+	}
+
+	/** @return The state id of the machine at the given index. */
+	public int getStateId(int machine) {
+		return stateIds[machine];
+	}
+
+	/** @return The state of the machine at the given index. */
+	@Nonnull
+	public State<TransitionInput> getState(int machine) {
+		return graph.getState(stateIds[machine]);
+	}
+
+	/** @return A copy of every machine's state id, in index order. */
+	@Nonnull
+	public int[] getStateIds() {
+		return stateIds.clone();
+	}
+
+	/**
+	 * Evaluates each input on the machine with the same index, in parallel. Each machine follows the
+	 * first {@link Transition} that considers itself valid for its input.
+	 *
+	 * @param inputs One input per machine.
+	 * @return The number of machines that followed a transition.
+	 * @throws IllegalArgumentException Thrown if the number of inputs doesn't match the number of machines.
+	 */
+	public int evaluateInputs(@Nonnull TransitionInput[] inputs) {
+		return evaluateInputs(Arrays.asList(requireNonNull(inputs, "Inputs are required")));
+	}
+
+	/** @see #evaluateInputs(Object[]) */
+	public int evaluateInputs(@Nonnull List<? extends TransitionInput> inputs) {
+		if(requireNonNull(inputs, "Inputs are required").size() != stateIds.length) {
+			throw new IllegalArgumentException("Expected " + stateIds.length + " inputs but got " + inputs.size());
+		}
+
+		Transition<TransitionInput>[] transitions = prepareStep();
+
+		int transitionCount = pool.invoke(new Segment(inputs, transitions, 0, stateIds.length));
+
+		notifyListeners(transitionCount);
+		return transitionCount;
+	}
+
+	/**
+	 * Evaluates the same input on every machine. Rather than looking up a transition for each
+	 * machine, the transition is looked up once per distinct state the machines are in, and then
+	 * followed by every machine in that state. Listeners are notified as by {@link #evaluateInputs(List)}.
+	 * <p>
+	 * This requires the transitions from each of those states to be pure (see {@link Transition#isPure()}),
+	 * as an impure predicate may not find the same transition for every machine.
+	 *
+	 * @return The number of machines that followed a transition.
+	 * @throws IllegalStateException Thrown, before any machine has moved, if a machine is in a state
+	 * with an impure transition.
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public int broadcastInput(@Nullable TransitionInput input) {
+		if(headIdsByStateId == null) {
+			headIdsByStateId = new int[graph.getStateCount()];
+			transitionsByStateId = new Transition[graph.getStateCount()];
+		}
+		Arrays.fill(headIdsByStateId, UNRESOLVED);
+
+		// Resolve every occupied state's transition before moving any machine, so an impure state
+		// leaves every machine where it was.
+		for(int stateId : stateIds) {
+			if(headIdsByStateId[stateId] != UNRESOLVED) {
+				continue;
+			}
+			if(!graph.isPure(stateId)) {
+				throw new IllegalStateException("Inputs can't be broadcast to machines in a state with impure transitions: " +
+						graph.getState(stateId));
+			}
+
+			int position = graph.findFirstValidTransitionPosition(stateId, input);
+			if(position == CompiledStateGraph.NO_VALID_TRANSITION) {
+				transitionsByStateId[stateId] = null;
+				headIdsByStateId[stateId] = stateId;
+			} else {
+				transitionsByStateId[stateId] = graph.getTransition(stateId, position);
+				headIdsByStateId[stateId] = graph.getHeadId(stateId, position);
+			}
+		}
+
+		Transition<TransitionInput>[] transitions = prepareStep();
+
+		int transitionCount = 0;
+		for(int machine = 0; machine < stateIds.length; machine++) {
+			int stateId = stateIds[machine];
+			Transition<TransitionInput> transition = transitionsByStateId[stateId];
+			if(transition != null) {
+				stateIds[machine] = headIdsByStateId[stateId];
+				transitionCount++;
+			}
+			if(transitions != null) {
+				transitions[machine] = transition;
+			}
+		}
+
+		notifyListeners(transitionCount);
+		return transitionCount;
+	}
+
+	/**
+	 * Records the machines' current state ids in the step passed to listeners.
+	 *
+	 * @return The array in which to record each machine's transition, or null if there are no listeners.
+	 */
+	@Nullable
+	private Transition<TransitionInput>[] prepareStep() {
+		if(listeners.isEmpty()) {
+			return null;
+		}
+
+		if(step == null) {
+			step = new Step<>(graph, stateIds);
+		}
+		System.arraycopy(stateIds, 0, step.previousStateIds, 0, stateIds.length);
+		return step.transitions;
+	}
+
+	private void notifyListeners(int transitionCount) {
+		if(!listeners.isEmpty()) {
+			step.transitionCount = transitionCount;
+			for(MachineArrayListener<TransitionInput> listener : listeners) {
+				listener.afterEvaluatingInputs(step);
+			}
+		}
+	}
+
+	/** Evaluates the inputs of a range of machines, splitting the range if it's large. */
+	private class Segment extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends TransitionInput> inputs;
+		private final Transition<TransitionInput>[] transitions;
+		private final int from;
+		private final int to;
+
+		private Segment(@Nonnull List<? extends TransitionInput> inputs,
+				@Nullable Transition<TransitionInput>[] transitions,
+				int from,
+				int to) {
+			this.inputs = inputs;
+			this.transitions = transitions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if(to - from > segmentSize) {
+				int middle = (from + to) >>> 1;
+				Segment firstHalf = new Segment(inputs, transitions, from, middle);
+				firstHalf.fork();
+				int secondHalfCount = new Segment(inputs, transitions, middle, to).compute();
+				return firstHalf.join() + secondHalfCount;
+			}
+
+			int transitionCount = 0;
+			for(int machine = from; machine < to; machine++) {
+				int stateId = stateIds[machine];
+				int position = graph.findFirstValidTransitionPosition(stateId, inputs.get(machine));
+				if(position != CompiledStateGraph.NO_VALID_TRANSITION) {
+					stateIds[machine] = graph.getHeadId(stateId, position);
+					transitionCount++;
+				}
+				if(transitions != null) {
+					transitions[machine] = position == CompiledStateGraph.NO_VALID_TRANSITION ?
+							null :
+							graph.getTransition(stateId, position);
+				}
+			}
+
+			return transitionCount;
+		}
+	}
+
+	/** The outcome of evaluating a column of inputs, as passed to {@link MachineArrayListener}s. */
+	public static class Step<TransitionInput> {
+		private final CompiledStateGraph<TransitionInput> graph;
+		private final int[] stateIds;
+		private final int[] previousStateIds;
+		private final Transition<TransitionInput>[] transitions;
+		private int transitionCount;
+
+		@SuppressWarnings({"unchecked","rawtypes"})
+		private Step(@Nonnull CompiledStateGraph<TransitionInput> graph, @Nonnull int[] stateIds) {
+			this.graph = graph;
+			this.stateIds = stateIds;
+			previousStateIds = new int[stateIds.length];
+			transitions = new Transition[stateIds.length];
+		}
+
+		/** @return The graph the step's state ids refer to. */
+		@Nonnull
+		public CompiledStateGraph<TransitionInput> getGraph() {
+			return graph;
+		}
+
+		/** @return The number of machines the step covers. */
+		public int size() {
+			return stateIds.length;
+		}
+
+		/** @return The number of machines that followed a transition. */
+		public int getTransitionCount() {
+			return transitionCount;
+		}
+
+		/** @return The transition followed by the machine at the given index, or null if it found none. */
+		@Nullable
+		public Transition<TransitionInput> getTransition(int machine) {
+			return transitions[machine];
+		}
+
+		/** @return The state id of the machine at the given index before its input was evaluated. */
+		public int getPreviousStateId(int machine) {
+			return previousStateIds[machine];
+		}
+
+		/** @return The state id of the machine at the given index after its input was evaluated. */
+		public int getStateId(int machine) {
+			return stateIds[machine];
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Holds any number of machines, each identified by a key, of which only the recently used ones are
+ * kept live on the heap. A key's machine is created and started the first time an input is
+ * evaluated for it, using the graph chosen for the key by the cache's graph selector.
+ * <p>
+ * Once more than the maximum number of machines are live, or once a machine has been idle for
+ * longer than the idle timeout, the least recently used machines are hibernated: each is reduced
+ * to a snapshot of its states (see {@link StateSnapshotCodec}) in the cache's
+ * {@link HibernationStore}. The next input for a hibernated machine's key restores it from its
+ * snapshot, without notifying any listeners, before evaluating the input. Hibernation notifies no
+ * listeners either, so, to listeners, a machine appears to have been live all along.
+ * <p>
+ * Idle machines are hibernated whenever the cache is used, or by
+ * {@link #hibernateIdleMachines()}. Machines aren't hibernated while the cache is evaluating an
+ * input, so listeners can safely evaluate inputs for other keys.
+ * <p>
+ * Like {@link ConfinedStateMachine}, the cache is not safe for use by multiple threads. Keys can
+ * be sharded among several caches, each used by its own thread.
+ */
+public class MachineCache<Key,MachineInput,TransitionInput> {
+	private final Function<? super Key, StateGraph<TransitionInput>> graphSelector;
+	private final InputAdapter<MachineInput,TransitionInput> inputAdapter;
+	private final EventListenerRegistry<TransitionInput> eventListeners;
+	private final int maximumLiveMachineCount;
+	private final long idleTimeoutNanos;
+	private final HibernationStore<Key> hibernationStore;
+	private final LongSupplier clock;
+
+	// In access order, so the least recently used machine comes first.
+	private final LinkedHashMap<Key, LiveMachine<MachineInput,TransitionInput>> liveMachinesByKey = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<StateGraph<TransitionInput>, StateSnapshotCodec<TransitionInput>> codecsByGraph = new IdentityHashMap<>();
+	private int evaluationDepth;
+
+	MachineCache(@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput,TransitionInput> inputAdapter,
+			@Nonnull List<StateMachineEventListener<TransitionInput>> eventListeners,
+			int maximumLiveMachineCount,
+			long idleTimeoutNanos,
+			@Nonnull HibernationStore<Key> hibernationStore,
+			@Nonnull LongSupplier clock) {
+		this.graphSelector = requireNonNull(graphSelector, "Graph selector is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+		// Every machine shares the registry, so it can't be modified via any of them.
+		this.eventListeners = new EventListenerRegistry<>(eventListeners, false);
+		this.maximumLiveMachineCount = maximumLiveMachineCount;
+		this.idleTimeoutNanos = idleTimeoutNanos;
+		this.hibernationStore = requireNonNull(hibernationStore, "Hibernation store is required");
+		this.clock = requireNonNull(clock, "Clock is required");
+	}
+
+	/**
+	 * Evaluates the input on the key's machine, restoring the machine if it's hibernated, or creating
+	 * and starting it if the key has no machine.
+	 */
+	public void evaluateInput(@Nonnull Key key, @Nullable MachineInput machineInput) {
+		StateMachine<MachineInput,TransitionInput> machine = getLiveMachine(key, true);
+
+		evaluationDepth++;
+		try {
+			if(!machine.hasStarted()) {
+				machine.start();
+			}
+			machine.evaluateInput(machineInput);
+		} finally {
+			evaluationDepth--;
+		}
+
+		hibernateExcessMachines();
+	}
+
+	/**
+	 * Restores the key's machine if it's hibernated.
+	 *
+	 * @return The states of the key's machine (see {@link StateMachine#getStates()}), or null if the
+	 * key has no machine.
+	 */
+	@Nullable
+	public List<State<TransitionInput>> getStates(@Nonnull Key key) {
+		StateMachine<MachineInput,TransitionInput> machine = getLiveMachine(key, false);
+		if(machine == null) {
+			return null;
+		}
+
+		List<State<TransitionInput>> states = machine.getStates();
+		hibernateExcessMachines();
+		return states;
+	}
+
+	/** @return Whether the key's machine is live, as opposed to hibernated or nonexistent. */
+	public boolean isLive(@Nonnull Key key) {
+		return liveMachinesByKey.containsKey(requireNonNull(key, "Key is required"));
+	}
+
+	/** @return The number of live machines. */
+	public int getLiveMachineCount() {
+		return liveMachinesByKey.size();
+	}
+
+	/** Hibernates every machine that has been idle for longer than the idle timeout. */
+	public void hibernateIdleMachines() {
+		if(evaluationDepth > 0) {
+			return;
+		}
+
+		long now = clock.getAsLong();
+		Iterator<Map.Entry<Key, LiveMachine<MachineInput,TransitionInput>>> entries = liveMachinesByKey.entrySet().iterator();
+		while(entries.hasNext()) {
+			Map.Entry<Key, LiveMachine<MachineInput,TransitionInput>> entry = entries.next();
+			if(now - entry.getValue().lastUsedTime <= idleTimeoutNanos) {
+				// The rest were used more recently.
+				return;
+			}
+
+			hibernate(entry.getKey(), entry.getValue());
+			entries.remove();
+		}
+	}
+
+	/** Hibernates every live machine, such as before the cache's store is persisted. */
+	public void hibernateAll() {
+		if(evaluationDepth > 0) {
+			throw new IllegalStateException("Machines can't be hibernated while an input is being evaluated");
+		}
+
+		for(Map.Entry<Key, LiveMachine<MachineInput,TransitionInput>> entry : liveMachinesByKey.entrySet()) {
+			hibernate(entry.getKey(), entry.getValue());
+		}
+		liveMachinesByKey.clear();
+	}
+
+	/** @return The key's live machine, restored or created as necessary, or null if it has none and none is to be created. */
+	private StateMachine<MachineInput,TransitionInput> getLiveMachine(@Nonnull Key key, boolean created) {
+		requireNonNull(key, "Key is required");
+
+		LiveMachine<MachineInput,TransitionInput> liveMachine = liveMachinesByKey.get(key);
+		if(liveMachine == null) {
+			byte[] snapshot = hibernationStore.get(key);
+			if(snapshot == null && !created) {
+				return null;
+			}
+
+			StateGraph<TransitionInput> graph = requireNonNull(graphSelector.apply(key), "Graph selector returned no graph");
+			StateSnapshotCodec<TransitionInput> codec = codecsByGraph.computeIfAbsent(graph, StateSnapshotCodec::new);
+			liveMachine = new LiveMachine<>(new ConfinedStateMachine<>(graph, inputAdapter, eventListeners, false), codec);
+			if(snapshot != null) {
+				codec.restore(liveMachine.machine, snapshot);
+				hibernationStore.remove(key);
+			}
+
+			liveMachinesByKey.put(key, liveMachine);
+		}
+
+		liveMachine.lastUsedTime = clock.getAsLong();
+		return liveMachine.machine;
+	}
+
+	private void hibernateExcessMachines() {
+		if(evaluationDepth > 0) {
+			return;
+		}
+
+		Iterator<Map.Entry<Key, LiveMachine<MachineInput,TransitionInput>>> entries = liveMachinesByKey.entrySet().iterator();
+		for(int excessCount = liveMachinesByKey.size() - maximumLiveMachineCount; excessCount > 0; excessCount--) {
+			Map.Entry<Key, LiveMachine<MachineInput,TransitionInput>> entry = entries.next();
+			hibernate(entry.getKey(), entry.getValue());
+			entries.remove();
+		}
+
+		hibernateIdleMachines();
+	}
+
+	private void hibernate(@Nonnull Key key, @Nonnull LiveMachine<MachineInput,TransitionInput> liveMachine) {
+		hibernationStore.put(key, liveMachine.codec.snapshot(liveMachine.machine));
+	}
+
+	/** A live machine, the codec of its graph, and when it was last used. */
+	private static class LiveMachine<MachineInput,TransitionInput> {
+		private final StateMachine<MachineInput,TransitionInput> machine;
+		private final StateSnapshotCodec<TransitionInput> codec;
+		private long lastUsedTime;
+
+		private LiveMachine(@Nonnull StateMachine<MachineInput,TransitionInput> machine,
+				@Nonnull StateSnapshotCodec<TransitionInput> codec) {
+			this.machine = machine;
+			this.codec = codec;
+		}
+	}
+}
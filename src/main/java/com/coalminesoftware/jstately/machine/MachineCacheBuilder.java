@@ -0,0 +1,89 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+public class MachineCacheBuilder<Key,MachineInput,TransitionInput> {
+	private final Function<? super Key, StateGraph<TransitionInput>> graphSelector;
+	private final InputAdapter<MachineInput, TransitionInput> inputAdapter;
+	private final List<StateMachineEventListener<TransitionInput>> eventListeners = new ArrayList<>();
+	private int maximumLiveMachineCount = Integer.MAX_VALUE;
+	private long idleTimeoutNanos = Long.MAX_VALUE;
+	private HibernationStore<Key> hibernationStore;
+
+	/**
+	 * Builds a cache whose machines have the same input type as their graphs' transitions, and a
+	 * {@link PassthroughInputAdapter} as their adapter.
+	 */
+	@Nonnull
+	public static <Key,T> MachineCacheBuilder<Key,T,T> forMatchingInputTypes(@Nonnull Function<? super Key, StateGraph<T>> graphSelector) {
+		return new MachineCacheBuilder<>(graphSelector, new PassthroughInputAdapter<>());
+	}
+
+	/**
+	 * @param graphSelector Chooses the graph of each key's machine. It must choose the same graph
+	 * for a key every time, as a hibernated machine is restored on the graph chosen for its key.
+	 * @param inputAdapter Adapter shared by every machine.
+	 */
+	public MachineCacheBuilder(
+			@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter) {
+		this.graphSelector = requireNonNull(graphSelector, "Graph selector is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+	}
+
+	/** Adds a listener to every machine. */
+	@Nonnull
+	public MachineCacheBuilder<Key,MachineInput,TransitionInput> addEventListener(@Nonnull StateMachineEventListener<TransitionInput> listener) {
+		eventListeners.add(requireNonNull(listener, "Listener is required"));
+		return this;
+	}
+
+	/** Sets the number of machines kept live before the least recently used are hibernated. Unlimited by default. */
+	@Nonnull
+	public MachineCacheBuilder<Key,MachineInput,TransitionInput> setMaximumLiveMachineCount(int maximumLiveMachineCount) {
+		if(maximumLiveMachineCount < 1) {
+			throw new IllegalArgumentException("At least one live machine is required");
+		}
+
+		this.maximumLiveMachineCount = maximumLiveMachineCount;
+		return this;
+	}
+
+	/** Sets how long a machine can go unused before it's hibernated. Unlimited by default. */
+	@Nonnull
+	public MachineCacheBuilder<Key,MachineInput,TransitionInput> setIdleTimeout(long idleTimeout, @Nonnull TimeUnit unit) {
+		if(idleTimeout < 0) {
+			throw new IllegalArgumentException("Idle timeout can't be negative");
+		}
+
+		idleTimeoutNanos = requireNonNull(unit, "Unit is required").toNanos(idleTimeout);
+		return this;
+	}
+
+	/** Sets the store of hibernated machines' snapshots, which defaults to an {@link InMemoryHibernationStore}. */
+	@Nonnull
+	public MachineCacheBuilder<Key,MachineInput,TransitionInput> setHibernationStore(@Nonnull HibernationStore<Key> hibernationStore) {
+		this.hibernationStore = requireNonNull(hibernationStore, "Hibernation store is required");
+		return this;
+	}
+
+	@Nonnull
+	public MachineCache<Key,MachineInput,TransitionInput> build() {
+		HibernationStore<Key> store = hibernationStore == null ?
+				new InMemoryHibernationStore<>() :
+				hibernationStore;
+
+		return new MachineCache<>(graphSelector, inputAdapter, eventListeners, maximumLiveMachineCount, idleTimeoutNanos, store, System::nanoTime);
+	}
+}
@@ -0,0 +1,35 @@
+package com.coalminesoftware.jstately.machine;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Provides executors suited to running machines, for use with
+ * {@link StateMachineBuilder#buildAsync(java.util.concurrent.Executor)} and
+ * {@link MachineRuntimeBuilder#setVirtualThreaded(boolean)}.
+ * <p>
+ * The library is a multi-release JAR. When run on Java 21 or later, a version of this class that
+ * uses virtual threads is loaded in place of this one, which only exists so the API is the same on
+ * earlier versions.
+ */
+public final class MachineExecutors {
+	private MachineExecutors() { }
+
+	/** @return Whether virtual threads are supported by the running JVM, which requires Java 21 or later. */
+	public static boolean areVirtualThreadsAvailable() {
+		return false;
+	}
+
+	/**
+	 * Creates an executor that runs each task on a new virtual thread. When a machine's listeners
+	 * block, such as an entrance listener performing I/O, the virtual thread evaluating its inputs
+	 * parks rather than occupying a platform thread.
+	 *
+	 * @throws UnsupportedOperationException Thrown if virtual threads aren't available.
+	 * @see #areVirtualThreadsAvailable()
+	 */
+	@Nonnull
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+	}
+}
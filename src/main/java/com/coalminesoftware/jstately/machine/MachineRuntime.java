@@ -0,0 +1,211 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs any number of machines, each identified by a key, on a fixed number of worker threads (or,
+ * in virtual-threaded mode, on virtual threads started as needed). A
+ * key's machine is created and started the first time an input is submitted for it, using the
+ * graph chosen for the key by the runtime's graph selector.
+ * <p>
+ * Each key's inputs are evaluated one at a time, in the order they were submitted, but inputs for
+ * different keys are evaluated in parallel. Only machines with pending inputs are scheduled, so
+ * idle machines cost nothing but memory. Workers that run out of machines to evaluate steal
+ * scheduled machines from other workers' queues.
+ * <p>
+ * In virtual-threaded mode, each scheduled machine evaluates its inputs on a new virtual thread, so
+ * listeners that block park the virtual thread instead of occupying a worker. This requires Java 21
+ * or later. See {@link MachineRuntimeBuilder#setVirtualThreaded(boolean)}.
+ * <p>
+ * A machine evaluates at most {@value #INPUTS_PER_TURN} inputs before making way for other
+ * scheduled machines, so a busy key can't starve the rest.
+ */
+public class MachineRuntime<Key,MachineInput,TransitionInput> {
+	static final int INPUTS_PER_TURN = 64;
+
+	private static final Object NULL_INPUT = new Object();
+
+	private final Function<? super Key, StateGraph<TransitionInput>> graphSelector;
+	private final InputAdapter<MachineInput,TransitionInput> inputAdapter;
+	private final EventListenerRegistry<TransitionInput> eventListeners;
+	private final BiConsumer<? super Key, ? super RuntimeException> exceptionHandler;
+	private final ExecutorService workers;
+	private final ConcurrentHashMap<Key, MachineSlot> slotsByKey = new ConcurrentHashMap<>();
+
+	MachineRuntime(@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput,TransitionInput> inputAdapter,
+			@Nonnull List<StateMachineEventListener<TransitionInput>> eventListeners,
+			@Nullable BiConsumer<? super Key, ? super RuntimeException> exceptionHandler,
+			@Nonnull ExecutorService workers) {
+		this.graphSelector = requireNonNull(graphSelector, "Graph selector is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+		// Every machine shares the registry, so it can't be modified via any of them.
+		this.eventListeners = new EventListenerRegistry<>(eventListeners, false);
+		this.exceptionHandler = exceptionHandler == null ?
+				MachineRuntime::reportUncaughtException :
+				exceptionHandler;
+		this.workers = requireNonNull(workers, "Workers are required");
+	}
+
+	/**
+	 * Queues the input for evaluation by the key's machine, creating the machine if necessary.
+	 * Returns without waiting for the input to be evaluated. Safe for use by any thread, including
+	 * the runtime's own workers (e.g., from a listener).
+	 *
+	 * @throws java.util.concurrent.RejectedExecutionException Thrown if the runtime has been shut
+	 * down. The input is discarded, along with any submitted for the key at the same time.
+	 */
+	public void submit(@Nonnull Key key, @Nullable MachineInput machineInput) {
+		MachineSlot slot = slotsByKey.computeIfAbsent(requireNonNull(key, "Key is required"), this::createSlot);
+		slot.pendingInputs.add(machineInput == null ? NULL_INPUT : machineInput);
+
+		if(slot.pendingInputCount.getAndIncrement() == 0) {
+			try {
+				workers.execute(slot);
+			} catch(RejectedExecutionException e) {
+				// No worker will evaluate the slot's inputs, so discard them rather than leaving the
+				// count above zero, which would keep later inputs from scheduling the slot.
+				do {
+					slot.pendingInputs.poll();
+				} while(slot.pendingInputCount.decrementAndGet() != 0);
+				throw e;
+			}
+		}
+	}
+
+	/** @return Whether a machine has been created for the key. */
+	public boolean hasMachine(@Nonnull Key key) {
+		return slotsByKey.containsKey(key);
+	}
+
+	/** @return The number of machines the runtime has created. */
+	public int getMachineCount() {
+		return slotsByKey.size();
+	}
+
+	/**
+	 * Waits until no inputs are pending or being evaluated, or until the timeout elapses.
+	 *
+	 * @return Whether the runtime became idle before the timeout elapsed.
+	 * @throws UnsupportedOperationException Thrown if the runtime is virtual-threaded.
+	 */
+	public boolean awaitQuiescence(long timeout, @Nonnull TimeUnit unit) {
+		if(!(workers instanceof ForkJoinPool)) {
+			throw new UnsupportedOperationException("Quiescence can only be awaited with worker threads");
+		}
+
+		return ((ForkJoinPool) workers).awaitQuiescence(timeout, unit);
+	}
+
+	/**
+	 * Stops accepting inputs. Inputs that have already been submitted are still evaluated.
+	 *
+	 * @see #awaitTermination(long, TimeUnit)
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+
+	/**
+	 * Waits until every submitted input has been evaluated following {@link #shutdown()}, or until
+	 * the timeout elapses.
+	 *
+	 * @return Whether the runtime terminated before the timeout elapsed.
+	 */
+	public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+
+	@Nonnull
+	private MachineSlot createSlot(@Nonnull Key key) {
+		StateGraph<TransitionInput> graph = requireNonNull(graphSelector.apply(key), "Graph selector returned no graph");
+
+		// A machine is only ever evaluated by one worker at a time, and the slot's pending input
+		// count orders one worker's evaluation before the next, so it needn't be synchronized.
+		return new MachineSlot(key, new ConfinedStateMachine<>(graph, inputAdapter, eventListeners, false));
+	}
+
+	private static void reportUncaughtException(@Nonnull Object key, @Nonnull RuntimeException exception) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+	}
+
+	/** A machine and its pending inputs, scheduled on the workers while it has any. */
+	private class MachineSlot implements Runnable {
+		private final Key key;
+		private final StateMachine<MachineInput,TransitionInput> machine;
+		private final Queue<Object> pendingInputs = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendingInputCount = new AtomicInteger();
+
+		private MachineSlot(@Nonnull Key key, @Nonnull StateMachine<MachineInput,TransitionInput> machine) {
+			this.key = key;
+			this.machine = machine;
+		}
+
+		@Override
+		public void run() {
+			for(int evaluatedInputCount = 1; ; evaluatedInputCount++) {
+				boolean evaluated = false;
+				int remainingInputCount;
+				try {
+					evaluate(pendingInputs.poll());
+					evaluated = true;
+				} finally {
+					remainingInputCount = pendingInputCount.decrementAndGet();
+					if(!evaluated && remainingInputCount != 0) {
+						// An Error, or the exception handler, threw. Leave the remaining inputs to another turn.
+						reschedule();
+					}
+				}
+
+				if(remainingInputCount == 0) {
+					return;
+				}
+				if(evaluatedInputCount >= INPUTS_PER_TURN && reschedule()) {
+					return;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void evaluate(@Nonnull Object input) {
+			try {
+				if(!machine.hasStarted()) {
+					machine.start();
+				}
+				machine.evaluateInput(input == NULL_INPUT ? null : (MachineInput) input);
+			} catch(RuntimeException e) {
+				exceptionHandler.accept(key, e);
+			}
+		}
+
+		/** @return Whether the slot was rescheduled, which fails if the runtime has been shut down. */
+		private boolean reschedule() {
+			try {
+				workers.execute(this);
+				return true;
+			} catch(RejectedExecutionException e) {
+				// Keep evaluating, as no other worker will.
+				return false;
+			}
+		}
+	}
+}
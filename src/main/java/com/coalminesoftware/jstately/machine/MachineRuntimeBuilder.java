@@ -0,0 +1,111 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+public class MachineRuntimeBuilder<Key,MachineInput,TransitionInput> {
+	private final Function<? super Key, StateGraph<TransitionInput>> graphSelector;
+	private final InputAdapter<MachineInput, TransitionInput> inputAdapter;
+	private final List<StateMachineEventListener<TransitionInput>> eventListeners = new ArrayList<>();
+	private BiConsumer<? super Key, ? super RuntimeException> exceptionHandler;
+	private int workerCount = Runtime.getRuntime().availableProcessors();
+	private boolean virtualThreaded;
+
+	/**
+	 * Builds a runtime whose machines have the same input type as their graphs' transitions, and a
+	 * {@link PassthroughInputAdapter} as their adapter.
+	 */
+	@Nonnull
+	public static <Key,T> MachineRuntimeBuilder<Key,T,T> forMatchingInputTypes(@Nonnull Function<? super Key, StateGraph<T>> graphSelector) {
+		return new MachineRuntimeBuilder<>(graphSelector, new PassthroughInputAdapter<>());
+	}
+
+	/**
+	 * @param graphSelector Chooses the graph of each key's machine. Machines for different keys
+	 * can, and generally should, share graphs.
+	 * @param inputAdapter Adapter shared by every machine, so it must be safe for use by multiple
+	 * threads.
+	 */
+	public MachineRuntimeBuilder(
+			@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter) {
+		this.graphSelector = requireNonNull(graphSelector, "Graph selector is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+	}
+
+	/** Adds a listener to every machine. Listeners are shared, so they must be safe for use by multiple threads. */
+	@Nonnull
+	public MachineRuntimeBuilder<Key,MachineInput,TransitionInput> addEventListener(@Nonnull StateMachineEventListener<TransitionInput> listener) {
+		eventListeners.add(requireNonNull(listener, "Listener is required"));
+		return this;
+	}
+
+	/**
+	 * Sets the handler for exceptions thrown while a machine evaluates an input. By default, they're
+	 * passed to the worker thread's uncaught exception handler. Either way, the machine goes on to
+	 * evaluate its next input.
+	 */
+	@Nonnull
+	public MachineRuntimeBuilder<Key,MachineInput,TransitionInput> setExceptionHandler(@Nullable BiConsumer<? super Key, ? super RuntimeException> exceptionHandler) {
+		this.exceptionHandler = exceptionHandler;
+		return this;
+	}
+
+	/**
+	 * Sets the number of worker threads, which defaults to the number of available processors.
+	 * Ignored if the runtime is virtual-threaded.
+	 */
+	@Nonnull
+	public MachineRuntimeBuilder<Key,MachineInput,TransitionInput> setWorkerCount(int workerCount) {
+		if(workerCount < 1) {
+			throw new IllegalArgumentException("At least one worker is required");
+		}
+
+		this.workerCount = workerCount;
+		return this;
+	}
+
+	/**
+	 * Sets whether machines evaluate their inputs on virtual threads rather than on a fixed number of
+	 * worker threads, which suits listeners that block. Requires Java 21 or later.
+	 *
+	 * @see MachineExecutors#areVirtualThreadsAvailable()
+	 */
+	@Nonnull
+	public MachineRuntimeBuilder<Key,MachineInput,TransitionInput> setVirtualThreaded(boolean virtualThreaded) {
+		this.virtualThreaded = virtualThreaded;
+		return this;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException Thrown if the runtime is virtual-threaded but virtual
+	 * threads aren't available.
+	 */
+	@Nonnull
+	public MachineRuntime<Key,MachineInput,TransitionInput> build() {
+		if(virtualThreaded && !MachineExecutors.areVirtualThreadsAvailable()) {
+			throw new UnsupportedOperationException("Virtual-threaded runtimes require Java 21 or later, and the library to be loaded from its JAR");
+		}
+
+		ExecutorService workers = virtualThreaded ?
+				MachineExecutors.newVirtualThreadPerTaskExecutor() :
+				// Asynchronous mode processes each worker's local queue in FIFO order, which suits
+				// tasks that are never joined.
+				new ForkJoinPool(workerCount, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+		return new MachineRuntime<>(graphSelector, inputAdapter, eventListeners, exceptionHandler, workers);
+	}
+}
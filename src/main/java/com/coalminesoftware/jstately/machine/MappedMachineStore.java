@@ -0,0 +1,327 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.CompiledStateGraph;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A fixed number of machines sharing a graph, whose states are stored in a memory-mapped file
+ * rather than on the heap. Machines are identified by their index in the store and are evaluated
+ * directly against the file's contents, as by a {@link FlyweightStateMachine}, so the store needs
+ * no objects per machine and a reopened store resumes where it left off without loading anything.
+ * <p>
+ * Each machine occupies a slot holding the number of its states followed by the id of each (see
+ * {@link CompiledStateGraph#getStateId(State)}), outermost first. Slots have room for the states of a
+ * fixed number of nested machines, so a machine's submachines can't be nested deeper than the
+ * store's maximum depth. Machines start out unstarted. State ids are stable provided the graph is
+ * built the same way; see {@link StateSnapshotCodec}.
+ * <p>
+ * Writes reach the file when the operating system flushes the mapped pages, which it does even if
+ * the JVM exits abruptly, but not if the operating system itself fails. See {@link #flush()}.
+ * <p>
+ * Different machines may be evaluated by different threads at once, but each machine must only
+ * be used by one thread at a time.
+ */
+public class MappedMachineStore<TransitionInput> implements Closeable {
+	private static final int MAGIC = 0x4A53_4D53; // "JSMS"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	// Slots are mapped in segments, as a single mapping can't exceed 2GB.
+	private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final FlyweightStateMachine<TransitionInput> flyweight;
+	private final int machineCount;
+	private final int maxDepth;
+	private final int slotSize;
+	private final int slotsPerSegment;
+	private final MappedByteBuffer[] segments;
+	private final ThreadLocal<ScratchMachines<TransitionInput>> scratchMachines = ThreadLocal.withInitial(ScratchMachines::new);
+
+	private MappedMachineStore(@Nonnull FileChannel channel,
+			@Nonnull FlyweightStateMachine<TransitionInput> flyweight,
+			int machineCount,
+			int maxDepth) throws IOException {
+		this.channel = channel;
+		this.flyweight = flyweight;
+		this.machineCount = machineCount;
+		this.maxDepth = maxDepth;
+
+		slotSize = Integer.BYTES * (maxDepth + 1);
+		slotsPerSegment = MAX_SEGMENT_SIZE / slotSize;
+
+		int segmentCount = (int) ((machineCount + (long) slotsPerSegment - 1) / slotsPerSegment);
+		segments = new MappedByteBuffer[segmentCount];
+		for(int segment = 0; segment < segmentCount; segment++) {
+			long firstSlot = (long) segment * slotsPerSegment;
+			long segmentSlotCount = Math.min(slotsPerSegment, machineCount - firstSlot);
+
+			// Mapping beyond the end of the file extends it with zeros, which are unstarted slots.
+			segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE,
+					HEADER_SIZE + firstSlot * slotSize,
+					segmentSlotCount * slotSize);
+		}
+	}
+
+	/**
+	 * Opens the store in the given file, creating it if it doesn't exist.
+	 *
+	 * @param maxDepth The number of nested machines whose states each slot has room for. A graph
+	 * without submachine states needs a depth of one.
+	 * @throws IllegalArgumentException Thrown if an existing store was created with a different
+	 * machine count or depth, or for a graph with a different number of states.
+	 * @throws IOException Thrown if the file can't be read or written, or isn't a machine store.
+	 */
+	@Nonnull
+	public static <TransitionInput> MappedMachineStore<TransitionInput> open(@Nonnull Path file,
+			@Nonnull StateGraph<TransitionInput> graph,
+			int machineCount,
+			int maxDepth) throws IOException {
+		requireNonNull(file, "File is required");
+		requireNonNull(graph, "State graph is required");
+		if(machineCount < 0) {
+			throw new IllegalArgumentException("Machine count must not be negative");
+		}
+		if(maxDepth < 1) {
+			throw new IllegalArgumentException("Max depth must be at least one");
+		}
+		FlyweightStateMachine<TransitionInput> flyweight = new FlyweightStateMachine<>(graph, maxDepth);
+
+		FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			int stateCount = flyweight.getGraph().getStateCount();
+			if(channel.size() == 0) {
+				header.putInt(MAGIC).putInt(VERSION).putInt(machineCount).putInt(maxDepth).putInt(stateCount);
+				header.clear();
+				channel.write(header, 0);
+			} else {
+				readHeader(channel, header, file);
+				checkHeaderValue("machine count", machineCount, header.getInt());
+				checkHeaderValue("max depth", maxDepth, header.getInt());
+				checkHeaderValue("graph state count", stateCount, header.getInt());
+			}
+
+			return new MappedMachineStore<>(channel, flyweight, machineCount, maxDepth);
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static void readHeader(@Nonnull FileChannel channel, @Nonnull ByteBuffer header, @Nonnull Path file) throws IOException {
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				throw new IOException("Not a machine store: " + file);
+			}
+		}
+		header.flip();
+
+		if(header.getInt() != MAGIC) {
+			throw new IOException("Not a machine store: " + file);
+		}
+		int version = header.getInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported machine store version (" + version + "): " + file);
+		}
+	}
+
+	private static void checkHeaderValue(@Nonnull String name, int expectedValue, int storedValue) {
+		if(expectedValue != storedValue) {
+			throw new IllegalArgumentException("Store was created with a " + name + " of " + storedValue + ", not " + expectedValue);
+		}
+	}
+
+	/** @return The number of machines in the store. */
+	public int size() {
+		return machineCount;
+	}
+
+	/** @return The number of nested machines whose states each slot has room for. */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/** @return The compiled graph that the machines traverse. */
+	@Nonnull
+	public CompiledStateGraph<TransitionInput> getGraph() {
+		return flyweight.getGraph();
+	}
+
+	/** @return Whether the machine at the given index has been started. */
+	public boolean hasStarted(int machine) {
+		return segment(machine).getInt(offset(machine)) != 0;
+	}
+
+	/**
+	 * Moves the machine at the given index to the graph's start state, notifying listeners as
+	 * {@link FlyweightStateMachine#start()} does. A machine that has already started is restarted.
+	 *
+	 * @throws IllegalStateException Thrown if the start state's submachines are nested deeper than
+	 * the store's maximum depth, in which case the machine isn't started.
+	 */
+	public void start(int machine) {
+		ByteBuffer segment = segment(machine);
+		int offset = offset(machine);
+
+		ScratchMachines<TransitionInput> scratch = scratchMachines.get();
+		CompactMachine<TransitionInput> compactMachine = scratch.acquire();
+		try {
+			flyweight.start(compactMachine);
+			store(compactMachine, segment, offset);
+		} finally {
+			scratch.release();
+		}
+	}
+
+	/**
+	 * Evaluates the input on the machine at the given index, as
+	 * {@link FlyweightStateMachine#evaluateInput(CompactMachine, Object)} does.
+	 *
+	 * @return Whether a valid transition was found.
+	 * @throws IllegalStateException Thrown if the machine hasn't started, or if the transition found
+	 * for the input would take it into submachines nested deeper than the store's maximum depth, in
+	 * which case the transition isn't followed and the machine's states aren't updated.
+	 */
+	public boolean evaluateInput(int machine, @Nullable TransitionInput input) {
+		ByteBuffer segment = segment(machine);
+		int offset = offset(machine);
+
+		ScratchMachines<TransitionInput> scratch = scratchMachines.get();
+		CompactMachine<TransitionInput> compactMachine = scratch.acquire();
+		try {
+			load(segment, offset, compactMachine);
+			boolean transitioned = flyweight.evaluateInput(compactMachine, input);
+			store(compactMachine, segment, offset);
+
+			return transitioned;
+		} finally {
+			scratch.release();
+		}
+	}
+
+	/**
+	 * @return The states of the machine at the given index, outermost first.
+	 * @throws IllegalStateException Thrown if the machine hasn't started.
+	 */
+	@Nonnull
+	public List<State<TransitionInput>> getStates(int machine) {
+		ByteBuffer segment = segment(machine);
+		int offset = offset(machine);
+
+		ScratchMachines<TransitionInput> scratch = scratchMachines.get();
+		CompactMachine<TransitionInput> compactMachine = scratch.acquire();
+		try {
+			load(segment, offset, compactMachine);
+			return flyweight.getStates(compactMachine);
+		} finally {
+			scratch.release();
+		}
+	}
+
+	/**
+	 * @return The state of the machine at the given index, or null if it hasn't started.
+	 */
+	@Nullable
+	public State<TransitionInput> getState(int machine) {
+		ByteBuffer segment = segment(machine);
+		int offset = offset(machine);
+
+		return segment.getInt(offset) == 0 ?
+				null :
+				getGraph().getState(segment.getInt(offset + Integer.BYTES));
+	}
+
+	/** Writes any changes to the machines' states that haven't yet reached the file to it. */
+	public void flush() {
+		for(MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	/**
+	 * Flushes the store and closes its file. The file's mappings remain valid until they're garbage
+	 * collected, but the store must not be used after it's closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	@Nonnull
+	private ByteBuffer segment(int machine) {
+		if(machine < 0 || machine >= machineCount) {
+			throw new IndexOutOfBoundsException("No machine at index " + machine + " in a store of " + machineCount);
+		}
+
+		return segments[machine / slotsPerSegment];
+	}
+
+	private int offset(int machine) {
+		return (machine % slotsPerSegment) * slotSize;
+	}
+
+	/** Reads the slot's states into the given scratch machine. */
+	private void load(@Nonnull ByteBuffer segment, int offset, @Nonnull CompactMachine<TransitionInput> compactMachine) {
+		int depth = segment.getInt(offset);
+		if(depth == 0) {
+			throw new IllegalStateException("Machine has not started.");
+		}
+
+		for(int level = 0; level < depth; level++) {
+			compactMachine.setStateId(level, segment.getInt(offset + Integer.BYTES * (level + 1)));
+		}
+		compactMachine.truncate(depth - 1);
+	}
+
+	private void store(@Nonnull CompactMachine<TransitionInput> compactMachine, @Nonnull ByteBuffer segment, int offset) {
+		int depth = compactMachine.getDepth();
+		if(depth > maxDepth) {
+			throw new IllegalStateException("Machine's submachines are nested " + depth + " deep, beyond the store's max depth of " + maxDepth);
+		}
+
+		for(int level = 0; level < depth; level++) {
+			segment.putInt(offset + Integer.BYTES * (level + 1), compactMachine.getStateId(level));
+		}
+		segment.putInt(offset, depth);
+	}
+
+	/**
+	 * A thread's scratch machines, into which slots are loaded while they're evaluated. A listener
+	 * may use the store while another machine is evaluated, so each nested call gets its own.
+	 */
+	private static class ScratchMachines<TransitionInput> {
+		private final List<CompactMachine<TransitionInput>> machines = new ArrayList<>();
+		private int inUseCount;
+
+		@Nonnull
+		private CompactMachine<TransitionInput> acquire() {
+			if(inUseCount == machines.size()) {
+				machines.add(new CompactMachine<>(0));
+			}
+
+			return machines.get(inUseCount++);
+		}
+
+		private void release() {
+			inUseCount--;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Recovers the states of many keyed machines, such as those of a {@link MachineRuntime}, from
+ * their snapshots and an ordered log of the inputs each key's machine has evaluated since. The log
+ * is read once and partitioned by key, and the partitions are then replayed in parallel on a
+ * {@link ForkJoinPool}, so recovery speeds up with the number of cores.
+ * <p>
+ * Inputs are replayed on the graph alone, as by a {@link JournalReplayer} with listeners suppressed,
+ * so no listeners of any kind are notified. The recovered states are returned as snapshots (see
+ * {@link StateSnapshotCodec}) from which the machines can be restored. A key without a snapshot
+ * starts from its graph's start state.
+ * <p>
+ * Each key's inputs are held in memory between reading the log and replaying them. The input adapter
+ * is used by multiple threads at once, so it must be safe for such use.
+ */
+public class PartitionedReplayer<Key,MachineInput,TransitionInput> {
+	private static final int PARTITIONS_PER_TASK = 64;
+
+	private final Function<? super Key, StateGraph<TransitionInput>> graphSelector;
+	private final InputAdapter<MachineInput,TransitionInput> inputAdapter;
+	private final ForkJoinPool pool;
+
+	/** Creates a replayer that replays partitions using the common pool. */
+	public PartitionedReplayer(@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput,TransitionInput> inputAdapter) {
+		this(graphSelector, inputAdapter, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param graphSelector Chooses the graph of a key's machine, as for
+	 * {@link MachineRuntimeBuilder#forMatchingInputTypes(Function)}.
+	 */
+	public PartitionedReplayer(@Nonnull Function<? super Key, StateGraph<TransitionInput>> graphSelector,
+			@Nonnull InputAdapter<MachineInput,TransitionInput> inputAdapter,
+			@Nonnull ForkJoinPool pool) {
+		this.graphSelector = requireNonNull(graphSelector, "Graph selector is required");
+		this.inputAdapter = requireNonNull(inputAdapter, "Input adapter is required");
+		this.pool = requireNonNull(pool, "Pool is required");
+	}
+
+	/**
+	 * Replays the keyed inputs, in iteration order, on the machines whose states are given by the
+	 * snapshots.
+	 *
+	 * @param snapshots Each key's snapshot, taken before its first input in the log.
+	 * @return A snapshot of each key's machine after replaying its inputs, for every key that has a
+	 * snapshot or inputs.
+	 */
+	@Nonnull
+	public Map<Key, byte[]> replay(@Nonnull Map<Key, byte[]> snapshots,
+			@Nonnull Iterable<? extends Map.Entry<? extends Key, ? extends MachineInput>> inputs) {
+		requireNonNull(snapshots, "Snapshots are required");
+		Partitioner partitioner = new Partitioner();
+		for(Map.Entry<? extends Key, ? extends MachineInput> input : requireNonNull(inputs, "Inputs are required")) {
+			partitioner.add(input.getKey(), input.getValue());
+		}
+
+		return partitioner.replay(snapshots);
+	}
+
+	/**
+	 * Replays the keyed inputs journaled from the given sequence number onwards on the machines whose
+	 * states are given by the snapshots. Each journaled entry is split into a key and an input by the
+	 * given functions.
+	 *
+	 * @param snapshots Each key's snapshot, taken before the entry at the given sequence number was journaled.
+	 * @return A snapshot of each key's machine after replaying its inputs, for every key that has a
+	 * snapshot or inputs.
+	 * @throws IOException Thrown if the journal can't be read.
+	 */
+	@Nonnull
+	public <Entry> Map<Key, byte[]> replay(@Nonnull Map<Key, byte[]> snapshots,
+			@Nonnull InputJournal<Entry> journal,
+			long fromSequence,
+			@Nonnull Function<? super Entry, ? extends Key> keyFunction,
+			@Nonnull Function<? super Entry, ? extends MachineInput> inputFunction) throws IOException {
+		requireNonNull(snapshots, "Snapshots are required");
+		requireNonNull(keyFunction, "Key function is required");
+		requireNonNull(inputFunction, "Input function is required");
+
+		Partitioner partitioner = new Partitioner();
+		requireNonNull(journal, "Journal is required").forEach(fromSequence,
+				entry -> partitioner.add(keyFunction.apply(entry), inputFunction.apply(entry)));
+
+		return partitioner.replay(snapshots);
+	}
+
+	/** Groups inputs by key, then replays each key's inputs. Only used by one thread until replaying. */
+	private class Partitioner {
+		private final Map<Key, Partition<Key,MachineInput,TransitionInput>> partitionsByKey = new HashMap<>();
+		private final Map<StateGraph<TransitionInput>, ReplayGraph<TransitionInput>> replayGraphs = new IdentityHashMap<>();
+
+		private void add(@Nonnull Key key, @Nullable MachineInput input) {
+			partitionsByKey.computeIfAbsent(requireNonNull(key, "Key is required"), this::createPartition).inputs.add(input);
+		}
+
+		@Nonnull
+		private Partition<Key,MachineInput,TransitionInput> createPartition(@Nonnull Key key) {
+			StateGraph<TransitionInput> graph = requireNonNull(graphSelector.apply(key), "Graph selector returned no graph");
+			return new Partition<>(key, replayGraphs.computeIfAbsent(graph, ReplayGraph::new));
+		}
+
+		@Nonnull
+		private Map<Key, byte[]> replay(@Nonnull Map<Key, byte[]> snapshots) {
+			Map<Key, byte[]> recoveredSnapshots = new HashMap<>(snapshots);
+
+			@SuppressWarnings({"unchecked","rawtypes"})
+			Partition<Key,MachineInput,TransitionInput>[] partitions = partitionsByKey.values().toArray(new Partition[0]);
+			for(Partition<Key,MachineInput,TransitionInput> partition : partitions) {
+				partition.snapshot = snapshots.get(partition.key);
+			}
+
+			pool.invoke(new ReplayTask(partitions, 0, partitions.length));
+
+			for(Partition<Key,MachineInput,TransitionInput> partition : partitions) {
+				recoveredSnapshots.put(partition.key, partition.snapshot);
+			}
+
+			return recoveredSnapshots;
+		}
+	}
+
+	/** Replays a range of partitions, splitting the range if it's large. */
+	private class ReplayTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Partition<Key,MachineInput,TransitionInput>[] partitions;
+		private final int from;
+		private final int to;
+
+		private ReplayTask(@Nonnull Partition<Key,MachineInput,TransitionInput>[] partitions, int from, int to) {
+			this.partitions = partitions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > PARTITIONS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ReplayTask(partitions, from, middle), new ReplayTask(partitions, middle, to));
+				return;
+			}
+
+			for(int partition = from; partition < to; partition++) {
+				replay(partitions[partition]);
+			}
+		}
+
+		private void replay(@Nonnull Partition<Key,MachineInput,TransitionInput> partition) {
+			ReplayGraph<TransitionInput> graph = partition.graph;
+			CompactMachine<TransitionInput> machine = partition.snapshot == null ?
+					null :
+					graph.snapshotCodec.restoreIfStarted(partition.snapshot);
+			if(machine == null) {
+				machine = graph.silentFlyweight.start();
+			}
+
+			for(MachineInput input : partition.inputs) {
+				Iterator<TransitionInput> transitionInputs = inputAdapter.adaptInput(input);
+				while(transitionInputs.hasNext()) {
+					graph.silentFlyweight.evaluateInput(machine, transitionInputs.next());
+				}
+			}
+
+			partition.snapshot = graph.snapshotCodec.snapshot(machine);
+		}
+	}
+
+	/** A key's inputs and, once replayed, its snapshot. */
+	private static class Partition<Key,MachineInput,TransitionInput> {
+		private final Key key;
+		private final ReplayGraph<TransitionInput> graph;
+		private final List<MachineInput> inputs = new ArrayList<>();
+		private byte[] snapshot;
+
+		private Partition(@Nonnull Key key, @Nonnull ReplayGraph<TransitionInput> graph) {
+			this.key = key;
+			this.graph = graph;
+		}
+	}
+
+	/** A graph compiled for replay, shared by every partition whose key selected the graph. */
+	private static class ReplayGraph<TransitionInput> {
+		private final StateSnapshotCodec<TransitionInput> snapshotCodec;
+		private final FlyweightStateMachine<TransitionInput> silentFlyweight;
+
+		private ReplayGraph(@Nonnull StateGraph<TransitionInput> graph) {
+			CompiledGraphHierarchy<TransitionInput> graphs = new CompiledGraphHierarchy<>(graph);
+			snapshotCodec = new StateSnapshotCodec<>(graphs);
+			silentFlyweight = new FlyweightStateMachine<>(graphs, false);
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package com.coalminesoftware.jstately.machine;
 
-import com.coalminesoftware.jstately.collection.CollectionUtil;
 import com.coalminesoftware.jstately.graph.StateGraph;
 import com.coalminesoftware.jstately.graph.state.CompositeState;
 import com.coalminesoftware.jstately.graph.state.FinalState;
@@ -16,28 +15,55 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 
 /** Representation of a state machine. */
 public class StateMachine<MachineInput,TransitionInput> {
 	private final StateGraph<TransitionInput> stateGraph;
-	private final InputManager<MachineInput, TransitionInput> inputManager;
-	private final List<StateMachineEventListener<TransitionInput>> eventListeners;
+	final InputManager<MachineInput, TransitionInput> inputManager;
+	// Shared with the machine's submachines
+	final EventListenerRegistry<TransitionInput> eventListeners;
 
 	protected State<TransitionInput> currentState;
 	protected StateMachine<TransitionInput,TransitionInput> submachine;
-	private final Semaphore inputAccessSemaphore = new Semaphore(1);
-	private boolean evaluating;
+	private final AtomicInteger pendingInputCount = new AtomicInteger();
+
+	// Submachines whose states have been exited, kept for reuse the next time a submachine state
+	// with the same graph is entered. Created when the first submachine is kept.
+	private Map<StateGraph<TransitionInput>, StateMachine<TransitionInput,TransitionInput>> spareSubmachinesByGraph;
+
+	// The submachines an input is being delegated to, outermost first. Created when the first
+	// input is delegated.
+	private List<StateMachine<?,TransitionInput>> delegationPath;
+
+	// Only modified while evaluating inputs. See evaluateInputs().
+	long transitionCount;
+	long noValidTransitionCount;
 
 	protected StateMachine(@Nonnull StateGraph<TransitionInput> graph,
 			@Nonnull InputAdapter<MachineInput,TransitionInput> inputAdapter,
 			@Nonnull List<StateMachineEventListener<TransitionInput>> listeners) {
+		this(graph, new InputManager<>(requireNonNull(inputAdapter, "Input adapter is required")), listeners);
+	}
+
+	StateMachine(@Nonnull StateGraph<TransitionInput> graph,
+			@Nonnull InputManager<MachineInput,TransitionInput> inputManager,
+			@Nonnull List<StateMachineEventListener<TransitionInput>> listeners) {
+		this(graph, inputManager, new EventListenerRegistry<>(listeners, true));
+	}
+
+	StateMachine(@Nonnull StateGraph<TransitionInput> graph,
+			@Nonnull InputManager<MachineInput,TransitionInput> inputManager,
+			@Nonnull EventListenerRegistry<TransitionInput> listeners) {
 		stateGraph = requireNonNull(graph, "A state graph is required.");
-		inputManager = new InputManager<>(requireNonNull(inputAdapter, "Input adapter is required"));
-		eventListeners = requireNonNull(listeners, "Listener list is required");
+		this.inputManager = requireNonNull(inputManager, "Input manager is required");
+		eventListeners = requireNonNull(listeners, "Listener registry is required");
 	}
 
 	/**
@@ -85,70 +111,212 @@ public class StateMachine<MachineInput,TransitionInput> {
 	 * transition input(s). For each transition input, the machine follows the first
 	 * {@link Transition} that considers itself valid for the input.
 	 *
+	 * <p>
+	 * Any thread may call this method. If another call is already evaluating inputs, the input is
+	 * queued without blocking and evaluated by that call, in the order it was queued.
+	 *
 	 * @param machineInput Machine input from which transition inputs are generated to evaluate.
 	 * @throws IllegalStateException Thrown if no {@link InputAdapter} has been set.
 	 * @throws InterruptedException Thrown if the thread was interrupted while waiting to enqueue
-	 * the input.
+	 * the input. Queueing never waits on this class, but subclasses may.
 	 */
 	public void evaluateInputOrThrow(@Nullable MachineInput machineInput) throws InterruptedException {
-		inputAccessSemaphore.acquire();
 		inputManager.queueInput(machineInput);
-		if(evaluating) {
+		if(pendingInputCount.getAndIncrement() != 0) {
 			// If another invocation is already working through the inputs, there's no need to
 			// continue once the new input has been queued.
-			inputAccessSemaphore.release();
 			return;
 		}
 
-		evaluating = true;
-		while(true) {
-			if(!inputManager.hasNext()) {
-				evaluating = false;
-				inputAccessSemaphore.release();
-				return;
-			}
+		evaluateQueuedInputs(1);
+	}
 
-			TransitionInput transitionInput = inputManager.next();
-			inputAccessSemaphore.release();
+	/**
+	 * Queues all of the given inputs at once and evaluates them in a single pass, as
+	 * {@link #evaluateInputOrThrow(Object)} would if called for each input in order.
+	 * <p>
+	 * If another call is already evaluating inputs, the batch is queued without blocking and
+	 * evaluated by that call, and the returned summary is {@link EvaluationSummary#wasDeferred() deferred}.
+	 *
+	 * @param machineInputs Machine inputs from which transition inputs are generated to evaluate.
+	 * The collection must not be modified while the inputs are being queued.
+	 * @return A summary of the transition inputs evaluated by this call.
+	 */
+	@Nonnull
+	public EvaluationSummary<TransitionInput> evaluateInputs(@Nonnull Collection<? extends MachineInput> machineInputs) {
+		int inputCount = requireNonNull(machineInputs, "Machine inputs are required").size();
+		if(inputCount == 0) {
+			return summarizeEvaluation(transitionCount, noValidTransitionCount);
+		}
 
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
-				listener.beforeEvaluatingInput(transitionInput, this);
-			}
+		inputManager.queueInputs(machineInputs);
+		if(pendingInputCount.getAndAdd(inputCount) != 0) {
+			return EvaluationSummary.deferred();
+		}
+
+		long initialTransitionCount = transitionCount;
+		long initialNoValidTransitionCount = noValidTransitionCount;
+		evaluateQueuedInputs(inputCount);
 
-			// While in a submachine state, inputs are delegated. Only if the submachine is left in
-			// a FinalState is an input (FinalState#result) evaluated on this machine.
-			if(currentState instanceof SubmachineState) {
-				submachine.evaluateInput(transitionInput);
+		return summarizeEvaluation(initialTransitionCount, initialNoValidTransitionCount);
+	}
 
-				if(submachine.getState() instanceof FinalState) {
-					transitionInput = ((FinalState<TransitionInput>) submachine.getState()).getResult();
-				} else {
-					for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
-						listener.afterEvaluatingInput(transitionInput, this);
-					}
-					inputAccessSemaphore.acquire();
+	/** @see #evaluateInputs(Collection) */
+	@Nonnull
+	public EvaluationSummary<TransitionInput> evaluateInputs(@Nonnull MachineInput[] machineInputs) {
+		return evaluateInputs(Arrays.asList(requireNonNull(machineInputs, "Machine inputs are required")));
+	}
 
-					continue;
+	@Nonnull
+	EvaluationSummary<TransitionInput> summarizeEvaluation(long initialTransitionCount, long initialNoValidTransitionCount) {
+		return new EvaluationSummary<>(
+				transitionCount - initialTransitionCount,
+				noValidTransitionCount - initialNoValidTransitionCount,
+				getStates());
+	}
+
+	/** @return Whether an invocation is evaluating the machine's queued inputs. */
+	boolean isEvaluating() {
+		return pendingInputCount.get() != 0;
+	}
+
+	/**
+	 * Evaluates queued inputs until every input counted by {@link #pendingInputCount} has been
+	 * evaluated. Must only be called by the invocation that moved the count off of zero.
+	 *
+	 * @param ownedInputCount The number of inputs the calling invocation added to the count.
+	 */
+	private void evaluateQueuedInputs(int ownedInputCount) {
+		// This invocation owns the queue until the count of inputs it hasn't accounted for drops
+		// to zero. Inputs queued in the meantime keep the count above zero, so they're evaluated
+		// here rather than by the invocations that queued them.
+		int missedInputCount = ownedInputCount;
+		try {
+			do {
+				while(inputManager.hasNext()) {
+					evaluateTransitionInput(inputManager.next());
 				}
-			}
+				missedInputCount = pendingInputCount.addAndGet(-missedInputCount);
+			} while(missedInputCount != 0);
+		} catch(RuntimeException | Error e) {
+			// Relinquish the queue so the machine remains usable. Inputs still queued are evaluated
+			// by the next invocation.
+			pendingInputCount.set(0);
+			throw e;
+		}
+	}
 
-			Transition<TransitionInput> validTransition = findFirstValidTransitionFromCurrentState(transitionInput);
-			if(validTransition == null) {
-				for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
-					listener.noValidTransition(transitionInput, this);
+	void evaluateTransitionInput(@Nullable TransitionInput transitionInput) {
+		for(StateMachineEventListener<TransitionInput> listener : eventListeners.getBeforeEvaluatingInputListeners()) {
+			listener.beforeEvaluatingInput(transitionInput, this);
+		}
+		if(!(currentState instanceof SubmachineState)) {
+			finishEvaluatingTransitionInput(transitionInput);
+			return;
+		}
+
+		// While in a submachine state, inputs are delegated. Rather than having each submachine
+		// evaluate the input anew, which would recurse once per level of nesting, the submachines
+		// are walked down to the innermost, which evaluates the input first. On the way back out,
+		// each machine evaluates the result of the FinalState its submachine reached, if any.
+		// Each submachine is claimed as if it were evaluating an input of its own, so inputs
+		// evaluated on it in the meantime (e.g., by a listener) are queued.
+		if(delegationPath == null) {
+			delegationPath = new ArrayList<>();
+		}
+		int claimedCount = 0;
+		try {
+			StateMachine<?,TransitionInput> machine = this;
+			while(machine.currentState instanceof SubmachineState) {
+				StateMachine<TransitionInput,TransitionInput> submachine = machine.submachine;
+				if(!submachine.claimForDelegation()) {
+					// The submachine is already evaluating inputs, so it queues the input instead.
+					submachine.evaluateInput(transitionInput);
+					break;
 				}
+				delegationPath.add(submachine);
+				claimedCount++;
+
+				for(StateMachineEventListener<TransitionInput> listener : submachine.eventListeners.getBeforeEvaluatingInputListeners()) {
+					listener.beforeEvaluatingInput(transitionInput, submachine);
+				}
+				machine = submachine;
+			}
+
+			for(int level = delegationPath.size() - 1; level >= 0; level--) {
+				StateMachine<?,TransitionInput> submachine = delegationPath.get(level);
+				submachine.finishEvaluatingTransitionInput(transitionInput);
+
+				claimedCount--;
+				submachine.relinquishAfterDelegation();
+			}
+			finishEvaluatingTransitionInput(transitionInput);
+		} catch(RuntimeException | Error e) {
+			// Leave the submachines that were still claimed usable.
+			for(int level = 0; level < claimedCount; level++) {
+				delegationPath.get(level).abandonDelegation();
+			}
+			throw e;
+		} finally {
+			delegationPath.clear();
+		}
+	}
+
+	/**
+	 * Evaluates the input on the machine's transitions, once its submachine (if any) has evaluated
+	 * it, and notifies listeners that the input has been evaluated. If the submachine was left in
+	 * a FinalState, its result is evaluated instead. Otherwise, the submachine consumed the input.
+	 */
+	@SuppressWarnings("unchecked")
+	private void finishEvaluatingTransitionInput(@Nullable TransitionInput transitionInput) {
+		if(currentState instanceof SubmachineState) {
+			if(submachine.getState() instanceof FinalState) {
+				transitionInput = ((FinalState<TransitionInput>) submachine.getState()).getResult();
 			} else {
-				transition(validTransition,transitionInput);
+				for(StateMachineEventListener<TransitionInput> listener : eventListeners.getAfterEvaluatingInputListeners()) {
+					listener.afterEvaluatingInput(transitionInput, this);
+				}
+
+				return;
 			}
+		}
 
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
-				listener.afterEvaluatingInput(transitionInput, this);
+		Transition<TransitionInput> validTransition = findFirstValidTransitionFromCurrentState(transitionInput);
+		if(validTransition == null) {
+			noValidTransitionCount++;
+			for(StateMachineEventListener<TransitionInput> listener : eventListeners.getNoValidTransitionListeners()) {
+				listener.noValidTransition(transitionInput, this);
 			}
+		} else {
+			transitionCount++;
+			transition(validTransition,transitionInput);
+		}
 
-			inputAccessSemaphore.acquire();
+		for(StateMachineEventListener<TransitionInput> listener : eventListeners.getAfterEvaluatingInputListeners()) {
+			listener.afterEvaluatingInput(transitionInput, this);
 		}
 	}
 
+	/**
+	 * Claims the machine's input queue on behalf of its parent, which is delegating an input to it,
+	 * as if an input had been queued.
+	 *
+	 * @return Whether the queue was claimed, which fails if the machine is already evaluating inputs.
+	 */
+	boolean claimForDelegation() {
+		return pendingInputCount.compareAndSet(0, 1);
+	}
+
+	/** Evaluates any inputs queued while the machine was claimed, then relinquishes its queue. */
+	void relinquishAfterDelegation() {
+		evaluateQueuedInputs(1);
+	}
+
+	/** Relinquishes the machine's queue after a delegated input failed, leaving queued inputs for the next invocation. */
+	void abandonDelegation() {
+		pendingInputCount.set(0);
+	}
+
 	@Nullable
 	private Transition<TransitionInput> findFirstValidTransitionFromCurrentState(@Nullable TransitionInput input) {
 		if(!hasStarted()) {
@@ -175,11 +343,11 @@ public class StateMachine<MachineInput,TransitionInput> {
 
 		State<TransitionInput> previousState = exitCurrentState(transition.getHead());
 
-		for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> listener : eventListeners.getBeforeTransitionListeners()) {
 			listener.beforeTransition(transition, input, this);
 		}
 		transition.notifyTransitionListener(input);
-		for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> listener : eventListeners.getAfterTransitionListeners()) {
 			listener.afterTransition(transition, input, this);
 		}
 
@@ -212,18 +380,19 @@ public class StateMachine<MachineInput,TransitionInput> {
 		// Similarly, this method only (re-)enters the given state if currentState was set to null by exitCurrentState().
 
 		if(currentState==null || !currentState.equals(newState)) {
-			for(CompositeState<TransitionInput> composite : determineCompositesBeingEntered(previousState, newState)) {
-				enterCompositeState(composite);
+			List<CompositeState<TransitionInput>> composites = stateGraph.getCompositesEntered(previousState, newState);
+			for(int i = 0; i < composites.size(); i++) {
+				enterCompositeState(composites.get(i));
 			}
 
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+			for(StateMachineEventListener<TransitionInput> listener : eventListeners.getBeforeStateEnteredListeners()) {
 				listener.beforeStateEntered(newState, this);
 			}
 
 			newState.notifyEntranceListener();
 			currentState = newState;
 
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+			for(StateMachineEventListener<TransitionInput> listener : eventListeners.getAfterStateEnteredListeners()) {
 				listener.afterStateEntered(newState, this);
 			}
 		}
@@ -237,7 +406,7 @@ public class StateMachine<MachineInput,TransitionInput> {
 	private void initializeSubmachine(
 			@Nonnull SubmachineState<TransitionInput> submachineState,
 			@Nonnull State<TransitionInput>[] submachineStates) {
-		submachine = new StateMachine<>(submachineState.getStateGraph(), new PassthroughInputAdapter<>(), eventListeners);
+		submachine = obtainSubmachine(submachineState.getStateGraph());
 
 		if(submachineStates.length > 0) {
 			submachine.enterState(null, getFirstState(submachineStates), getRemainingStates(submachineStates));
@@ -246,86 +415,66 @@ public class StateMachine<MachineInput,TransitionInput> {
 		}
 	}
 
-	/**
-	 * Determines which composite states are being entered when entering a state.
-	 *
-	 * @return A list of CompositeStates being entered in order they are being entered (from the
-	 * root CompositeState to nested ones.)
-	 */
+	/** @return A spare submachine for the graph if there is one, or else a new one. */
 	@Nonnull
-	private List<CompositeState<TransitionInput>> determineCompositesBeingEntered(
-			@Nullable State<TransitionInput> oldState,
-			@Nonnull State<TransitionInput> newState) {
-		List<CompositeState<TransitionInput>> newStateComposites = collectCompositeStates(newState);
-		if(oldState == null) {
-			return newStateComposites;
+	private StateMachine<TransitionInput,TransitionInput> obtainSubmachine(@Nonnull StateGraph<TransitionInput> graph) {
+		StateMachine<TransitionInput,TransitionInput> spareSubmachine = spareSubmachinesByGraph == null ?
+				null :
+				spareSubmachinesByGraph.remove(graph);
+
+		if(spareSubmachine != null) {
+			return spareSubmachine;
 		}
 
-		List<CompositeState<TransitionInput>> oldStateComposites = collectCompositeStates(oldState);
-		newStateComposites.removeAll(oldStateComposites);
-		return newStateComposites;
+		return createSubmachine(graph);
 	}
 
 	/**
-	 * Determines which composite states are being exited when exiting a state.
-	 *
-	 * @return A list of CompositeStates being exited in order they are being exist (from the
-	 * State's immediate CompositeState to its root CompositeState.)
+	 * Keeps the submachine for reuse if it's been reset to the state of a new machine: unstarted,
+	 * with no inputs left to evaluate. Otherwise, it's discarded.
 	 */
-	@Nonnull
-	private List<CompositeState<TransitionInput>> determineCompositeStatesBeingExited(
-			@Nonnull State<TransitionInput> oldState,
-			@Nullable State<TransitionInput> newState) {
-		List<CompositeState<TransitionInput>> oldStateComposites = collectCompositeStates(oldState);
-		if(newState==null) {
-			return CollectionUtil.reversedCopy(oldStateComposites);
+	private void recycleSubmachine(@Nonnull StateMachine<TransitionInput,TransitionInput> exitedSubmachine) {
+		if(exitedSubmachine.currentState != null || exitedSubmachine.isEvaluating() || exitedSubmachine.inputManager.hasNext()) {
+			return;
 		}
 
-		List<CompositeState<TransitionInput>> newStateComposites = collectCompositeStates(newState);
-		oldStateComposites.removeAll(newStateComposites);
-		return CollectionUtil.reversedCopy(oldStateComposites);
+		if(spareSubmachinesByGraph == null) {
+			spareSubmachinesByGraph = new IdentityHashMap<>();
+		}
+		spareSubmachinesByGraph.put(exitedSubmachine.stateGraph, exitedSubmachine);
 	}
 
 	/**
-	 * @return All of the CompositeStates that enclose the given State. The values are returned in
-	 * the order returned by {@link State#getComposites()}, with nested composites ordered from the
-	 * State's outer-most composite to its immediate parent composite.
+	 * Creates the machine that evaluates inputs delegated to it while this machine is in a
+	 * {@link SubmachineState}. Once the submachine state is exited, the submachine is reused the
+	 * next time a submachine state with the same graph is entered. The submachine shares this
+	 * machine's {@link #eventListeners}, so listeners added to this machine are notified of its events.
 	 */
 	@Nonnull
-	private List<CompositeState<TransitionInput>> collectCompositeStates(@Nonnull State<TransitionInput> state) {
-		List<CompositeState<TransitionInput>> composites = new ArrayList<>();
-
-		for(CompositeState<TransitionInput> composite : state.getComposites()) {
-			int insertionPosition = composites.size();
-			while(composite != null) {
-				composites.add(insertionPosition,composite);
-				composite = composite.getParent();
-			}
-		}
-
-		return composites;
+	StateMachine<TransitionInput,TransitionInput> createSubmachine(@Nonnull StateGraph<TransitionInput> graph) {
+		return new StateMachine<>(graph, new InputManager<>(new PassthroughInputAdapter<>()), eventListeners);
 	}
 
 	private void enterCompositeState(@Nonnull CompositeState<TransitionInput> composite) {
-		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners.getBeforeCompositeStateEnteredListeners()) {
 			eventListener.beforeCompositeStateEntered(composite, this);
 		}
 
 		composite.notifyEntranceListener();
 
-		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners.getAfterCompositeStateEnteredListeners()) {
 			eventListener.afterCompositeStateEntered(composite, this);
 		}
 	}
 
 	private void exitCompositeState(@Nonnull CompositeState<TransitionInput> composite) {
-		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners.getBeforeCompositeStateExitedListeners()) {
 			eventListener.beforeCompositeStateExited(composite, this);
 		}
 
 		composite.notifyExitListener();
 
-		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners) {
+		for(StateMachineEventListener<TransitionInput> eventListener : eventListeners.getAfterCompositeStateExitedListeners()) {
 			eventListener.afterCompositeStateExited(composite, this);
 		}
 	}
@@ -346,22 +495,24 @@ public class StateMachine<MachineInput,TransitionInput> {
 
 		if(submachine != null) {
 			submachine.exitCurrentState(getFirstState(submachineStates), getRemainingStates(submachineStates));
+			recycleSubmachine(submachine);
 			submachine = null;
 		}
 
 		if(!currentState.equals(newState) || submachineStates.length == 0) {
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+			for(StateMachineEventListener<TransitionInput> listener : eventListeners.getBeforeStateExitedListeners()) {
 				listener.beforeStateExited(currentState, this);
 			}
 	
 			currentState.notifyExitListener();
 
-			for(StateMachineEventListener<TransitionInput> listener : eventListeners) {
+			for(StateMachineEventListener<TransitionInput> listener : eventListeners.getAfterStateExitedListeners()) {
 				listener.afterStateExited(currentState, this);
 			}
 	
-			for(CompositeState<TransitionInput> composite : determineCompositeStatesBeingExited(currentState, newState)) {
-				exitCompositeState(composite);
+			List<CompositeState<TransitionInput>> composites = stateGraph.getCompositesExited(currentState, newState);
+			for(int i = 0; i < composites.size(); i++) {
+				exitCompositeState(composites.get(i));
 			}
 
 			currentState = null;
@@ -423,6 +574,35 @@ public class StateMachine<MachineInput,TransitionInput> {
 		currentState = newState;
 	}
 
+	/**
+	 * Sets the states of the machine and its nested submachines, outermost first, without notifying
+	 * any listeners. Submachines are created for submachine states, but not started. An empty list
+	 * leaves the machine unstarted.
+	 *
+	 * @see StateSnapshotCodec
+	 */
+	@SuppressWarnings("unchecked")
+	void restoreStates(@Nonnull List<State<TransitionInput>> states) {
+		StateMachine<?,TransitionInput> machine = this;
+		for(int level = 0; level < states.size(); level++) {
+			State<TransitionInput> state = states.get(level);
+			machine.currentState = state;
+			machine.submachine = state instanceof SubmachineState ?
+					machine.obtainSubmachine(((SubmachineState<TransitionInput>) state).getStateGraph()) :
+					null;
+			machine = machine.submachine;
+		}
+
+		if(states.isEmpty()) {
+			currentState = null;
+			submachine = null;
+		}
+	}
+
+	/**
+	 * Adds a listener to the machine and its submachines. Listeners can be added by any thread,
+	 * including while the machine evaluates inputs.
+	 */
 	public void addEventListener(@Nonnull StateMachineEventListener<TransitionInput> eventListener) {
 		eventListeners.add(requireNonNull(eventListener, "Listener is required"));
 	}
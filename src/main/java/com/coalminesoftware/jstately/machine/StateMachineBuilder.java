@@ -1,13 +1,19 @@
 package com.coalminesoftware.jstately.machine;
 
+import com.coalminesoftware.jstately.collection.ArrayQueue;
+import com.coalminesoftware.jstately.collection.MultiProducerSingleConsumerQueue;
 import com.coalminesoftware.jstately.graph.StateGraph;
 import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.input.InputManager;
 import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
 import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static java.util.Objects.requireNonNull;
 
@@ -15,6 +21,9 @@ public class StateMachineBuilder<MachineInput,TransitionInput> {
 	private final StateGraph<TransitionInput> stateGraph;
 	private final InputAdapter<MachineInput, TransitionInput> inputAdapter;
 	private final List<StateMachineEventListener<TransitionInput>> eventListeners = new ArrayList<>();
+	private boolean threadConfined;
+	private boolean ownerThreadChecked;
+	private InputJournal<MachineInput> journal;
 
 	/**
 	 * Builds a machine with the same input type as its graph’s transitions, and a {@link PassthroughInputAdapter} as its adapter.
@@ -38,8 +47,56 @@ public class StateMachineBuilder<MachineInput,TransitionInput> {
 		return this;
 	}
 
+	/**
+	 * Sets whether to build a {@link ConfinedStateMachine}, which avoids all synchronization but may
+	 * only be used by a single thread.
+	 */
+	@Nonnull
+	public StateMachineBuilder<MachineInput,TransitionInput> setThreadConfined(boolean threadConfined) {
+		this.threadConfined = threadConfined;
+		return this;
+	}
+
+	/**
+	 * Sets whether a thread-confined machine verifies that it's only used by the first thread that
+	 * uses it. See {@link #setThreadConfined(boolean)}.
+	 */
+	@Nonnull
+	public StateMachineBuilder<MachineInput,TransitionInput> setOwnerThreadChecked(boolean ownerThreadChecked) {
+		this.ownerThreadChecked = ownerThreadChecked;
+		return this;
+	}
+
+	/**
+	 * Sets a journal to which the machine appends its inputs, before evaluating them, so that its
+	 * states can later be rebuilt using a {@link JournalReplayer}. Inputs queued while the machine
+	 * is evaluating others are appended together, sharing a single forced write.
+	 */
+	@Nonnull
+	public StateMachineBuilder<MachineInput,TransitionInput> setJournal(@Nullable InputJournal<MachineInput> journal) {
+		this.journal = journal;
+		return this;
+	}
+
 	@Nonnull
 	public StateMachine<MachineInput,TransitionInput> build() {
-		return new StateMachine<>(stateGraph, inputAdapter, eventListeners);
+		return threadConfined ?
+				new ConfinedStateMachine<>(stateGraph, new InputManager<>(inputAdapter, new ArrayQueue<>(), journal), new EventListenerRegistry<>(eventListeners, true), ownerThreadChecked) :
+				new StateMachine<>(stateGraph, new InputManager<>(inputAdapter, new MultiProducerSingleConsumerQueue<>(), journal), eventListeners);
+	}
+
+	/**
+	 * Builds an {@link AsyncStateMachine}, which evaluates its inputs on the given executor.
+	 *
+	 * @throws IllegalStateException Thrown if the builder is configured to build a thread-confined
+	 * machine.
+	 */
+	@Nonnull
+	public AsyncStateMachine<MachineInput,TransitionInput> buildAsync(@Nonnull Executor executor) {
+		if(threadConfined) {
+			throw new IllegalStateException("An asynchronous machine can't be thread-confined.");
+		}
+
+		return new AsyncStateMachine<>(stateGraph, inputAdapter, eventListeners, journal, executor);
 	}
 }
@@ -0,0 +1,258 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.CompiledStateGraph;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes the states of machines on a graph as snapshots of a few bytes each, and restores
+ * machines from them. A snapshot holds the id of the machine's state (see
+ * {@link CompiledStateGraph#getStateId(State)}) followed by the id of each nested submachine's
+ * state, so restoring a machine recreates its submachines without starting them. Unlike
+ * {@link StateMachine#transition(State, State[])}, restoring a machine notifies no listeners.
+ * <p>
+ * A snapshot is the number of machines' states it holds, followed by their ids, each written as an
+ * unsigned variable-length integer of seven bits per byte. A machine in one of the first 128
+ * states of a graph without submachines therefore takes two bytes, and an unstarted machine one.
+ * <p>
+ * State ids are assigned in the order states are discovered from the graph's start state, so they
+ * remain the same from one run to the next provided the graph is built the same way. Changing the
+ * graph's states or transitions may change its ids, invalidating existing snapshots.
+ * <p>
+ * The graph, and the graph of every {@link SubmachineState} reachable from it, is compiled when the
+ * codec is created. Instances are immutable and can be used by multiple threads. Machines must not
+ * be restored while they're evaluating inputs.
+ */
+public class StateSnapshotCodec<TransitionInput> {
+	private final CompiledGraphHierarchy<TransitionInput> graphs;
+
+	public StateSnapshotCodec(@Nonnull StateGraph<TransitionInput> graph) {
+		this(new CompiledGraphHierarchy<>(requireNonNull(graph, "State graph is required")));
+	}
+
+	StateSnapshotCodec(@Nonnull CompiledGraphHierarchy<TransitionInput> graphs) {
+		this.graphs = graphs;
+	}
+
+	/** @return The compiled graph whose state ids the snapshots hold. */
+	@Nonnull
+	public CompiledStateGraph<TransitionInput> getGraph() {
+		return graphs.getGraph();
+	}
+
+	/**
+	 * @return A snapshot of the machine's states.
+	 * @throws IllegalArgumentException Thrown if the machine is in a state not in the codec's graph.
+	 */
+	@Nonnull
+	public byte[] snapshot(@Nonnull StateMachine<?,TransitionInput> machine) {
+		return encode(getStateIds(requireNonNull(machine, "Machine is required")));
+	}
+
+	/**
+	 * Writes a snapshot of the machine's states to the buffer, at its position.
+	 *
+	 * @throws IllegalArgumentException Thrown if the machine is in a state not in the codec's graph.
+	 * @throws java.nio.BufferOverflowException Thrown if the buffer doesn't have room for the snapshot.
+	 */
+	public void snapshot(@Nonnull StateMachine<?,TransitionInput> machine, @Nonnull ByteBuffer buffer) {
+		write(getStateIds(requireNonNull(machine, "Machine is required")), requireNonNull(buffer, "Buffer is required"));
+	}
+
+	/** @return A snapshot of the compact machine's states, which must have been started on the codec's graph. */
+	@Nonnull
+	public byte[] snapshot(@Nonnull CompactMachine<TransitionInput> machine) {
+		return encode(requireNonNull(machine, "Machine is required").getStateIds());
+	}
+
+	/**
+	 * Sets the machine's states to those of the snapshot, without notifying any listeners.
+	 *
+	 * @throws IllegalArgumentException Thrown if the snapshot is malformed or isn't of the codec's graph.
+	 */
+	public void restore(@Nonnull StateMachine<?,TransitionInput> machine, @Nonnull byte[] snapshot) {
+		restore(machine, ByteBuffer.wrap(requireNonNull(snapshot, "Snapshot is required")));
+	}
+
+	/**
+	 * Sets the machine's states to those of the snapshot at the buffer's position, without notifying
+	 * any listeners. The buffer's position is left following the snapshot.
+	 *
+	 * @throws IllegalArgumentException Thrown if the snapshot is malformed or isn't of the codec's graph.
+	 */
+	public void restore(@Nonnull StateMachine<?,TransitionInput> machine, @Nonnull ByteBuffer buffer) {
+		requireNonNull(machine, "Machine is required");
+		int[] stateIds = read(requireNonNull(buffer, "Buffer is required"));
+
+		List<State<TransitionInput>> states = new ArrayList<>(stateIds.length);
+		CompiledStateGraph<TransitionInput> levelGraph = graphs.getGraph();
+		for(int stateId : stateIds) {
+			State<TransitionInput> state = levelGraph.getState(stateId);
+			states.add(state);
+
+			if(state instanceof SubmachineState) {
+				levelGraph = graphs.getSubmachineGraph(state);
+			}
+		}
+
+		machine.restoreStates(states);
+	}
+
+	/**
+	 * Creates a compact machine, for use with a {@link FlyweightStateMachine} on the codec's graph,
+	 * in the states of the snapshot.
+	 *
+	 * @throws IllegalArgumentException Thrown if the snapshot is malformed, isn't of the codec's graph
+	 * or is of an unstarted machine.
+	 */
+	@Nonnull
+	public CompactMachine<TransitionInput> restore(@Nonnull byte[] snapshot) {
+		CompactMachine<TransitionInput> machine = restoreIfStarted(snapshot);
+		if(machine == null) {
+			throw new IllegalArgumentException("Compact machines can't be restored from a snapshot of an unstarted machine");
+		}
+
+		return machine;
+	}
+
+	/** Equivalent to {@link #restore(byte[])}, but returns null for a snapshot of an unstarted machine. */
+	@Nullable
+	CompactMachine<TransitionInput> restoreIfStarted(@Nonnull byte[] snapshot) {
+		int[] stateIds = read(ByteBuffer.wrap(requireNonNull(snapshot, "Snapshot is required")));
+		if(stateIds.length == 0) {
+			return null;
+		}
+
+		CompactMachine<TransitionInput> machine = new CompactMachine<>(stateIds[0]);
+		for(int level = 1; level < stateIds.length; level++) {
+			machine.setStateId(level, stateIds[level]);
+		}
+
+		return machine;
+	}
+
+	/** @return The ids of the machine's states, outermost first, or no ids if it hasn't started. */
+	@Nonnull
+	private int[] getStateIds(@Nonnull StateMachine<?,TransitionInput> machine) {
+		List<State<TransitionInput>> states = machine.getStates();
+		if(states.get(0) == null) {
+			return new int[0];
+		}
+
+		int[] stateIds = new int[states.size()];
+		CompiledStateGraph<TransitionInput> levelGraph = graphs.getGraph();
+		for(int level = 0; level < stateIds.length; level++) {
+			State<TransitionInput> state = states.get(level);
+			stateIds[level] = levelGraph.getStateId(state);
+
+			if(state instanceof SubmachineState) {
+				levelGraph = graphs.getSubmachineGraph(state);
+			}
+		}
+
+		return stateIds;
+	}
+
+	@Nonnull
+	private static byte[] encode(@Nonnull int[] stateIds) {
+		int length = getVarIntLength(stateIds.length);
+		for(int stateId : stateIds) {
+			length += getVarIntLength(stateId);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		write(stateIds, buffer);
+		return buffer.array();
+	}
+
+	private static void write(@Nonnull int[] stateIds, @Nonnull ByteBuffer buffer) {
+		writeVarInt(stateIds.length, buffer);
+		for(int stateId : stateIds) {
+			writeVarInt(stateId, buffer);
+		}
+	}
+
+	/** Reads a snapshot's state ids, checking that each is a valid id in the graph of its level. */
+	@Nonnull
+	private int[] read(@Nonnull ByteBuffer buffer) {
+		try {
+			int depth = readVarInt(buffer);
+			if(depth > buffer.remaining()) {
+				throw new IllegalArgumentException("Malformed snapshot: " + depth + " states can't fit in the remaining bytes");
+			}
+			int[] stateIds = new int[depth];
+
+			CompiledStateGraph<TransitionInput> levelGraph = graphs.getGraph();
+			for(int level = 0; level < stateIds.length; level++) {
+				if(levelGraph == null) {
+					throw new IllegalArgumentException("Snapshot has states nested within a state that isn't a submachine state: " +
+							Arrays.toString(stateIds));
+				}
+
+				int stateId = readVarInt(buffer);
+				if(stateId >= levelGraph.getStateCount()) {
+					throw new IllegalArgumentException("Snapshot has an unknown state id (" + stateId + ") at level " + level);
+				}
+				stateIds[level] = stateId;
+
+				State<TransitionInput> state = levelGraph.getState(stateId);
+				levelGraph = state instanceof SubmachineState ?
+						graphs.getSubmachineGraph(state) :
+						null;
+			}
+
+			if(levelGraph != null && stateIds.length > 0) {
+				throw new IllegalArgumentException("Snapshot lacks the state of a submachine: " + Arrays.toString(stateIds));
+			}
+
+			return stateIds;
+		} catch(BufferUnderflowException e) {
+			throw new IllegalArgumentException("Malformed snapshot", e);
+		}
+	}
+
+	private static int getVarIntLength(int value) {
+		int length = 1;
+		while((value >>>= 7) != 0) {
+			length++;
+		}
+
+		return length;
+	}
+
+	private static void writeVarInt(int value, @Nonnull ByteBuffer buffer) {
+		while((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static int readVarInt(@Nonnull ByteBuffer buffer) {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if(b >= 0) {
+				// Ids are never negative, so a value using the sign bit is malformed.
+				if(value < 0) {
+					break;
+				}
+				return value;
+			}
+		}
+
+		throw new IllegalArgumentException("Malformed snapshot: value out of range");
+	}
+}
@@ -7,6 +7,7 @@ import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -53,6 +54,14 @@ public class SynchronizedStateMachine<MachineInput,TransitionInput> extends Stat
 		}
 	}
 
+	@Override
+	@Nonnull
+	public EvaluationSummary<TransitionInput> evaluateInputs(@Nonnull Collection<? extends MachineInput> machineInputs) {
+		synchronized (mutex) {
+			return super.evaluateInputs(machineInputs);
+		}
+	}
+
 	@Override
 	public void transition(@Nullable State<TransitionInput> newState, @Nullable State<TransitionInput>... submachineStates) {
 		synchronized (mutex) {
@@ -60,6 +69,13 @@ public class SynchronizedStateMachine<MachineInput,TransitionInput> extends Stat
 		}
 	}
 
+	@Override
+	void restoreStates(@Nonnull List<State<TransitionInput>> states) {
+		synchronized (mutex) {
+			super.restoreStates(states);
+		}
+	}
+
 	@Override
 	@Nullable
 	public List<State<TransitionInput>> getStates() {
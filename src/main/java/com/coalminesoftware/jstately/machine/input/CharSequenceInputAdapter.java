@@ -0,0 +1,19 @@
+package com.coalminesoftware.jstately.machine.input;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.IntConsumer;
+
+/** An adapter that evaluates each character of its input, in order. A null input yields no characters. */
+public class CharSequenceInputAdapter implements IntInputAdapter<CharSequence> {
+	@Override
+	public void adaptInput(@Nullable CharSequence input, @Nonnull IntConsumer transitionInputConsumer) {
+		if(input == null) {
+			return;
+		}
+
+		for(int index = 0; index < input.length(); index++) {
+			transitionInputConsumer.accept(input.charAt(index));
+		}
+	}
+}
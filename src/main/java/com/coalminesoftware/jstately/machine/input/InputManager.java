@@ -1,44 +1,148 @@
 package com.coalminesoftware.jstately.machine.input;
 
+import com.coalminesoftware.jstately.collection.ArrayQueue;
+import com.coalminesoftware.jstately.collection.MultiProducerSingleConsumerQueue;
+import com.coalminesoftware.jstately.collection.SimpleQueue;
 import com.coalminesoftware.jstately.machine.StateMachine;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Queue;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Queues a {@link StateMachine}'s inputs and convert them to transition inputs using the provided
- * {@link InputAdapter}.
+ * {@link InputAdapter}. By default, inputs can be queued by any thread, but only one thread at a
+ * time may consume transition inputs via {@link #hasNext()} and {@link #next()}.
+ * <p>
+ * A {@link PushInputAdapter}'s transition inputs are buffered in a reusable queue rather than
+ * iterated, so no objects are allocated per input once the buffer has grown large enough.
+ * <p>
+ * If the manager has an {@link InputJournal}, machine inputs are appended to it before they're
+ * adapted. Every input queued by the time the consumer needs another is appended at once, so
+ * inputs queued by concurrent producers share a single forced write, and the journal's order is
+ * the order in which inputs are evaluated.
  */
 public class InputManager<MachineInput,TransitionInput> {
-	private final Queue<MachineInput> machineInputs = new LinkedList<>();
+	private static final long UNWRITTEN = -1;
+
+	private final SimpleQueue<MachineInput> machineInputs;
 	private final InputAdapter<MachineInput,TransitionInput> inputAdapter;
 	private Iterator<TransitionInput> transitionInputs;
 
+	// Only used with a journal
+	private final InputJournal<MachineInput> journal;
+	private final List<MachineInput> journalBatch;
+	private int journalBatchPosition;
+	private long journalBatchEndSequence = UNWRITTEN;
+	private boolean journalBatchAppended;
+
+	// Only used with push adapters
+	private final PushInputAdapter<MachineInput,TransitionInput> pushInputAdapter;
+	private final ArrayQueue<TransitionInput> pushedTransitionInputs;
+	private final Consumer<TransitionInput> transitionInputSink;
+
 	public InputManager(@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter) {
+		this(inputAdapter, new MultiProducerSingleConsumerQueue<>());
+	}
+
+	/**
+	 * @param machineInputs Queue used to hold machine inputs until they're consumed. Inputs may
+	 * only be queued by multiple threads if the queue supports it.
+	 */
+	public InputManager(@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter,
+			@Nonnull SimpleQueue<MachineInput> machineInputs) {
+		this(inputAdapter, machineInputs, null);
+	}
+
+	/**
+	 * @param journal Journal to which machine inputs are appended before they're adapted, or null
+	 * to not journal them. If appending fails, {@link #hasNext()} throws an {@link UncheckedIOException}
+	 * and the next time it's called, the inputs are written again if writing them failed, or forced
+	 * again if forcing them failed.
+	 */
+	public InputManager(@Nonnull InputAdapter<MachineInput, TransitionInput> inputAdapter,
+			@Nonnull SimpleQueue<MachineInput> machineInputs,
+			@Nullable InputJournal<MachineInput> journal) {
 		this.inputAdapter = requireNonNull(inputAdapter);
+		this.machineInputs = requireNonNull(machineInputs);
+		this.journal = journal;
+		journalBatch = journal == null ? null : new ArrayList<>();
+
+		if(inputAdapter instanceof PushInputAdapter) {
+			pushInputAdapter = (PushInputAdapter<MachineInput,TransitionInput>) inputAdapter;
+			pushedTransitionInputs = new ArrayQueue<>();
+			transitionInputSink = pushedTransitionInputs::add;
+		} else {
+			pushInputAdapter = null;
+			pushedTransitionInputs = null;
+			transitionInputSink = null;
+		}
 	}
 
+	/** Queues the given input. Safe for use by any thread if the manager's queue is. */
 	public void queueInput(@Nullable MachineInput input) {
 		machineInputs.add(input);
 	}
 
+	/** Queues the given inputs, in iteration order. Safe for use by any thread if the manager's queue is. */
+	public void queueInputs(@Nonnull Collection<? extends MachineInput> inputs) {
+		machineInputs.addAll(inputs);
+	}
+
+	/** @return The adapter that converts machine inputs to transition inputs. */
+	@Nonnull
+	public InputAdapter<MachineInput,TransitionInput> getInputAdapter() {
+		return inputAdapter;
+	}
+
 	public boolean hasNext() {
+		if(pushInputAdapter != null) {
+			return !pushedTransitionInputs.isEmpty() || advancePushAdapter();
+		}
+
 		return (transitionInputs != null && transitionInputs.hasNext()) || advance();
 	}
 
+	/**
+	 * Discards every queued machine input, along with any transition inputs remaining from the last
+	 * one adapted, without journaling or adapting them. Inputs already written to the journal stay
+	 * there. Those that haven't been forced yet are kept too, and are forced and adapted before any
+	 * inputs queued later, as they would be replayed from the journal. Only for use by the consuming
+	 * thread.
+	 */
+	public void clear() {
+		transitionInputs = null;
+		if(pushedTransitionInputs != null) {
+			pushedTransitionInputs.clear();
+		}
+		while(!machineInputs.isEmpty()) {
+			machineInputs.remove();
+		}
+		if(journal != null && (journalBatchEndSequence == UNWRITTEN || journalBatchAppended)) {
+			journalBatch.clear();
+			journalBatchPosition = 0;
+		}
+	}
+
 	@Nullable
 	public TransitionInput next() {
 		if(!hasNext()) {
 			throw new NoSuchElementException("No remaining inputs.");
 		}
 
-		return transitionInputs.next();
+		return pushInputAdapter != null ?
+				pushedTransitionInputs.remove() :
+				transitionInputs.next();
 	}
 
 	/**
@@ -48,8 +152,8 @@ public class InputManager<MachineInput,TransitionInput> {
 	 * @return Whether a value is available from {@link #next()} after advancing.
 	 */
 	private boolean advance() {
-		while(!machineInputs.isEmpty()) {
-			transitionInputs = inputAdapter.adaptInput(machineInputs.remove());
+		while(hasMachineInput()) {
+			transitionInputs = inputAdapter.adaptInput(nextMachineInput());
 			if(transitionInputs.hasNext()) {
 				return true;
 			}
@@ -57,4 +161,59 @@ public class InputManager<MachineInput,TransitionInput> {
 
 		return false;
 	}
+
+	/** Equivalent to {@link #advance()} for push adapters, which push into the buffer instead. */
+	private boolean advancePushAdapter() {
+		while(hasMachineInput()) {
+			pushInputAdapter.adaptInput(nextMachineInput(), transitionInputSink);
+			if(!pushedTransitionInputs.isEmpty()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/** @return Whether a machine input is ready to be adapted, having been journaled if necessary. */
+	private boolean hasMachineInput() {
+		if(journal == null) {
+			return !machineInputs.isEmpty();
+		}
+
+		if(journalBatchPosition == journalBatch.size()) {
+			if(machineInputs.isEmpty()) {
+				return false;
+			}
+
+			journalBatch.clear();
+			journalBatchPosition = 0;
+			journalBatchEndSequence = UNWRITTEN;
+			journalBatchAppended = false;
+			while(!machineInputs.isEmpty()) {
+				journalBatch.add(machineInputs.remove());
+			}
+		}
+
+		if(!journalBatchAppended) {
+			try {
+				// Once written, the batch is only forced again, so a failed force doesn't duplicate it.
+				if(journalBatchEndSequence == UNWRITTEN) {
+					journalBatchEndSequence = journal.write(journalBatch) + journalBatch.size();
+				}
+				journal.sync(journalBatchEndSequence);
+			} catch(IOException e) {
+				throw new UncheckedIOException("Unable to journal inputs", e);
+			}
+			journalBatchAppended = true;
+		}
+
+		return true;
+	}
+
+	@Nullable
+	private MachineInput nextMachineInput() {
+		return journal == null ?
+				machineInputs.remove() :
+				journalBatch.get(journalBatchPosition++);
+	}
 }
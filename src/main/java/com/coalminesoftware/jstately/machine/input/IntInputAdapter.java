@@ -0,0 +1,18 @@
+package com.coalminesoftware.jstately.machine.input;
+
+import com.coalminesoftware.jstately.machine.IntStateMachine;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.IntConsumer;
+
+/**
+ * Converts an {@link IntStateMachine}'s input into zero or more primitive transition inputs.
+ * Rather than returning an iterator, an adapter passes each transition input to the given consumer,
+ * which evaluates it immediately, so adapting an input need not allocate anything.
+ *
+ * @see CharSequenceInputAdapter
+ */
+public interface IntInputAdapter<MachineInput> {
+	void adaptInput(@Nullable MachineInput machineInput, @Nonnull IntConsumer transitionInputConsumer);
+}
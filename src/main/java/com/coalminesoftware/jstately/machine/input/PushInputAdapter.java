@@ -0,0 +1,32 @@
+package com.coalminesoftware.jstately.machine.input;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An {@link InputAdapter} that passes each transition input to a sink rather than returning an
+ * iterator. {@link InputManager} drives push adapters through a sink it reuses for every input, so
+ * adapting an input need not allocate anything.
+ *
+ * @see PassthroughInputAdapter
+ */
+public interface PushInputAdapter<MachineInput,TransitionInput> extends InputAdapter<MachineInput,TransitionInput> {
+	/**
+	 * Passes the transition inputs generated from the given machine input to the sink, in order.
+	 * The sink must not be retained once the method returns.
+	 */
+	void adaptInput(@Nullable MachineInput machineInput, @Nonnull Consumer<? super TransitionInput> transitionInputSink);
+
+	/** Collects the transition inputs generated from the given machine input so they can be iterated. */
+	@Override
+	@Nonnull
+	default Iterator<TransitionInput> adaptInput(@Nullable MachineInput machineInput) {
+		List<TransitionInput> transitionInputs = new ArrayList<>();
+		adaptInput(machineInput, transitionInputs::add);
+		return transitionInputs.iterator();
+	}
+}
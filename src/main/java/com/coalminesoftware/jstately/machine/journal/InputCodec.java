@@ -0,0 +1,18 @@
+package com.coalminesoftware.jstately.machine.journal;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts machine inputs to and from the bytes an {@link InputJournal} stores. Null inputs are
+ * handled by the journal, so codecs only see non-null inputs. Decoding an encoded input must yield
+ * an input that a machine evaluates the same way, so that replaying a journal is deterministic.
+ */
+public interface InputCodec<MachineInput> {
+	void encode(@Nonnull MachineInput input, @Nonnull DataOutput output) throws IOException;
+
+	@Nonnull
+	MachineInput decode(@Nonnull DataInput input) throws IOException;
+}
@@ -0,0 +1,496 @@
+package com.coalminesoftware.jstately.machine.journal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An append-only log of machine inputs, stored in a directory as a series of segment files. Each
+ * input is assigned a sequence number, counting up from zero, in the order it was appended.
+ * <p>
+ * Appending an input returns only once the input has been forced to storage. Threads appending at
+ * the same time share the cost of forcing: while one thread forces the segment, the others wait,
+ * and one force then covers every input appended in the meantime (i.e., a group commit). Inputs
+ * can also be written with {@link #write(Collection)} and forced separately with {@link #sync(long)},
+ * so a failed force can be retried without appending the inputs again.
+ * <p>
+ * Each record holds the length of the encoded input, a CRC32 checksum of it, and the input itself,
+ * as encoded by the journal's {@link InputCodec}. When the journal is opened, a partially written
+ * record at the end of the last segment, left by a crash, is discarded.
+ * <p>
+ * Instances are safe for use by multiple threads.
+ */
+public class InputJournal<MachineInput> implements Closeable {
+	/** The size beyond which a new segment is started, unless otherwise specified. */
+	public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+	private static final int NULL_LENGTH = -1;
+
+	private final Path directory;
+	private final InputCodec<MachineInput> codec;
+	private final long segmentSize;
+
+	// Guarded by writeLock.
+	private final Object writeLock = new Object();
+	private FileChannel channel;
+	private long segmentFirstSequence;
+	private long nextSequence;
+	private boolean closed;
+
+	// Guarded by syncLock.
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final Condition syncCompleted = syncLock.newCondition();
+	private long durableSequence;
+	private boolean syncing;
+
+	private InputJournal(@Nonnull Path directory, @Nonnull InputCodec<MachineInput> codec, long segmentSize) {
+		this.directory = directory;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+	}
+
+	/** Opens the journal in the given directory, creating it if necessary, with the default segment size. */
+	@Nonnull
+	public static <MachineInput> InputJournal<MachineInput> open(@Nonnull Path directory,
+			@Nonnull InputCodec<MachineInput> codec) throws IOException {
+		return open(directory, codec, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the journal in the given directory, creating it if necessary.
+	 *
+	 * @param segmentSize The size in bytes beyond which a new segment is started. Segments may exceed
+	 * this size by up to the size of one append.
+	 */
+	@Nonnull
+	public static <MachineInput> InputJournal<MachineInput> open(@Nonnull Path directory,
+			@Nonnull InputCodec<MachineInput> codec,
+			long segmentSize) throws IOException {
+		requireNonNull(directory, "Directory is required");
+		requireNonNull(codec, "Codec is required");
+		if(segmentSize <= 0) {
+			throw new IllegalArgumentException("Segment size must be positive");
+		}
+
+		Files.createDirectories(directory);
+		InputJournal<MachineInput> journal = new InputJournal<>(directory, codec, segmentSize);
+		journal.openLastSegment();
+
+		return journal;
+	}
+
+	/** Opens the last segment for appending, discarding any partially written record at its end. */
+	private void openLastSegment() throws IOException {
+		List<Long> segmentFirstSequences = listSegments();
+		segmentFirstSequence = segmentFirstSequences.isEmpty() ?
+				0 :
+				segmentFirstSequences.get(segmentFirstSequences.size() - 1);
+
+		channel = FileChannel.open(segmentPath(segmentFirstSequence),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long recordCount = 0;
+			long validSize = 0;
+			long size = channel.size();
+			try(DataInputStream input = openSegment(segmentFirstSequence)) {
+				for(Record record = readRecord(input, size); record != null; record = readRecord(input, size - validSize)) {
+					recordCount++;
+					validSize += record.getSize();
+				}
+			}
+
+			channel.truncate(validSize);
+			channel.position(validSize);
+			nextSequence = segmentFirstSequence + recordCount;
+			durableSequence = nextSequence;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends the input, returning once it has been forced to storage.
+	 *
+	 * @return The input's sequence number.
+	 */
+	public long append(@Nullable MachineInput input) throws IOException {
+		return appendAll(Collections.singletonList(input));
+	}
+
+	/**
+	 * Appends the inputs, in iteration order, returning once they have been forced to storage. The
+	 * inputs are given consecutive sequence numbers, even if other threads append at the same time.
+	 *
+	 * @return The sequence number of the first input, or of the next input to be appended if there
+	 * are no inputs.
+	 */
+	public long appendAll(@Nonnull Collection<? extends MachineInput> inputs) throws IOException {
+		long firstSequence = write(inputs);
+		sync(firstSequence + inputs.size());
+
+		return firstSequence;
+	}
+
+	/**
+	 * Appends the inputs as {@link #appendAll(Collection)} does, but without waiting for them to be
+	 * forced to storage. If writing fails, none of the inputs are appended.
+	 *
+	 * @return The sequence number of the first input, or of the next input to be appended if there
+	 * are no inputs.
+	 */
+	public long write(@Nonnull Collection<? extends MachineInput> inputs) throws IOException {
+		ByteBuffer records = ByteBuffer.wrap(encode(requireNonNull(inputs, "Inputs are required")));
+
+		synchronized(writeLock) {
+			if(closed) {
+				throw new ClosedChannelException();
+			}
+			if(inputs.isEmpty()) {
+				return nextSequence;
+			}
+			if(channel.position() > 0 && channel.position() + records.remaining() > segmentSize) {
+				startSegment();
+			}
+
+			long position = channel.position();
+			try {
+				while(records.hasRemaining()) {
+					channel.write(records);
+				}
+			} catch(IOException e) {
+				// Reading a segment stops at a partially written record, so don't leave one for later
+				// records to follow.
+				try {
+					channel.truncate(position);
+					channel.position(position);
+				} catch(IOException truncateException) {
+					e.addSuppressed(truncateException);
+				}
+				throw e;
+			}
+
+			long firstSequence = nextSequence;
+			nextSequence += inputs.size();
+			return firstSequence;
+		}
+	}
+
+	/** Forces the current segment and starts a new one, beginning with the next sequence number. */
+	private void startSegment() throws IOException {
+		// Forcing the segment before closing it means a concurrent sync that finds it closed can
+		// rely on its contents being durable.
+		channel.force(false);
+		channel.close();
+
+		segmentFirstSequence = nextSequence;
+		channel = FileChannel.open(segmentPath(segmentFirstSequence),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Waits until every input before the given sequence number has been forced to storage, forcing
+	 * the current segment if necessary. If forcing fails, the inputs remain appended, and calling
+	 * this again retries the force.
+	 */
+	public void sync(long sequence) throws IOException {
+		if(sequence > getNextSequence()) {
+			throw new IllegalArgumentException("No input has been appended before sequence number " + sequence);
+		}
+
+		syncLock.lock();
+		try {
+			while(durableSequence < sequence) {
+				if(syncing) {
+					syncCompleted.awaitUninterruptibly();
+					continue;
+				}
+
+				// Become the syncing thread. Threads that append while the segment is forced wait
+				// for the next sync, which covers all of their inputs at once.
+				syncing = true;
+				long syncedSequence;
+				syncLock.unlock();
+				try {
+					syncedSequence = force();
+				} finally {
+					syncLock.lock();
+					syncing = false;
+					syncCompleted.signalAll();
+				}
+				durableSequence = Math.max(durableSequence, syncedSequence);
+			}
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	/** @return The sequence number before which every input has been forced to storage. */
+	private long force() throws IOException {
+		FileChannel channel;
+		long syncedSequence;
+		synchronized(writeLock) {
+			channel = this.channel;
+			syncedSequence = nextSequence;
+		}
+
+		try {
+			channel.force(false);
+		} catch(ClosedChannelException e) {
+			// The segment is forced before it's closed, whether to start a new one or to close the journal.
+			synchronized(writeLock) {
+				if(closed) {
+					throw e;
+				}
+			}
+		}
+
+		return syncedSequence;
+	}
+
+	@Nonnull
+	private byte[] encode(@Nonnull Collection<? extends MachineInput> inputs) throws IOException {
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream recordOutput = new DataOutputStream(records);
+		ByteArrayOutputStream encodedInput = new ByteArrayOutputStream();
+		DataOutputStream inputOutput = new DataOutputStream(encodedInput);
+
+		for(MachineInput input : inputs) {
+			if(input == null) {
+				recordOutput.writeInt(NULL_LENGTH);
+				recordOutput.writeInt(checksum(NULL_LENGTH, null));
+				continue;
+			}
+
+			encodedInput.reset();
+			codec.encode(input, inputOutput);
+			inputOutput.flush();
+
+			byte[] encodedBytes = encodedInput.toByteArray();
+			recordOutput.writeInt(encodedBytes.length);
+			recordOutput.writeInt(checksum(encodedBytes.length, encodedBytes));
+			recordOutput.write(encodedBytes);
+		}
+		recordOutput.flush();
+
+		return records.toByteArray();
+	}
+
+	/**
+	 * Reads every input from the given sequence number onwards, in order, passing each to the
+	 * action. Inputs appended while reading may not be read.
+	 *
+	 * @return The sequence number following the last input read.
+	 * @throws IOException Thrown if the journal can't be read or a record is corrupt.
+	 */
+	public long forEach(long fromSequence, @Nonnull Consumer<? super MachineInput> action) throws IOException {
+		requireNonNull(action, "Action is required");
+		long endSequence = getNextSequence();
+		if(fromSequence >= endSequence) {
+			return endSequence;
+		}
+
+		// Start from the last segment beginning at or before the sequence number.
+		List<Long> segmentFirstSequences = listSegments();
+		int segment = segmentFirstSequences.size() - 1;
+		while(segment > 0 && segmentFirstSequences.get(segment) > fromSequence) {
+			segment--;
+		}
+		if(segment < 0 || segmentFirstSequences.get(segment) > fromSequence) {
+			throw new IOException("Journal has no segment holding sequence number " + fromSequence);
+		}
+
+		long sequence = segmentFirstSequences.get(segment);
+		for(; segment < segmentFirstSequences.size() && sequence < endSequence; segment++) {
+			if(segmentFirstSequences.get(segment) != sequence) {
+				throw new IOException("Journal is missing inputs from sequence number " + sequence);
+			}
+
+			long remainingSize = Files.size(segmentPath(sequence));
+			try(DataInputStream input = openSegment(sequence)) {
+				while(sequence < endSequence) {
+					Record record = readRecord(input, remainingSize);
+					if(record == null) {
+						break;
+					}
+					remainingSize -= record.getSize();
+					if(sequence++ >= fromSequence) {
+						action.accept(record.decode(codec));
+					}
+				}
+			}
+		}
+
+		if(sequence < endSequence) {
+			throw new IOException("Journal ended at sequence number " + sequence + " rather than " + endSequence);
+		}
+
+		return endSequence;
+	}
+
+	/**
+	 * Deletes segments whose inputs all precede the given sequence number, such as those covered by
+	 * a snapshot. The current segment is never deleted.
+	 */
+	public void deleteBefore(long sequence) throws IOException {
+		long currentSegmentFirstSequence;
+		synchronized(writeLock) {
+			currentSegmentFirstSequence = segmentFirstSequence;
+		}
+
+		List<Long> segmentFirstSequences = listSegments();
+		for(int segment = 0; segment < segmentFirstSequences.size() - 1; segment++) {
+			long nextSegmentFirstSequence = segmentFirstSequences.get(segment + 1);
+			if(nextSegmentFirstSequence > sequence || nextSegmentFirstSequence > currentSegmentFirstSequence) {
+				break;
+			}
+			Files.delete(segmentPath(segmentFirstSequences.get(segment)));
+		}
+	}
+
+	/** @return The sequence number the next input appended will be given. */
+	public long getNextSequence() {
+		synchronized(writeLock) {
+			return nextSequence;
+		}
+	}
+
+	/** Forces and closes the current segment. Appending to a closed journal fails. */
+	@Override
+	public void close() throws IOException {
+		synchronized(writeLock) {
+			if(closed) {
+				return;
+			}
+			closed = true;
+
+			try {
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/** @return The first sequence number of each segment in the directory, in ascending order. */
+	@Nonnull
+	private List<Long> listSegments() throws IOException {
+		List<Long> segmentFirstSequences = new ArrayList<>();
+		try(DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			for(Path segment : segments) {
+				String name = segment.getFileName().toString();
+				try {
+					segmentFirstSequences.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+				} catch(NumberFormatException e) {
+					// Not a segment.
+				}
+			}
+		}
+		Collections.sort(segmentFirstSequences);
+
+		return segmentFirstSequences;
+	}
+
+	@Nonnull
+	private DataInputStream openSegment(long firstSequence) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath(firstSequence))));
+	}
+
+	/**
+	 * @param remainingSize The number of bytes left in the segment, which bounds the record's length.
+	 * @return The next record in the segment, or null if the segment ends, or ends with a partially
+	 * written or corrupt record.
+	 */
+	@Nullable
+	private static Record readRecord(@Nonnull DataInputStream input, long remainingSize) throws IOException {
+		try {
+			int length = input.readInt();
+			int storedChecksum = input.readInt();
+			if(length < NULL_LENGTH || length > remainingSize - RECORD_HEADER_SIZE) {
+				return null;
+			}
+
+			byte[] encodedInput = length == NULL_LENGTH ? null : new byte[length];
+			if(encodedInput != null) {
+				input.readFully(encodedInput);
+			}
+
+			return checksum(length, encodedInput) == storedChecksum ?
+					(encodedInput == null ? Record.NULL : new Record(encodedInput)) :
+					null;
+		} catch(EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return A checksum of a record's length and encoded input. Including the length means a
+	 * segment's zero-filled tail isn't mistaken for empty records.
+	 */
+	private static int checksum(int length, @Nullable byte[] encodedInput) {
+		CRC32 checksum = new CRC32();
+		checksum.update(length >>> 24);
+		checksum.update(length >>> 16);
+		checksum.update(length >>> 8);
+		checksum.update(length);
+		if(encodedInput != null) {
+			checksum.update(encodedInput);
+		}
+
+		return (int) checksum.getValue();
+	}
+
+	@Nonnull
+	private Path segmentPath(long firstSequence) {
+		return directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+	}
+
+	/** A record read from a segment, holding an encoded input or, for a null input, nothing. */
+	private static class Record {
+		private static final Record NULL = new Record(null);
+
+		private final byte[] encodedInput;
+
+		private Record(@Nullable byte[] encodedInput) {
+			this.encodedInput = encodedInput;
+		}
+
+		/** @return The record's size in the segment, including its header. */
+		private int getSize() {
+			return RECORD_HEADER_SIZE + (encodedInput == null ? 0 : encodedInput.length);
+		}
+
+		@Nullable
+		private <MachineInput> MachineInput decode(@Nonnull InputCodec<MachineInput> codec) throws IOException {
+			return encodedInput == null ?
+					null :
+					codec.decode(new DataInputStream(new ByteArrayInputStream(encodedInput)));
+		}
+	}
+}
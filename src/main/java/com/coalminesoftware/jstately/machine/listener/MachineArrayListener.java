@@ -0,0 +1,17 @@
+package com.coalminesoftware.jstately.machine.listener;
+
+import com.coalminesoftware.jstately.machine.MachineArray;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener that can be registered with {@link MachineArray#addListener(MachineArrayListener)} to be
+ * notified once per column of inputs the array evaluates, rather than once per machine.
+ */
+public interface MachineArrayListener<TransitionInput> {
+	/**
+	 * Called after the array evaluates a column of inputs. The step is only valid for the duration
+	 * of the call, as the array reuses it for later columns.
+	 */
+	void afterEvaluatingInputs(@Nonnull MachineArray.Step<TransitionInput> step);
+}
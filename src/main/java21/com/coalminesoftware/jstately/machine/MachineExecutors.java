@@ -0,0 +1,31 @@
+package com.coalminesoftware.jstately.machine;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides executors suited to running machines, for use with
+ * {@link StateMachineBuilder#buildAsync(java.util.concurrent.Executor)} and
+ * {@link MachineRuntimeBuilder#setVirtualThreaded(boolean)}.
+ * <p>
+ * This is the version of the class loaded on Java 21 or later, where virtual threads are available.
+ */
+public final class MachineExecutors {
+	private MachineExecutors() { }
+
+	/** @return Whether virtual threads are supported by the running JVM, which requires Java 21 or later. */
+	public static boolean areVirtualThreadsAvailable() {
+		return true;
+	}
+
+	/**
+	 * Creates an executor that runs each task on a new virtual thread. When a machine's listeners
+	 * block, such as an entrance listener performing I/O, the virtual thread evaluating its inputs
+	 * parks rather than occupying a platform thread.
+	 */
+	@Nonnull
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		return Executors.newVirtualThreadPerTaskExecutor();
+	}
+}
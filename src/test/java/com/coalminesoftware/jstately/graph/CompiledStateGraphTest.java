@@ -0,0 +1,194 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.graph.state.CompositeState;
+import com.coalminesoftware.jstately.graph.state.CompositeStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class CompiledStateGraphTest {
+	@Test
+	public void testFindFirstValidTransitionFromStatePrecedence() {
+		State<Integer> state = new StateBuilder<Integer>().setDescription("State").build();
+		State<Integer> otherState = new StateBuilder<Integer>().setDescription("Other").build();
+
+		Transition<Integer> stateTransition = TransitionBuilder.forExpectedInputs(otherState, 1).build();
+		Transition<Integer> innerCompositeTransition = TransitionBuilder.forExpectedInputs(otherState, 1, 2).build();
+		Transition<Integer> outerCompositeTransition = TransitionBuilder.forExpectedInputs(otherState, 1, 2, 3).build();
+		Transition<Integer> globalTransition = TransitionBuilder.forExpectedInputs(otherState, 1, 2, 3, 4).build();
+
+		CompositeState<Integer> innerComposite = new CompositeStateBuilder<Integer>()
+				.addState(state)
+				.addTransition(innerCompositeTransition)
+				.build();
+		new CompositeStateBuilder<Integer>()
+				.addCompositeState(innerComposite)
+				.addTransition(outerCompositeTransition)
+				.build();
+
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addTransition(state, stateTransition)
+				.addGlobalTransition(globalTransition)
+				.build();
+		CompiledStateGraph<Integer> compiledGraph = graph.compile();
+
+		assertWithMessage("Transitions on the state itself should take precedence")
+				.that(compiledGraph.findFirstValidTransitionFromState(state, 1))
+				.isEqualTo(stateTransition);
+		assertWithMessage("More immediate composites should take precedence over more distant ones")
+				.that(compiledGraph.findFirstValidTransitionFromState(state, 2))
+				.isEqualTo(innerCompositeTransition);
+		assertWithMessage("Composite transitions should take precedence over global transitions")
+				.that(compiledGraph.findFirstValidTransitionFromState(state, 3))
+				.isEqualTo(outerCompositeTransition);
+		assertWithMessage("Global transitions should be evaluated last")
+				.that(compiledGraph.findFirstValidTransitionFromState(state, 4))
+				.isEqualTo(globalTransition);
+		assertWithMessage("No valid transition should exist")
+				.that(compiledGraph.findFirstValidTransitionFromState(state, 5))
+				.isNull();
+
+		assertWithMessage("Heads of transitions should have their own table, falling back to global transitions")
+				.that(compiledGraph.findFirstValidTransitionFromState(otherState, 4))
+				.isEqualTo(globalTransition);
+	}
+
+	@Test
+	public void testFindFirstValidTransitionFromStateWithKeyedAndPredicateTransitions() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		List<Integer> testedInputs = new ArrayList<>();
+
+		Transition<Integer> firstPredicateTransition = new TransitionBuilder<Integer>(state, input -> {
+			testedInputs.add(input);
+			return input != null && input < 0;
+		}).build();
+		Transition<Integer> keyedTransition = TransitionBuilder.forExpectedInputs(state, 1, 2).build();
+		Transition<Integer> secondPredicateTransition = new TransitionBuilder<Integer>(state, input -> {
+			testedInputs.add(input);
+			return true;
+		}).build();
+		Transition<Integer> shadowedKeyedTransition = TransitionBuilder.forExpectedInputs(state, 2, 3).build();
+
+		CompiledStateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(firstPredicateTransition)
+				.addSelfTransition(keyedTransition)
+				.addSelfTransition(secondPredicateTransition)
+				.addSelfTransition(shadowedKeyedTransition)
+				.build()
+				.compile();
+
+		assertWithMessage("A predicate transition preceding a keyed transition should take precedence")
+				.that(graph.findFirstValidTransitionFromState(state, -1))
+				.isEqualTo(firstPredicateTransition);
+		assertWithMessage("Keyed transitions should be found by input")
+				.that(graph.findFirstValidTransitionFromState(state, 2))
+				.isEqualTo(keyedTransition);
+		assertWithMessage("Predicates following the first valid keyed transition should not be tested")
+				.that(testedInputs)
+				.containsExactly(-1, 2)
+				.inOrder();
+		assertWithMessage("A predicate transition should take precedence over a keyed transition added after it")
+				.that(graph.findFirstValidTransitionFromState(state, 3))
+				.isEqualTo(secondPredicateTransition);
+	}
+
+	@Test
+	public void testFindFirstValidTransitionFromStateWithEnumInputs() {
+		State<Object> wanderingState = new StateBuilder<>().setDescription("Wandering").build();
+		State<Object> chasingState = new StateBuilder<>().setDescription("Chasing").build();
+		State<Object> fleeingState = new StateBuilder<>().setDescription("Fleeing").build();
+
+		Transition<Object> spottedTransition = TransitionBuilder.<Object>forExpectedInputs(chasingState, GameEvent.PACMAN_SPOTTED).build();
+		Transition<Object> pelletTransition = TransitionBuilder.<Object>forExpectedInputs(fleeingState, GameEvent.POWER_PELLET_EATEN).build();
+		Transition<Object> lostTransition = TransitionBuilder.<Object>forExpectedInputs(wanderingState, GameEvent.PACMAN_LOST).build();
+
+		new CompositeStateBuilder<>()
+				.addState(wanderingState)
+				.addState(chasingState)
+				.addTransition(pelletTransition)
+				.build();
+
+		CompiledStateGraph<Object> graph = new StateGraphBuilder<>(wanderingState)
+				.addTransition(wanderingState, spottedTransition)
+				.addGlobalTransition(lostTransition)
+				.build()
+				.compile();
+
+		assertWithMessage("The state's own transition should be found")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, GameEvent.PACMAN_SPOTTED))
+				.isEqualTo(spottedTransition);
+		assertWithMessage("The composite's transition should be found")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, GameEvent.POWER_PELLET_EATEN))
+				.isEqualTo(pelletTransition);
+		assertWithMessage("The global transition should be found")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, GameEvent.PACMAN_LOST))
+				.isEqualTo(lostTransition);
+		assertWithMessage("No transition should be found for an unexpected constant")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, GameEvent.GHOST_EATEN))
+				.isNull();
+		assertWithMessage("No transition should be found for an input that isn't a constant")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, "PACMAN_SPOTTED"))
+				.isNull();
+		assertWithMessage("No transition should be found for a null input")
+				.that(graph.findFirstValidTransitionFromState(wanderingState, null))
+				.isNull();
+	}
+
+	@Test
+	public void testFindFirstValidTransitionPosition() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		State<Integer> stateC = new StateBuilder<Integer>().build();
+		Transition<Integer> predicateTransition = new TransitionBuilder<Integer>(stateC, input -> input > 10).build();
+		CompiledStateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.addTransition(stateA, predicateTransition)
+				.build()
+				.compile();
+		int stateAId = graph.getStateId(stateA);
+
+		int position = graph.findFirstValidTransitionPosition(stateAId, 11);
+		assertWithMessage("The position should identify the transition that would be found")
+				.that(graph.getTransition(stateAId, position))
+				.isEqualTo(graph.findFirstValidTransitionFromState(stateA, 11));
+		assertWithMessage("The head's id should have been precomputed")
+				.that(graph.getHeadId(stateAId, position))
+				.isEqualTo(graph.getStateId(stateC));
+		assertWithMessage("The head's id should have been precomputed")
+				.that(graph.getHeadId(stateAId, graph.findFirstValidTransitionPosition(stateAId, 1)))
+				.isEqualTo(graph.getStateId(stateB));
+		assertWithMessage("No valid transition should exist")
+				.that(graph.findFirstValidTransitionPosition(stateAId, 5))
+				.isEqualTo(CompiledStateGraph.NO_VALID_TRANSITION);
+	}
+
+	@Test
+	public void testFindFirstValidTransitionFromStateNotInGraph() {
+		State<Integer> startState = new StateBuilder<Integer>().build();
+		State<Integer> unknownState = new StateBuilder<Integer>().build();
+
+		Transition<Integer> globalTransition = TransitionBuilder.forExpectedInputs(startState, 1).build();
+		CompiledStateGraph<Integer> graph = new StateGraphBuilder<>(startState)
+				.addGlobalTransition(globalTransition)
+				.build()
+				.compile();
+
+		assertWithMessage("States unknown to the graph when it was compiled should still be evaluated")
+				.that(graph.findFirstValidTransitionFromState(unknownState, 1))
+				.isEqualTo(globalTransition);
+	}
+
+	private enum GameEvent {
+		PACMAN_SPOTTED,
+		PACMAN_LOST,
+		POWER_PELLET_EATEN,
+		GHOST_EATEN
+	}
+}
@@ -0,0 +1,72 @@
+package com.coalminesoftware.jstately.graph;
+
+import com.coalminesoftware.jstately.graph.state.CompositeStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.IntTransition;
+import com.coalminesoftware.jstately.graph.transition.IntTransitionBuilder;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class IntStateGraphTest {
+	@Test
+	public void testFindFirstValidTransitionFromState() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+
+		IntTransition digitTransition = IntTransitionBuilder.forRange(state, '0', '9').build();
+		IntTransition negativeTransition = new IntTransitionBuilder(state, input -> input < 0).build();
+		IntTransition overlappingTransition = IntTransitionBuilder.forExpectedInputs(state, '5', -5, Integer.MAX_VALUE).build();
+		IntTransition globalTransition = IntTransitionBuilder.forRange(state, Integer.MIN_VALUE, Integer.MAX_VALUE).build();
+
+		IntStateGraph graph = new IntStateGraphBuilder(state)
+				.addSelfTransition(digitTransition)
+				.addSelfTransition(negativeTransition)
+				.addSelfTransition(overlappingTransition)
+				.addGlobalTransition(globalTransition)
+				.build();
+
+		assertWithMessage("Inputs in a range should be found")
+				.that(graph.findFirstValidTransitionFromState(state, '5'))
+				.isEqualTo(digitTransition);
+		assertWithMessage("A predicate transition should take precedence over a keyed transition added after it")
+				.that(graph.findFirstValidTransitionFromState(state, -5))
+				.isEqualTo(negativeTransition);
+		assertWithMessage("Inputs at the edge of the int range should be found")
+				.that(graph.findFirstValidTransitionFromState(state, Integer.MAX_VALUE))
+				.isEqualTo(overlappingTransition);
+		assertWithMessage("Global transitions should be evaluated last")
+				.that(graph.findFirstValidTransitionFromState(state, 'a'))
+				.isEqualTo(globalTransition);
+	}
+
+	@Test
+	public void testFindFirstValidTransitionFromStateWithoutValidTransition() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		IntStateGraph graph = new IntStateGraphBuilder(state)
+				.addSelfTransition(IntTransitionBuilder.forExpectedInputs(state, 1, 3, 1000).build())
+				.build();
+
+		assertWithMessage("No valid transition should exist")
+				.that(graph.findFirstValidTransitionFromState(state, 2))
+				.isNull();
+		assertWithMessage("No valid transition should exist")
+				.that(graph.findFirstValidTransitionFromState(state, 999))
+				.isNull();
+		assertWithMessage("No valid transition should exist")
+				.that(graph.findFirstValidTransitionFromState(state, -1))
+				.isNull();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStateInCompositeState() {
+		State<Integer> startState = new StateBuilder<Integer>().build();
+		State<Integer> compositeMemberState = new StateBuilder<Integer>().build();
+		new CompositeStateBuilder<Integer>()
+				.addState(compositeMemberState)
+				.build();
+
+		new IntStateGraphBuilder(startState)
+				.addTransition(startState, IntTransitionBuilder.forExpectedInputs(compositeMemberState, 1).build());
+	}
+}
@@ -22,4 +22,31 @@ public class TransitionTest {
 				.that(transition.isValid(null))
 				.isFalse();
 	}
+
+	@Test
+	public void testGetExpectedInputs() {
+		State<Integer> head = mock(State.class);
+
+		assertWithMessage("Transitions built from expected inputs should expose them")
+				.that(TransitionBuilder.forExpectedInputs(head, 1, 2).build().getExpectedInputs())
+				.containsExactly(1, 2);
+		assertWithMessage("Transitions built from a predicate should not have expected inputs")
+				.that(new TransitionBuilder<>(head, input -> true).build().getExpectedInputs())
+				.isNull();
+	}
+
+	@Test
+	public void testIsPure() {
+		State<Integer> head = mock(State.class);
+
+		assertWithMessage("Transitions built from expected inputs should be pure")
+				.that(TransitionBuilder.forExpectedInputs(head, 1).build().isPure())
+				.isTrue();
+		assertWithMessage("Transitions built from a predicate should not be pure unless declared so")
+				.that(new TransitionBuilder<>(head, input -> true).build().isPure())
+				.isFalse();
+		assertWithMessage("Transitions declared pure should be pure")
+				.that(new TransitionBuilder<>(head, input -> true).setPure(true).build().isPure())
+				.isTrue();
+	}
 }
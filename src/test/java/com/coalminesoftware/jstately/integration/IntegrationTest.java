@@ -87,6 +87,15 @@ public class IntegrationTest {
 
 	@Test
 	public void testStateMachineStateTransitioning() {
+		assertStateMachineStateTransitioning(graph);
+	}
+
+	@Test
+	public void testStateMachineStateTransitioningWithCompiledGraph() {
+		assertStateMachineStateTransitioning(graph.compile());
+	}
+
+	private static void assertStateMachineStateTransitioning(StateGraph<Integer> graph) {
 		StateMachine<Integer,Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
 
 		TestStateMachineEventListener<Integer> listener =
@@ -130,6 +139,15 @@ public class IntegrationTest {
 
 	@Test
 	public void testStateMachineStateTransitionPrecedence() {
+		assertStateMachineStateTransitionPrecedence(graph);
+	}
+
+	@Test
+	public void testStateMachineStateTransitionPrecedenceWithCompiledGraph() {
+		assertStateMachineStateTransitionPrecedence(graph.compile());
+	}
+
+	private static void assertStateMachineStateTransitionPrecedence(StateGraph<Integer> graph) {
 		StateMachine<Integer,Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
 		machine.transition(stateB);
 
@@ -0,0 +1,232 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.AsyncEventListener.OverflowPolicy;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class AsyncEventListenerTest {
+	private State<Integer> evenState;
+	private State<Integer> oddState;
+	private StateGraph<Integer> graph;
+
+	@Before
+	public void setUp() {
+		evenState = new StateBuilder<Integer>().setDescription("Even").build();
+		oddState = new StateBuilder<Integer>().setDescription("Odd").build();
+		graph = new StateGraphBuilder<>(evenState)
+				.addTransition(evenState, TransitionBuilder.forExpectedInputs(oddState, 1).build())
+				.addTransition(oddState, TransitionBuilder.forExpectedInputs(evenState, 1).build())
+				.build();
+	}
+
+	@Test
+	public void testEventsDeliveredInOrderOnDeliveryThread() throws InterruptedException {
+		List<State<Integer>> enteredStates = new ArrayList<>();
+		List<Thread> deliveryThreads = new ArrayList<>();
+		AsyncEventListener<Integer> asyncListener = new AsyncEventListenerBuilder<Integer>()
+				.addListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						enteredStates.add(state);
+						deliveryThreads.add(Thread.currentThread());
+					}
+				})
+				.setCapacity(4)
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.addEventListener(asyncListener);
+		machine.start();
+		for(int i = 0; i < 99; i++) {
+			machine.evaluateInput(1);
+		}
+
+		asyncListener.shutdown();
+		assertWithMessage("Delivery should have finished")
+				.that(asyncListener.awaitTermination(10, TimeUnit.SECONDS))
+				.isTrue();
+
+		assertWithMessage("Every state entered should have been delivered")
+				.that(enteredStates.size())
+				.isEqualTo(100);
+		for(int i = 0; i < enteredStates.size(); i++) {
+			assertWithMessage("Unexpected state delivered at " + i)
+					.that(enteredStates.get(i))
+					.isEqualTo(i % 2 == 0 ? evenState : oddState);
+		}
+		assertWithMessage("Events should have been delivered on another thread")
+				.that(deliveryThreads.contains(Thread.currentThread()))
+				.isFalse();
+		assertWithMessage("No events should have been dropped")
+				.that(asyncListener.getDroppedEventCount())
+				.isEqualTo(0L);
+	}
+
+	@Test
+	public void testEventsRecordedByMultipleThreads() throws InterruptedException {
+		AtomicInteger transitionCount = new AtomicInteger();
+		AsyncEventListener<Integer> asyncListener = new AsyncEventListenerBuilder<Integer>()
+				.addListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterTransition(Transition<Integer> transition, Integer input, StateMachine<?, Integer> machine) {
+						transitionCount.incrementAndGet();
+					}
+				})
+				.setCapacity(16)
+				.build();
+
+		int threadCount = 4;
+		int inputsPerThread = 10_000;
+		List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i < threadCount; i++) {
+			threads.add(new Thread(() -> {
+				StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+				machine.addEventListener(asyncListener);
+				machine.start();
+				for(int input = 0; input < inputsPerThread; input++) {
+					machine.evaluateInput(1);
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		asyncListener.shutdown();
+		asyncListener.awaitTermination(10, TimeUnit.SECONDS);
+
+		assertWithMessage("Every transition should have been delivered")
+				.that(transitionCount.get())
+				.isEqualTo(threadCount * inputsPerThread);
+	}
+
+	@Test
+	public void testEventsDroppedWhenFull() throws InterruptedException {
+		CountDownLatch released = new CountDownLatch(1);
+		AtomicInteger deliveredCount = new AtomicInteger();
+		AsyncEventListener<Integer> asyncListener = new AsyncEventListenerBuilder<Integer>()
+				.addListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						try {
+							released.await();
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						deliveredCount.incrementAndGet();
+					}
+				})
+				.setCapacity(2)
+				.setOverflowPolicy(OverflowPolicy.DROP)
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.addEventListener(asyncListener);
+		machine.start();
+		for(int i = 0; i < 9; i++) {
+			machine.evaluateInput(1);
+		}
+		released.countDown();
+
+		asyncListener.shutdown();
+		asyncListener.awaitTermination(10, TimeUnit.SECONDS);
+
+		assertWithMessage("Events beyond the buffer's capacity should have been dropped")
+				.that(asyncListener.getDroppedEventCount())
+				.isGreaterThan(0L);
+		assertWithMessage("Every event should have been either delivered or dropped")
+				.that(deliveredCount.get() + asyncListener.getDroppedEventCount())
+				.isEqualTo(10L);
+	}
+
+	@Test
+	public void testThrowingExceptionHandler() throws InterruptedException {
+		AtomicInteger deliveredCount = new AtomicInteger();
+		AtomicInteger uncaughtCount = new AtomicInteger();
+		AsyncEventListener<Integer> asyncListener = new AsyncEventListenerBuilder<Integer>()
+				.addListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						deliveredCount.incrementAndGet();
+						throw new IllegalStateException();
+					}
+				})
+				.setExceptionHandler(e -> { throw new IllegalArgumentException(); })
+				.setThreadFactory(runnable -> {
+					Thread thread = new Thread(runnable);
+					thread.setUncaughtExceptionHandler((t, e) -> uncaughtCount.incrementAndGet());
+					return thread;
+				})
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.addEventListener(asyncListener);
+		machine.start();
+		machine.evaluateInput(1);
+
+		asyncListener.shutdown();
+		assertWithMessage("The listener's thread should have ended")
+				.that(asyncListener.awaitTermination(10, TimeUnit.SECONDS))
+				.isTrue();
+		assertWithMessage("Events should still be delivered after the handler throws")
+				.that(deliveredCount.get())
+				.isEqualTo(2);
+		assertWithMessage("The handler's exceptions should be reported")
+				.that(uncaughtCount.get())
+				.isEqualTo(2);
+	}
+
+	@Test
+	public void testEventsDroppedAfterListenerError() throws InterruptedException {
+		AsyncEventListener<Integer> asyncListener = new AsyncEventListenerBuilder<Integer>()
+				.addListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						throw new AssertionError();
+					}
+				})
+				.setCapacity(2)
+				.setThreadFactory(runnable -> {
+					Thread thread = new Thread(runnable);
+					thread.setUncaughtExceptionHandler((t, e) -> { });
+					return thread;
+				})
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.addEventListener(asyncListener);
+		Thread evaluatingThread = new Thread(() -> {
+			machine.start();
+			for(int i = 0; i < 9; i++) {
+				machine.evaluateInput(1);
+			}
+		});
+		evaluatingThread.start();
+		evaluatingThread.join(TimeUnit.SECONDS.toMillis(10));
+
+		assertWithMessage("The machine shouldn't wait for room once the listener's thread has ended")
+				.that(evaluatingThread.isAlive())
+				.isFalse();
+		assertWithMessage("Events recorded after the listener's thread ended should have been dropped")
+				.that(asyncListener.getDroppedEventCount())
+				.isGreaterThan(0L);
+	}
+}
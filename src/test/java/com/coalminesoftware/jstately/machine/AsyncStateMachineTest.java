@@ -0,0 +1,283 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.coalminesoftware.jstately.test.InputCodecs.INTEGER_CODEC;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class AsyncStateMachineTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testEvaluateAsync() throws InterruptedException, ExecutionException, TimeoutException {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		List<Thread> transitionThreads = new ArrayList<>();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1)
+						.setTransitionListener(input -> transitionThreads.add(Thread.currentThread()))
+						.build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateA, 2).build())
+				.build();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.buildAsync(executor);
+			machine.start();
+
+			CompletableFuture<List<State<Integer>>> firstFuture = machine.evaluateAsync(1);
+			CompletableFuture<List<State<Integer>>> secondFuture = machine.evaluateAsync(2);
+			CompletableFuture<List<State<Integer>>> thirdFuture = machine.evaluateAsync(1);
+
+			assertWithMessage("The first input's future should have the states following its evaluation")
+					.that(firstFuture.get(5, TimeUnit.SECONDS))
+					.containsExactly(stateB);
+			assertWithMessage("The second input's future should have the states following its evaluation")
+					.that(secondFuture.get(5, TimeUnit.SECONDS))
+					.containsExactly(stateA);
+			assertWithMessage("The third input's future should have the states following its evaluation")
+					.that(thirdFuture.get(5, TimeUnit.SECONDS))
+					.containsExactly(stateB);
+			assertWithMessage("Inputs should be evaluated on the executor's thread")
+					.that(transitionThreads.contains(Thread.currentThread()))
+					.isFalse();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testEvaluateAsyncWithFailingInput() throws InterruptedException, ExecutionException, TimeoutException {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1, 2).build())
+				.build();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.addEventListener(new StateMachineEventListener<Integer>() {
+						@Override
+						public void beforeEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+							if(input == 1) {
+								throw new IllegalArgumentException();
+							}
+						}
+					})
+					.buildAsync(executor);
+			machine.start();
+
+			CompletableFuture<List<State<Integer>>> failingFuture = machine.evaluateAsync(1);
+			CompletableFuture<List<State<Integer>>> laterFuture = machine.evaluateAsync(2);
+
+			assertWithMessage("Inputs following a failed input should still be evaluated")
+					.that(laterFuture.get(5, TimeUnit.SECONDS))
+					.containsExactly(stateB);
+			assertWithMessage("The failed input's future should have completed exceptionally")
+					.that(failingFuture.isCompletedExceptionally())
+					.isTrue();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testEvaluateAsyncWithFailingJournal() throws IOException {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true).build())
+				.build();
+
+		// Appending to a closed journal fails.
+		InputJournal<Integer> journal = InputJournal.open(temporaryFolder.newFolder("journal").toPath(), INTEGER_CODEC);
+		journal.close();
+
+		AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.setJournal(journal)
+				.buildAsync(Runnable::run);
+		machine.start();
+
+		assertWithMessage("The input's future should have completed exceptionally")
+				.that(machine.evaluateAsync(1).isCompletedExceptionally())
+				.isTrue();
+		assertWithMessage("Later inputs should still be evaluated")
+				.that(machine.evaluateAsync(2).isCompletedExceptionally())
+				.isTrue();
+	}
+
+	@Test
+	public void testEvaluateAsyncWithFailingJournalForce() throws IOException {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		State<Integer> stateC = new StateBuilder<Integer>().setDescription("C").build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateC, 2).build())
+				.build();
+
+		// The first input is written, but forcing it fails, so it may still be replayed.
+		try(InputJournal<Integer> journal = spy(InputJournal.open(temporaryFolder.newFolder("journal").toPath(), INTEGER_CODEC))) {
+			doThrow(new IOException("Unable to force")).doCallRealMethod().when(journal).sync(anyLong());
+
+			AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.setJournal(journal)
+					.buildAsync(Runnable::run);
+			machine.start();
+			StateSnapshotCodec<Integer> snapshotCodec = new StateSnapshotCodec<>(graph);
+			byte[] snapshot = snapshotCodec.snapshot(machine);
+
+			assertWithMessage("The input's future should have completed exceptionally")
+					.that(machine.evaluateAsync(1).isCompletedExceptionally())
+					.isTrue();
+			List<State<Integer>> states = machine.evaluateAsync(2).join();
+			assertWithMessage("The written input should be evaluated before later inputs")
+					.that(states)
+					.containsExactly(stateC);
+
+			StateMachine<Integer, Integer> replayedMachine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+			new JournalReplayer<Integer, Integer>(graph, false).replay(replayedMachine, snapshot, journal, 0);
+			assertWithMessage("The replayed machine should be in the machine's states")
+					.that(replayedMachine.getStates())
+					.isEqualTo(states);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTransitionWhileInputsPending() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.build();
+
+		// Hold the evaluation task, so the input stays pending.
+		List<Runnable> tasks = new ArrayList<>();
+		AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						if(state == stateB) {
+							machine.transition(stateA);
+						}
+					}
+				})
+				.buildAsync(tasks::add);
+		machine.start();
+		CompletableFuture<List<State<Integer>>> future = machine.evaluateAsync(1);
+
+		try {
+			machine.transition(stateB);
+		} finally {
+			tasks.get(0).run();
+			assertWithMessage("A listener should be able to set the state as an input is evaluated")
+					.that(future.join())
+					.containsExactly(stateA);
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testEvaluateInputsWithRejectingExecutor() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true).build())
+				.build();
+		AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.buildAsync(task -> { throw new RejectedExecutionException(); });
+		machine.start();
+
+		machine.evaluateInputs(Arrays.asList(1, 2));
+	}
+
+	@Test
+	public void testEvaluateAsyncWithRejectingExecutor() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true).build())
+				.build();
+		AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.buildAsync(task -> { throw new RejectedExecutionException(); });
+		machine.start();
+
+		assertWithMessage("The input's future should have completed exceptionally")
+				.that(machine.evaluateAsync(1).isCompletedExceptionally())
+				.isTrue();
+		assertWithMessage("Later inputs should be submitted again")
+				.that(machine.evaluateAsync(2).isCompletedExceptionally())
+				.isTrue();
+	}
+
+	@Test
+	public void testEvaluateAsyncFromMultipleThreads() throws InterruptedException, ExecutionException, TimeoutException {
+		int threadCount = 8;
+		int inputsPerThread = 10000;
+
+		State<Integer> state = new StateBuilder<Integer>().build();
+		AtomicInteger transitionCount = new AtomicInteger();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true)
+						.setTransitionListener(input -> transitionCount.incrementAndGet())
+						.build())
+				.build();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			AsyncStateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.buildAsync(executor);
+			machine.start();
+
+			List<CompletableFuture<List<State<Integer>>>> lastFutures = new ArrayList<>();
+			List<Thread> threads = new ArrayList<>();
+			for(int i = 0; i < threadCount; i++) {
+				CompletableFuture<List<State<Integer>>> lastFuture = new CompletableFuture<>();
+				lastFutures.add(lastFuture);
+				threads.add(new Thread(() -> {
+					for(int input = 1; input < inputsPerThread; input++) {
+						machine.evaluateAsync(input);
+					}
+					machine.evaluateAsync(inputsPerThread).whenComplete((states, e) -> lastFuture.complete(states));
+				}));
+			}
+			for(Thread thread : threads) {
+				thread.start();
+			}
+			for(Thread thread : threads) {
+				thread.join();
+			}
+
+			CompletableFuture.allOf(lastFutures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+			assertWithMessage("Every input queued by every thread should have been evaluated")
+					.that(transitionCount.get())
+					.isEqualTo(threadCount * inputsPerThread);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
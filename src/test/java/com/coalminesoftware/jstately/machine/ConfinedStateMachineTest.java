@@ -0,0 +1,91 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.collection.Holder;
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class ConfinedStateMachineTest {
+	@Test
+	public void testRecursiveEvaluation() {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		State<Integer> stateC = new StateBuilder<Integer>().setDescription("C").build();
+
+		Holder<StateMachine<Integer, Integer>> machineHolder = new Holder<>();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1)
+						.setTransitionListener(input -> machineHolder.getValue().evaluateInput(2))
+						.build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateC, 2).build())
+				.build();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.setThreadConfined(true)
+				.build();
+		machineHolder.setValue(machine);
+
+		machine.start();
+		machine.evaluateInput(1);
+
+		assertThat(machine).isInstanceOf(ConfinedStateMachine.class);
+		assertThat(machine.getState()).isEqualTo(stateC);
+	}
+
+	@Test
+	public void testEvaluateInputWhileInSubmachineState() {
+		State<Integer> innerStartState = new StateBuilder<Integer>().build();
+		State<Integer> innerFinalState = new FinalStateBuilder<>(2).build();
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerFinalState, 1).build())
+				.build();
+
+		State<Integer> outerStartState = new SubmachineStateBuilder<>(innerGraph).build();
+		State<Integer> outerEndState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> outerGraph = new StateGraphBuilder<>(outerStartState)
+				.addTransition(outerStartState, TransitionBuilder.forExpectedInputs(outerEndState, 2).build())
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(outerGraph)
+				.setThreadConfined(true)
+				.build();
+		machine.start();
+		machine.evaluateInput(1);
+
+		assertWithMessage("The submachine's result should have been evaluated by the outer machine")
+				.that(machine.getStates())
+				.containsExactly(outerEndState);
+	}
+
+	@Test
+	public void testEvaluateInputFromOtherThreadWithOwnerThreadChecked() throws InterruptedException {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(new StateGraphBuilder<>(state).build())
+				.setThreadConfined(true)
+				.setOwnerThreadChecked(true)
+				.build();
+		machine.start();
+
+		Holder<RuntimeException> exceptionHolder = new Holder<>();
+		Thread thread = new Thread(() -> {
+			try {
+				machine.evaluateInput(1);
+			} catch(RuntimeException e) {
+				exceptionHolder.setValue(e);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertWithMessage("Using the machine from a thread other than its owner should fail")
+				.that(exceptionHolder.getValue())
+				.isInstanceOf(IllegalStateException.class);
+	}
+}
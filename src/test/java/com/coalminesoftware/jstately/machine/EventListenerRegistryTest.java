@@ -0,0 +1,84 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class EventListenerRegistryTest {
+	@Test
+	public void testListenersOnlyHeldForOverriddenCallbacks() {
+		StateMachineEventListener<Integer> enteringListener = new StateMachineEventListener<Integer>() {
+			@Override
+			public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {}
+		};
+		StateMachineEventListener<Integer> inertListener = new StateMachineEventListener<Integer>() {};
+
+		EventListenerRegistry<Integer> registry = new EventListenerRegistry<>(Collections.singletonList(inertListener), true);
+		registry.add(enteringListener);
+
+		assertWithMessage("Only the overriding listener should be notified after a state is entered")
+				.that(Arrays.asList(registry.getAfterStateEnteredListeners()))
+				.containsExactly(enteringListener);
+		assertWithMessage("No listener overrides the callback, so none should be notified")
+				.that(Arrays.asList(registry.getBeforeStateEnteredListeners()))
+				.isEmpty();
+		assertWithMessage("Every listener should be registered, in order")
+				.that(registry.getListeners())
+				.containsExactly(inertListener, enteringListener).inOrder();
+
+		registry.remove(enteringListener);
+		assertWithMessage("A removed listener should no longer be notified")
+				.that(Arrays.asList(registry.getAfterStateEnteredListeners()))
+				.isEmpty();
+	}
+
+	@Test
+	public void testListenerRemovedDuringCallback() {
+		State<Integer> startState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(startState)
+				.addSelfTransition(TransitionBuilder.forExpectedInputs(startState, 1).build())
+				.build();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+
+		AtomicInteger notificationCount = new AtomicInteger();
+		List<StateMachineEventListener<Integer>> listeners = new ArrayList<>();
+		for(int i = 0; i < 2; i++) {
+			listeners.add(new StateMachineEventListener<Integer>() {
+				@Override
+				@SuppressWarnings("unchecked")
+				public void afterTransition(Transition<Integer> transition, Integer input, StateMachine<?, Integer> machine) {
+					notificationCount.incrementAndGet();
+					((StateMachine<Integer, Integer>) machine).removeEventListener(this);
+				}
+			});
+		}
+		listeners.forEach(machine::addEventListener);
+
+		machine.evaluateInput(1);
+		machine.evaluateInput(1);
+
+		assertWithMessage("Each listener should have been notified once, despite removing itself")
+				.that(notificationCount.get())
+				.isEqualTo(2);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testUnmodifiableRegistry() {
+		new EventListenerRegistry<Integer>(Collections.emptyList(), false)
+				.add(new StateMachineEventListener<Integer>() {});
+	}
+}
@@ -0,0 +1,218 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.CompositeStateBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class FlyweightStateMachineTest {
+	private final List<String> events = new ArrayList<>();
+
+	@Test
+	public void testEvaluateInputMatchesStateMachine() {
+		StateGraph<Integer> graph = createGraph();
+		List<Integer> inputs = Arrays.asList(0, 1, 5, 10, 10, 2, 1, 10, 3);
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+		List<List<State<Integer>>> expectedStates = new ArrayList<>();
+		for(Integer input : inputs) {
+			machine.evaluateInput(input);
+			expectedStates.add(machine.getStates());
+		}
+		List<String> expectedEvents = new ArrayList<>(events);
+		events.clear();
+
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(graph);
+		CompactMachine<Integer> compactMachine = flyweight.start();
+		for(int i = 0; i < inputs.size(); i++) {
+			flyweight.evaluateInput(compactMachine, inputs.get(i));
+			assertWithMessage("Unexpected states after evaluating input " + i)
+					.that(flyweight.getStates(compactMachine))
+					.isEqualTo(expectedStates.get(i));
+		}
+
+		assertWithMessage("Compact machines should notify the same listeners, in the same order, as a machine")
+				.that(events)
+				.isEqualTo(expectedEvents);
+		assertWithMessage("Unexpected state")
+				.that(flyweight.getState(compactMachine))
+				.isEqualTo(machine.getState());
+	}
+
+	@Test
+	public void testMachinesAreIndependent() {
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(createGraph());
+		CompactMachine<Integer> firstMachine = flyweight.start();
+		CompactMachine<Integer> secondMachine = flyweight.start();
+
+		assertWithMessage("A valid transition should have been found")
+				.that(flyweight.evaluateInput(firstMachine, 1))
+				.isTrue();
+		assertWithMessage("No valid transition should have been found")
+				.that(flyweight.evaluateInput(secondMachine, 0))
+				.isFalse();
+
+		assertWithMessage("Machines should have their own states")
+				.that(flyweight.getState(firstMachine))
+				.isNotEqualTo(flyweight.getState(secondMachine));
+	}
+
+	@Test
+	public void testBroadcastInputMatchesEvaluateInput() {
+		StateGraph<Integer> graph = createGraph();
+		List<Integer> inputs = Arrays.asList(1, 10, 10, 3);
+
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(graph);
+		CompactMachine<Integer> firstMachine = flyweight.start();
+		CompactMachine<Integer> secondMachine = flyweight.start();
+		for(Integer input : inputs) {
+			flyweight.evaluateInput(firstMachine, input);
+			flyweight.evaluateInput(secondMachine, input);
+		}
+		List<String> expectedEvents = new ArrayList<>(events);
+		events.clear();
+
+		CompactMachine<Integer> firstBroadcastMachine = flyweight.start();
+		CompactMachine<Integer> secondBroadcastMachine = flyweight.start();
+		List<CompactMachine<Integer>> broadcastMachines = Arrays.asList(firstBroadcastMachine, secondBroadcastMachine);
+		for(Integer input : inputs) {
+			assertWithMessage("Both machines should have followed a transition for input " + input)
+					.that(flyweight.broadcastInput(broadcastMachines, input))
+					.isEqualTo(2);
+		}
+
+		assertWithMessage("Broadcasting should notify the same listeners, in the same order, as evaluating each machine")
+				.that(events)
+				.isEqualTo(expectedEvents);
+		assertWithMessage("Unexpected states")
+				.that(flyweight.getStates(secondBroadcastMachine))
+				.isEqualTo(flyweight.getStates(secondMachine));
+	}
+
+	@Test
+	public void testBroadcastInputWithImpureTransition() {
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.addTransition(stateB, new TransitionBuilder<Integer>(stateA, input -> true).build())
+				.build();
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(graph);
+		CompactMachine<Integer> firstMachine = flyweight.start();
+		CompactMachine<Integer> secondMachine = flyweight.start();
+		flyweight.evaluateInput(secondMachine, 1);
+
+		try {
+			flyweight.broadcastInput(Arrays.asList(firstMachine, secondMachine), 1);
+			throw new AssertionError("Broadcasting to a machine in a state with impure transitions should fail");
+		} catch(IllegalStateException expected) {
+			// Expected.
+		}
+		assertWithMessage("No machine should have moved")
+				.that(flyweight.getState(firstMachine))
+				.isEqualTo(stateA);
+	}
+
+	@Test
+	public void testBroadcastInputSkipsMachineMovedByListener() {
+		List<CompactMachine<Integer>> machines = new ArrayList<>();
+		List<FlyweightStateMachine<Integer>> flyweights = new ArrayList<>();
+		State<Integer> stateA = new StateBuilder<Integer>().build();
+		State<Integer> stateB = new StateBuilder<Integer>()
+				.setEntranceListener(() -> flyweights.get(0).evaluateInput(machines.get(1), 2))
+				.build();
+		State<Integer> stateC = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, 1).build())
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateC, 2).build())
+				.addTransition(stateC, new TransitionBuilder<Integer>(stateA, input -> true).build())
+				.build();
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(graph);
+		flyweights.add(flyweight);
+		machines.add(flyweight.start());
+		machines.add(flyweight.start());
+
+		assertWithMessage("Only the first machine should have followed a transition")
+				.that(flyweight.broadcastInput(machines, 1))
+				.isEqualTo(1);
+		assertWithMessage("The first machine should have followed the broadcast input")
+				.that(flyweight.getState(machines.get(0)))
+				.isEqualTo(stateB);
+		assertWithMessage("The machine moved by the listener should not have evaluated the broadcast input")
+				.that(flyweight.getState(machines.get(1)))
+				.isEqualTo(stateC);
+	}
+
+	@Test(expected = IllegalStateException.class, timeout = 5000)
+	@SuppressWarnings("unchecked")
+	public void testSubmachinesNestedEndlessly() {
+		// A submachine state whose graph starts in the submachine state itself
+		SubmachineState<Integer> submachineState = mock(SubmachineState.class);
+		doReturn(new StateGraphBuilder<>(submachineState).build()).when(submachineState).getStateGraph();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(submachineState).build();
+
+		new FlyweightStateMachine<>(graph).start();
+	}
+
+	/**
+	 * Creates a graph with composite states and a submachine state whose listeners all record
+	 * their events. Input 1 leads into the submachine state, whose machine finishes on input 10.
+	 */
+	private StateGraph<Integer> createGraph() {
+		State<Integer> innerStartState = recordingState("inner start");
+		State<Integer> innerState = recordingState("inner");
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 10).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(
+						new FinalStateBuilder<>(20).setDescription("inner final").build(), 10).build())
+				.build();
+
+		State<Integer> startState = recordingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph)
+				.setDescription("submachine")
+				.setEntranceListener(() -> events.add("enter submachine"))
+				.setExitListener(() -> events.add("exit submachine"))
+				.build();
+		State<Integer> endState = recordingState("end");
+
+		new CompositeStateBuilder<Integer>()
+				.addState(startState)
+				.addState(submachineState)
+				.setEntranceListener(() -> events.add("enter composite"))
+				.setExitListener(() -> events.add("exit composite"))
+				.addTransition(TransitionBuilder.forExpectedInputs(endState, 3).build())
+				.build();
+
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1)
+						.setTransitionListener(input -> events.add("transition " + input))
+						.build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 2, 20)
+						.setTransitionListener(input -> events.add("transition " + input))
+						.build())
+				.build();
+	}
+
+	private State<Integer> recordingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(() -> events.add("enter " + description))
+				.setExitListener(() -> events.add("exit " + description))
+				.build();
+	}
+}
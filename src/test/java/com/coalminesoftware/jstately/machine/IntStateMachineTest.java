@@ -0,0 +1,73 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.collection.Holder;
+import com.coalminesoftware.jstately.graph.IntStateGraph;
+import com.coalminesoftware.jstately.graph.IntStateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.IntTransitionBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class IntStateMachineTest {
+	@Test
+	public void testEvaluateInputWithCharacters() {
+		// A tokenizer that records each run of digits as it ends.
+		List<String> numbers = new ArrayList<>();
+		StringBuilder currentNumber = new StringBuilder();
+
+		State<Integer> otherState = new StateBuilder<Integer>().setDescription("Other").build();
+		State<Integer> numberState = new StateBuilder<Integer>().setDescription("Number").build();
+
+		IntStateGraph graph = new IntStateGraphBuilder(otherState)
+				.addTransition(otherState, IntTransitionBuilder.forRange(numberState, '0', '9')
+						.setTransitionListener(input -> currentNumber.append((char) input))
+						.build())
+				.addSelfTransition(IntTransitionBuilder.forRange(numberState, '0', '9')
+						.setTransitionListener(input -> currentNumber.append((char) input))
+						.build())
+				.addTransition(numberState, new IntTransitionBuilder(otherState, input -> true)
+						.setTransitionListener(input -> {
+							numbers.add(currentNumber.toString());
+							currentNumber.setLength(0);
+						})
+						.build())
+				.build();
+
+		IntStateMachine<CharSequence> machine = IntStateMachineBuilder.forCharSequences(graph).build();
+		machine.start();
+
+		machine.evaluateInput("a12 b3 ");
+		machine.evaluateInput("45.");
+
+		assertThat(numbers).containsExactly("12", "3", "45").inOrder();
+	}
+
+	@Test
+	public void testRecursiveEvaluation() {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		State<Integer> stateC = new StateBuilder<Integer>().setDescription("C").build();
+
+		Holder<IntStateMachine<CharSequence>> machineHolder = new Holder<>();
+		IntStateGraph graph = new IntStateGraphBuilder(stateA)
+				.addTransition(stateA, IntTransitionBuilder.forExpectedInputs(stateB, 'a')
+						.setTransitionListener(input -> machineHolder.getValue().evaluateInput("c"))
+						.build())
+				.addTransition(stateB, IntTransitionBuilder.forExpectedInputs(stateA, 'b').build())
+				.addTransition(stateB, IntTransitionBuilder.forExpectedInputs(stateC, 'c').build())
+				.build();
+		IntStateMachine<CharSequence> machine = IntStateMachineBuilder.forCharSequences(graph).build();
+		machineHolder.setValue(machine);
+
+		machine.start();
+		machine.evaluateInput("ab");
+
+		// The queued "c" is only evaluated once "ab" has been, leaving B and then A before reaching C.
+		assertThat(machine.getState()).isEqualTo(stateA);
+	}
+}
@@ -0,0 +1,132 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.coalminesoftware.jstately.test.InputCodecs.INTEGER_CODEC;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class JournalReplayerTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final List<String> events = new ArrayList<>();
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = temporaryFolder.newFolder("journal").toPath();
+	}
+
+	@Test
+	public void testReplayWithListenersSuppressed() throws IOException {
+		StateGraph<Integer> graph = createGraph();
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.setJournal(journal)
+					.build();
+			machine.start();
+			machine.evaluateInput(1);
+
+			StateSnapshotCodec<Integer> snapshotCodec = new StateSnapshotCodec<>(graph);
+			byte[] snapshot = snapshotCodec.snapshot(machine);
+			long snapshotSequence = journal.getNextSequence();
+			machine.evaluateInputs(Arrays.asList(10, 10, 1, 10));
+
+			events.clear();
+			StateMachine<Integer, Integer> replayedMachine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+			long nextSequence = new JournalReplayer<Integer, Integer>(graph, false)
+					.replay(replayedMachine, snapshot, journal, snapshotSequence);
+
+			assertWithMessage("Replaying with listeners suppressed should not notify listeners")
+					.that(events)
+					.isEmpty();
+			assertWithMessage("The replayed machine should be in the original machine's states")
+					.that(replayedMachine.getStates())
+					.isEqualTo(machine.getStates());
+			assertWithMessage("Replay should end at the end of the journal")
+					.that(nextSequence)
+					.isEqualTo(journal.getNextSequence());
+		}
+	}
+
+	@Test
+	public void testReplayWithListenersNotified() throws IOException {
+		StateGraph<Integer> graph = createGraph();
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+					.setJournal(journal)
+					.build();
+			machine.start();
+			machine.evaluateInputs(Arrays.asList(1, 10, 10, 1));
+			List<String> expectedEvents = new ArrayList<>(events);
+
+			events.clear();
+			StateMachine<Integer, Integer> replayedMachine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+			new JournalReplayer<Integer, Integer>(graph, true).replay(replayedMachine, null, journal, 0);
+
+			assertWithMessage("Replaying with listeners notified should notify them as the original machine did")
+					.that(events)
+					.isEqualTo(expectedEvents);
+			assertWithMessage("The replayed machine should be in the original machine's states")
+					.that(replayedMachine.getStates())
+					.isEqualTo(machine.getStates());
+			assertWithMessage("Replayed inputs should not be journaled again")
+					.that(journal.getNextSequence())
+					.isEqualTo(4L);
+		}
+	}
+
+	/**
+	 * Creates a graph whose start state leads, on input 1, into a submachine state. The submachine
+	 * moves to its inner state on input 10, and finishes on a second 10.
+	 */
+	private StateGraph<Integer> createGraph() {
+		State<Integer> innerStartState = recordingState("inner start");
+		State<Integer> innerState = recordingState("inner");
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 10).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(20).build(), 10).build())
+				.build();
+
+		State<Integer> startState = recordingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph)
+				.setEntranceListener(() -> events.add("enter submachine"))
+				.setExitListener(() -> events.add("exit submachine"))
+				.build();
+
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1)
+						.setTransitionListener(input -> events.add("transition " + input))
+						.build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 20).build())
+				.build();
+	}
+
+	private State<Integer> recordingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(() -> events.add("enter " + description))
+				.setExitListener(() -> events.add("exit " + description))
+				.build();
+	}
+}
@@ -0,0 +1,133 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.Transition;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class MachineArrayTest {
+	@Test
+	public void testEvaluateInputs() {
+		int machineCount = 10000;
+
+		State<Integer> evenState = new StateBuilder<Integer>().setDescription("Even").build();
+		State<Integer> oddState = new StateBuilder<Integer>().setDescription("Odd").build();
+		Transition<Integer> toOddTransition = TransitionBuilder.forExpectedInputs(oddState, 1).build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(evenState)
+				.addTransition(evenState, toOddTransition)
+				.addTransition(oddState, TransitionBuilder.forExpectedInputs(evenState, 1).build())
+				.build();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			MachineArray<Integer> machines = new MachineArray<>(graph, machineCount, pool);
+
+			List<Integer> stepTransitionCounts = new ArrayList<>();
+			machines.addListener(step -> {
+				stepTransitionCounts.add(step.getTransitionCount());
+				assertWithMessage("Machine 1 should have followed a transition")
+						.that(step.getTransition(1))
+						.isEqualTo(toOddTransition);
+				assertWithMessage("Machine 0 should not have followed a transition")
+						.that(step.getTransition(0))
+						.isNull();
+				assertWithMessage("Machine 1's previous state should be available")
+						.that(step.getPreviousStateId(1))
+						.isEqualTo(0);
+			});
+
+			// Machines with odd indexes receive a 1, so they should end up in the odd state.
+			Integer[] inputs = new Integer[machineCount];
+			for(int machine = 0; machine < machineCount; machine++) {
+				inputs[machine] = machine % 2;
+			}
+
+			assertWithMessage("Half of the machines should have followed a transition")
+					.that(machines.evaluateInputs(inputs))
+					.isEqualTo(machineCount / 2);
+			assertWithMessage("Listeners should be notified once per column")
+					.that(stepTransitionCounts)
+					.containsExactly(machineCount / 2);
+
+			for(int machine = 0; machine < machineCount; machine++) {
+				assertWithMessage("Unexpected state for machine " + machine)
+						.that(machines.getState(machine))
+						.isEqualTo(machine % 2 == 0 ? evenState : oddState);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testBroadcastInput() {
+		State<Integer> stateA = new StateBuilder<Integer>().setDescription("A").build();
+		State<Integer> stateB = new StateBuilder<Integer>().setDescription("B").build();
+		AtomicInteger predicateTestCount = new AtomicInteger();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, new TransitionBuilder<Integer>(stateB, input -> predicateTestCount.incrementAndGet() > 0 && input > 0)
+						.setPure(true)
+						.build())
+				.addTransition(stateB, TransitionBuilder.forExpectedInputs(stateA, 2).build())
+				.build();
+		MachineArray<Integer> machines = new MachineArray<>(graph, 100);
+
+		assertWithMessage("Every machine should have followed a transition")
+				.that(machines.broadcastInput(1))
+				.isEqualTo(100);
+		assertWithMessage("The predicate should be tested once for every machine in the same state")
+				.that(predicateTestCount.get())
+				.isEqualTo(1);
+
+		machines.evaluateInputs(Collections.nCopies(100, 2).toArray(new Integer[0]));
+		List<Integer> stepTransitionCounts = new ArrayList<>();
+		machines.addListener(step -> stepTransitionCounts.add(step.getTransitionCount()));
+
+		assertWithMessage("No machine should have followed a transition")
+				.that(machines.broadcastInput(0))
+				.isEqualTo(0);
+		assertWithMessage("Listeners should be notified of broadcasts")
+				.that(stepTransitionCounts)
+				.containsExactly(0);
+		assertWithMessage("Machines should not have moved")
+				.that(machines.getState(99))
+				.isEqualTo(stateA);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBroadcastInputWithImpureTransition() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true).build())
+				.build();
+
+		new MachineArray<>(graph, 2).broadcastInput(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEvaluateInputsWithWrongInputCount() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		new MachineArray<>(new StateGraphBuilder<>(state).build(), 2).evaluateInputs(new Integer[] { 1 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubmachineStatesAreRejected() {
+		State<Integer> innerState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerState).build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(new SubmachineStateBuilder<>(innerGraph).build()).build();
+
+		new MachineArray<>(graph, 1);
+	}
+}
@@ -0,0 +1,140 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class MachineCacheTest {
+	private final AtomicInteger entranceCount = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong();
+	private final InMemoryHibernationStore<Integer> store = new InMemoryHibernationStore<>();
+	private State<Integer> startState;
+	private State<Integer> middleState;
+	private State<Integer> endState;
+	private StateGraph<Integer> graph;
+
+	@Before
+	public void setUp() {
+		startState = countingState("start");
+		middleState = countingState("middle");
+		endState = countingState("end");
+		graph = new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(middleState, 1).build())
+				.addTransition(middleState, TransitionBuilder.forExpectedInputs(endState, 2).build())
+				.build();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedMachineHibernated() {
+		MachineCache<Integer, Integer, Integer> cache = createCache(2, Long.MAX_VALUE, Collections.emptyList());
+
+		cache.evaluateInput(1, 1);
+		cache.evaluateInput(2, 1);
+		cache.evaluateInput(1, 0);
+		cache.evaluateInput(3, 1);
+
+		assertWithMessage("The least recently used machine should have been hibernated")
+				.that(cache.isLive(2))
+				.isFalse();
+		assertWithMessage("Unexpected live machine count")
+				.that(cache.getLiveMachineCount())
+				.isEqualTo(2);
+		assertWithMessage("Unexpected hibernated machine count")
+				.that(store.size())
+				.isEqualTo(1);
+
+		entranceCount.set(0);
+		cache.evaluateInput(2, 2);
+
+		assertWithMessage("A restored machine should continue from its hibernated state")
+				.that(cache.getStates(2))
+				.containsExactly(endState);
+		assertWithMessage("Only the restored machine's transition should notify entrance listeners")
+				.that(entranceCount.get())
+				.isEqualTo(1);
+		assertWithMessage("Restoring a machine should have hibernated the least recently used one")
+				.that(cache.isLive(1))
+				.isFalse();
+	}
+
+	@Test
+	public void testIdleMachinesHibernated() {
+		MachineCache<Integer, Integer, Integer> cache = createCache(Integer.MAX_VALUE, TimeUnit.SECONDS.toNanos(10), Collections.emptyList());
+
+		cache.evaluateInput(1, 1);
+		clock.set(TimeUnit.SECONDS.toNanos(5));
+		cache.evaluateInput(2, 1);
+		clock.set(TimeUnit.SECONDS.toNanos(11));
+		cache.hibernateIdleMachines();
+
+		assertWithMessage("The machine idle for longer than the timeout should have been hibernated")
+				.that(cache.isLive(1))
+				.isFalse();
+		assertWithMessage("The recently used machine should still be live")
+				.that(cache.isLive(2))
+				.isTrue();
+		assertWithMessage("A hibernated machine's states should be available")
+				.that(cache.getStates(1))
+				.containsExactly(middleState);
+		assertWithMessage("Unexpected states of a key without a machine")
+				.that(cache.getStates(3))
+				.isNull();
+	}
+
+	@Test
+	public void testNoHibernationWhileEvaluating() {
+		MachineCache<Integer, Integer, Integer>[] caches = createCacheArray();
+		StateMachineEventListener<Integer> listener = new StateMachineEventListener<Integer>() {
+			@Override
+			public void beforeEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+				if(input == 1) {
+					// Evaluating an input for another key would otherwise hibernate this machine mid-evaluation.
+					caches[0].evaluateInput(2, 0);
+				}
+			}
+		};
+		caches[0] = createCache(1, Long.MAX_VALUE, Collections.singletonList(listener));
+
+		caches[0].evaluateInput(1, 1);
+
+		assertWithMessage("The least recently used machine should have been hibernated once evaluation finished")
+				.that(caches[0].isLive(1))
+				.isFalse();
+		assertWithMessage("The machine should have followed the transition despite the nested evaluation")
+				.that(caches[0].getStates(1))
+				.containsExactly(middleState);
+	}
+
+	@SuppressWarnings("unchecked")
+	private MachineCache<Integer, Integer, Integer>[] createCacheArray() {
+		return new MachineCache[1];
+	}
+
+	private MachineCache<Integer, Integer, Integer> createCache(int maximumLiveMachineCount,
+			long idleTimeoutNanos,
+			List<StateMachineEventListener<Integer>> listeners) {
+		return new MachineCache<>(key -> graph, new PassthroughInputAdapter<>(), listeners,
+				maximumLiveMachineCount, idleTimeoutNanos, store, clock::get);
+	}
+
+	private State<Integer> countingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(entranceCount::incrementAndGet)
+				.build();
+	}
+}
@@ -0,0 +1,239 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+
+public class MachineRuntimeTest {
+	@Test
+	public void testSubmitPreservesPerKeyOrder() throws InterruptedException {
+		int keyCount = 100;
+		int threadCount = 4;
+		int inputsPerThread = 1000;
+
+		// Each thread submits increasing inputs to every key, so a key's machine should only ever
+		// see a thread's inputs in increasing order.
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true).build())
+				.build();
+
+		Map<StateMachine<?, Integer>, int[]> lastInputsByMachine = new ConcurrentHashMap<>();
+		AtomicInteger outOfOrderCount = new AtomicInteger();
+		AtomicInteger evaluatedCount = new AtomicInteger();
+		MachineRuntime<Integer, Integer, Integer> runtime = MachineRuntimeBuilder.<Integer, Integer>forMatchingInputTypes(key -> graph)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void beforeEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+						int[] lastInputs = lastInputsByMachine.computeIfAbsent(machine, m -> new int[threadCount]);
+						int thread = input / inputsPerThread;
+						if(input % inputsPerThread < lastInputs[thread]) {
+							outOfOrderCount.incrementAndGet();
+						}
+						lastInputs[thread] = input % inputsPerThread;
+						evaluatedCount.incrementAndGet();
+					}
+				})
+				.setWorkerCount(4)
+				.build();
+
+		List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i < threadCount; i++) {
+			int thread = i;
+			threads.add(new Thread(() -> {
+				for(int input = 0; input < inputsPerThread; input++) {
+					for(int key = 0; key < keyCount; key++) {
+						runtime.submit(key, thread * inputsPerThread + input);
+					}
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		runtime.shutdown();
+		assertWithMessage("Runtime should have terminated")
+				.that(runtime.awaitTermination(30, TimeUnit.SECONDS))
+				.isTrue();
+		assertWithMessage("A machine should have been created for each key")
+				.that(runtime.getMachineCount())
+				.isEqualTo(keyCount);
+		assertWithMessage("Every input should have been evaluated")
+				.that(evaluatedCount.get())
+				.isEqualTo(keyCount * threadCount * inputsPerThread);
+		assertWithMessage("Each key's inputs should have been evaluated in the order they were submitted")
+				.that(outOfOrderCount.get())
+				.isEqualTo(0);
+	}
+
+	@Test
+	public void testGraphSelectionAndExceptionHandling() throws InterruptedException {
+		State<String> stateA = new StateBuilder<String>().setDescription("A").build();
+		State<String> stateB = new StateBuilder<String>().setDescription("B").build();
+		StateGraph<String> failingGraph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, new TransitionBuilder<String>(stateB, input -> { throw new IllegalStateException(input); }).build())
+				.build();
+		StateGraph<String> graph = new StateGraphBuilder<>(stateA)
+				.addTransition(stateA, TransitionBuilder.forExpectedInputs(stateB, "b").build())
+				.build();
+
+		List<String> failedKeys = new ArrayList<>();
+		List<State<String>> enteredStates = new ArrayList<>();
+		MachineRuntime<String, String, String> runtime = MachineRuntimeBuilder.<String, String>forMatchingInputTypes(key -> key.startsWith("failing") ? failingGraph : graph)
+				.addEventListener(new StateMachineEventListener<String>() {
+					@Override
+					public void afterStateEntered(State<String> state, StateMachine<?, String> machine) {
+						synchronized(enteredStates) {
+							enteredStates.add(state);
+						}
+					}
+				})
+				.setExceptionHandler((key, e) -> {
+					synchronized(failedKeys) {
+						failedKeys.add(key);
+					}
+				})
+				.build();
+
+		runtime.submit("failing", "b");
+		runtime.submit("working", "b");
+		runtime.shutdown();
+		assertWithMessage("Runtime should have terminated")
+				.that(runtime.awaitTermination(30, TimeUnit.SECONDS))
+				.isTrue();
+
+		assertWithMessage("Exceptions should be passed to the handler")
+				.that(failedKeys)
+				.containsExactly("failing");
+		assertWithMessage("Machines should have been started and evaluated inputs")
+				.that(enteredStates)
+				.containsExactly(stateA, stateA, stateB);
+	}
+
+	@Test
+	public void testThrowingExceptionHandler() throws InterruptedException {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> {
+					if(input == 1) {
+						throw new IllegalArgumentException();
+					}
+					return true;
+				}).build())
+				.build();
+
+		AtomicInteger evaluatedCount = new AtomicInteger();
+		MachineRuntime<Integer, Integer, Integer> runtime = MachineRuntimeBuilder.<Integer, Integer>forMatchingInputTypes(key -> graph)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+						evaluatedCount.incrementAndGet();
+					}
+				})
+				.setExceptionHandler((key, e) -> { throw e; })
+				.setWorkerCount(1)
+				.build();
+
+		runtime.submit(0, 1);
+		runtime.submit(0, 2);
+		runtime.submit(0, 3);
+		runtime.shutdown();
+		assertWithMessage("Runtime should have terminated")
+				.that(runtime.awaitTermination(30, TimeUnit.SECONDS))
+				.isTrue();
+		assertWithMessage("Inputs following the failed one should have been evaluated")
+				.that(evaluatedCount.get())
+				.isEqualTo(2);
+	}
+
+	@Test
+	public void testSubmitAfterShutdown() {
+		State<Integer> state = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state).build();
+		MachineRuntime<Integer, Integer, Integer> runtime = MachineRuntimeBuilder.<Integer, Integer>forMatchingInputTypes(key -> graph)
+				.build();
+		runtime.shutdown();
+
+		// Each rejected input should leave the key's machine idle, so the next is rejected too.
+		for(int attempt = 0; attempt < 2; attempt++) {
+			try {
+				runtime.submit(0, attempt);
+				fail("Submitting after shutdown should fail");
+			} catch(RejectedExecutionException expected) { }
+		}
+	}
+
+	@Test
+	public void testVirtualThreaded() throws InterruptedException {
+		int keyCount = 1000;
+
+		// Every machine blocks when it starts, which would take far longer than the timeout if each
+		// machine occupied a platform thread while blocked.
+		State<Integer> state = new StateBuilder<Integer>()
+				.setEntranceListener(() -> {
+					try {
+						Thread.sleep(1000);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				})
+				.build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state).build();
+
+		AtomicInteger evaluatedCount = new AtomicInteger();
+		MachineRuntimeBuilder<Integer, Integer, Integer> builder = MachineRuntimeBuilder.<Integer, Integer>forMatchingInputTypes(key -> graph)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+						evaluatedCount.incrementAndGet();
+					}
+				})
+				.setVirtualThreaded(true);
+
+		// Set by the build when the tests run against the multi-release JAR on Java 21.
+		if(Boolean.getBoolean("jstately.virtualThreadsExpected")) {
+			assertWithMessage("Virtual threads should be available")
+					.that(MachineExecutors.areVirtualThreadsAvailable())
+					.isTrue();
+		}
+		if(!MachineExecutors.areVirtualThreadsAvailable()) {
+			try {
+				builder.build();
+				fail("Building a virtual-threaded runtime should fail without virtual threads");
+			} catch(UnsupportedOperationException expected) { }
+			return;
+		}
+
+		MachineRuntime<Integer, Integer, Integer> runtime = builder.build();
+		for(int key = 0; key < keyCount; key++) {
+			runtime.submit(key, key);
+		}
+
+		runtime.shutdown();
+		assertWithMessage("Runtime should have terminated")
+				.that(runtime.awaitTermination(30, TimeUnit.SECONDS))
+				.isTrue();
+		assertWithMessage("Every input should have been evaluated")
+				.that(evaluatedCount.get())
+				.isEqualTo(keyCount);
+	}
+}
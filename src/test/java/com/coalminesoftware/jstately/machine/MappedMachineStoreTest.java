@@ -0,0 +1,188 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+
+public class MappedMachineStoreTest {
+	private final List<String> events = new ArrayList<>();
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("machines", ".store");
+		Files.delete(file);
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testStatesSurviveReopening() throws IOException {
+		StateGraph<Integer> graph = createGraph();
+
+		try(MappedMachineStore<Integer> store = MappedMachineStore.open(file, graph, 1000, 2)) {
+			assertWithMessage("Machines should start out unstarted")
+					.that(store.hasStarted(999))
+					.isFalse();
+
+			for(int machine = 0; machine < store.size(); machine++) {
+				store.start(machine);
+				if(machine % 2 == 1) {
+					store.evaluateInput(machine, 1);
+				}
+			}
+			assertWithMessage("A valid transition should have been found")
+					.that(store.evaluateInput(999, 10))
+					.isTrue();
+		}
+
+		events.clear();
+		try(MappedMachineStore<Integer> store = MappedMachineStore.open(file, createGraph(), 1000, 2)) {
+			assertWithMessage("Reopening the store should not notify listeners")
+					.that(events)
+					.isEmpty();
+			assertWithMessage("Unexpected states for an even machine")
+					.that(describe(store.getStates(998)))
+					.containsExactly("start");
+			assertWithMessage("Unexpected states for an odd machine")
+					.that(describe(store.getStates(997)))
+					.containsExactly("submachine", "inner start")
+					.inOrder();
+			assertWithMessage("Unexpected states for the last machine")
+					.that(describe(store.getStates(999)))
+					.containsExactly("submachine", "inner")
+					.inOrder();
+
+			store.evaluateInput(999, 10);
+			assertWithMessage("Evaluating inputs should continue from the stored states")
+					.that(events)
+					.containsExactly("exit inner", "exit submachine", "enter start")
+					.inOrder();
+			assertWithMessage("Unexpected state after finishing the submachine")
+					.that(store.getState(999).getDescription())
+					.isEqualTo("start");
+		}
+	}
+
+	@Test
+	public void testSubmachinesNestedBeyondMaxDepth() throws IOException {
+		try(MappedMachineStore<Integer> store = MappedMachineStore.open(file, createGraph(), 1, 1)) {
+			store.start(0);
+			events.clear();
+			try {
+				store.evaluateInput(0, 1);
+				fail("Nesting submachines beyond the max depth should fail");
+			} catch(IllegalStateException expected) { }
+
+			assertWithMessage("The transition should not have been followed")
+					.that(events)
+					.isEmpty();
+			assertWithMessage("The machine's states should not have changed")
+					.that(describe(store.getStates(0)))
+					.containsExactly("start");
+		}
+	}
+
+	@Test
+	public void testListenerUsesStoreWhileMachineEvaluated() throws IOException {
+		List<MappedMachineStore<Integer>> stores = new ArrayList<>();
+		State<Integer> innerStartState = new StateBuilder<Integer>()
+				.setDescription("inner start")
+				.setEntranceListener(() -> stores.get(0).start(1))
+				.build();
+		State<Integer> startState = recordingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(new StateGraphBuilder<>(innerStartState).build())
+				.setDescription("submachine")
+				.build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1).build())
+				.build();
+
+		try(MappedMachineStore<Integer> store = MappedMachineStore.open(file, graph, 2, 2)) {
+			stores.add(store);
+			store.start(0);
+			store.evaluateInput(0, 1);
+
+			assertWithMessage("The evaluated machine's states should not be overwritten by the listener's call")
+					.that(describe(store.getStates(0)))
+					.containsExactly("submachine", "inner start");
+			assertWithMessage("The listener's call should have started the other machine")
+					.that(describe(store.getStates(1)))
+					.containsExactly("start");
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReopenWithDifferentMachineCount() throws IOException {
+		MappedMachineStore.open(file, createGraph(), 10, 1).close();
+		MappedMachineStore.open(file, createGraph(), 20, 1).close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEvaluateInputOnUnstartedMachine() throws IOException {
+		try(MappedMachineStore<Integer> store = MappedMachineStore.open(file, createGraph(), 1, 1)) {
+			store.evaluateInput(0, 1);
+		}
+	}
+
+	/**
+	 * Creates a graph whose start state leads, on input 1, into a submachine state. The submachine
+	 * moves to its inner state on input 10, and finishes on a second 10.
+	 */
+	private StateGraph<Integer> createGraph() {
+		State<Integer> innerStartState = recordingState("inner start");
+		State<Integer> innerState = recordingState("inner");
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 10).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(20).build(), 10).build())
+				.build();
+
+		State<Integer> startState = recordingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph)
+				.setDescription("submachine")
+				.setExitListener(() -> events.add("exit submachine"))
+				.build();
+
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1).build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 20).build())
+				.build();
+	}
+
+	private State<Integer> recordingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(() -> events.add("enter " + description))
+				.setExitListener(() -> events.add("exit " + description))
+				.build();
+	}
+
+	private static List<String> describe(List<State<Integer>> states) {
+		List<String> descriptions = new ArrayList<>();
+		for(State<Integer> state : states) {
+			descriptions.add(state.getDescription());
+		}
+
+		return descriptions;
+	}
+}
@@ -0,0 +1,158 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import com.coalminesoftware.jstately.machine.input.PassthroughInputAdapter;
+import com.coalminesoftware.jstately.machine.journal.InputJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.coalminesoftware.jstately.test.InputCodecs.LONG_CODEC;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class PartitionedReplayerTest {
+	private static final int KEY_COUNT = 500;
+	private static final int[] INPUT_CYCLE = { 1, 10, 10, 1, 10, 3 };
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final AtomicInteger listenerCallCount = new AtomicInteger();
+
+	@Test
+	public void testReplayMatchesSequentialEvaluation() throws IOException {
+		StateGraph<Integer> graph = createGraph();
+		StateSnapshotCodec<Integer> snapshotCodec = new StateSnapshotCodec<>(graph);
+
+		// Evaluate each key's inputs sequentially, snapshotting half of the keys partway through.
+		Map<Integer, StateMachine<Integer, Integer>> machines = new HashMap<>();
+		Map<Integer, byte[]> snapshots = new HashMap<>();
+		List<Map.Entry<Integer, Integer>> inputsAfterSnapshots = new ArrayList<>();
+		for(int key = 0; key < KEY_COUNT; key++) {
+			StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+			machine.start();
+			machines.put(key, machine);
+		}
+		for(int step = 0; step < 40; step++) {
+			for(int key = 0; key < KEY_COUNT; key++) {
+				if(step == 10 && key % 2 == 0) {
+					snapshots.put(key, snapshotCodec.snapshot(machines.get(key)));
+				}
+
+				int input = INPUT_CYCLE[(step + key) % INPUT_CYCLE.length];
+				machines.get(key).evaluateInput(input);
+				if(step >= 10 || key % 2 == 1) {
+					inputsAfterSnapshots.add(new SimpleEntry<>(key, input));
+				}
+			}
+		}
+
+		listenerCallCount.set(0);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			PartitionedReplayer<Integer, Integer, Integer> replayer =
+					new PartitionedReplayer<>(key -> graph, new PassthroughInputAdapter<>(), pool);
+			Map<Integer, byte[]> recoveredSnapshots = replayer.replay(snapshots, inputsAfterSnapshots);
+
+			assertWithMessage("Replaying should not notify listeners")
+					.that(listenerCallCount.get())
+					.isEqualTo(0);
+			assertWithMessage("Every key should have been recovered")
+					.that(recoveredSnapshots.size())
+					.isEqualTo(KEY_COUNT);
+			for(int key = 0; key < KEY_COUNT; key++) {
+				StateMachine<Integer, Integer> recoveredMachine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+				snapshotCodec.restore(recoveredMachine, recoveredSnapshots.get(key));
+
+				assertWithMessage("Unexpected states for key " + key)
+						.that(recoveredMachine.getStates())
+						.isEqualTo(machines.get(key).getStates());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testReplayJournal() throws IOException {
+		StateGraph<Integer> graph = createGraph();
+
+		// Journal entries hold the key in the upper half and the input in the lower half.
+		try(InputJournal<Long> journal = InputJournal.open(temporaryFolder.newFolder("journal").toPath(), LONG_CODEC)) {
+			List<Long> entries = new ArrayList<>();
+			for(long key = 0; key < 3; key++) {
+				entries.add(key << 32 | 1);
+			}
+			entries.add(2L << 32 | 10);
+			journal.appendAll(entries);
+
+			PartitionedReplayer<Long, Integer, Integer> replayer =
+					new PartitionedReplayer<>(key -> graph, new PassthroughInputAdapter<>());
+			Map<Long, byte[]> recoveredSnapshots = replayer.replay(new HashMap<>(), journal, 0,
+					entry -> entry >>> 32,
+					entry -> (int) (long) entry);
+
+			StateSnapshotCodec<Integer> snapshotCodec = new StateSnapshotCodec<>(graph);
+			StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+			snapshotCodec.restore(machine, recoveredSnapshots.get(2L));
+			assertWithMessage("The last key's machine should have followed both of its inputs")
+					.that(machine.getStates().get(1).getDescription())
+					.isEqualTo("inner");
+
+			snapshotCodec.restore(machine, recoveredSnapshots.get(0L));
+			assertWithMessage("The first key's machine should have followed only its input")
+					.that(machine.getStates().get(1).getDescription())
+					.isEqualTo("inner start");
+		}
+	}
+
+	/**
+	 * Creates a graph whose start state leads, on input 1, into a submachine state. The submachine
+	 * moves to its inner state on input 10, and finishes on a second 10. Input 3 leads from the
+	 * submachine state back to the start state.
+	 */
+	private StateGraph<Integer> createGraph() {
+		State<Integer> innerStartState = countingState("inner start");
+		State<Integer> innerState = countingState("inner");
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 10).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(20).build(), 10).build())
+				.build();
+
+		State<Integer> startState = countingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph)
+				.setEntranceListener(listenerCallCount::incrementAndGet)
+				.build();
+
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1)
+						.setTransitionListener(input -> listenerCallCount.incrementAndGet())
+						.build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 3, 20).build())
+				.build();
+	}
+
+	private State<Integer> countingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(listenerCallCount::incrementAndGet)
+				.setExitListener(listenerCallCount::incrementAndGet)
+				.build();
+	}
+}
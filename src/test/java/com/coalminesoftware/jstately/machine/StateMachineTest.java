@@ -2,17 +2,25 @@ package com.coalminesoftware.jstately.machine;
 
 import com.coalminesoftware.jstately.graph.StateGraph;
 import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
 import com.coalminesoftware.jstately.graph.state.State;
 import com.coalminesoftware.jstately.graph.state.StateBuilder;
 import com.coalminesoftware.jstately.graph.state.SubmachineState;
 import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
 import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
 import com.coalminesoftware.jstately.machine.input.InputAdapter;
+import com.coalminesoftware.jstately.machine.listener.StateMachineEventListener;
 import com.coalminesoftware.jstately.test.Event;
 import com.coalminesoftware.jstately.test.EventType;
 import com.coalminesoftware.jstately.test.TestStateMachineEventListener;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.coalminesoftware.jstately.test.MockingUtils.mockObjectTransition;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
@@ -194,6 +202,226 @@ public class StateMachineTest {
 				.isEqualTo(stateA);
 	}
 
+	@Test
+	public void testEvaluateInputFromMultipleThreads() throws InterruptedException {
+		int threadCount = 8;
+		int inputsPerThread = 10000;
+
+		State<Integer> state = new StateBuilder<Integer>().build();
+		AtomicInteger transitionCount = new AtomicInteger();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(state)
+				.addSelfTransition(new TransitionBuilder<Integer>(state, input -> true)
+						.setTransitionListener(input -> transitionCount.incrementAndGet())
+						.build())
+				.build();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+
+		List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i < threadCount; i++) {
+			threads.add(new Thread(() -> {
+				for(int input = 0; input < inputsPerThread; input++) {
+					machine.evaluateInput(input);
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertWithMessage("Every input queued by every thread should have been evaluated")
+				.that(transitionCount.get())
+				.isEqualTo(threadCount * inputsPerThread);
+	}
+
+	@Test
+	public void testEvaluateInputs() {
+		State<Integer> evenState = new StateBuilder<Integer>().setDescription("Even").build();
+		State<Integer> oddState = new StateBuilder<Integer>().setDescription("Odd").build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(evenState)
+				.addTransition(evenState, TransitionBuilder.forExpectedInputs(oddState, 1).build())
+				.addTransition(oddState, TransitionBuilder.forExpectedInputs(evenState, 1).build())
+				.build();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+
+		EvaluationSummary<Integer> summary = machine.evaluateInputs(Arrays.asList(1, 2, 1, 1, 3));
+		assertWithMessage("The batch should have been evaluated by the call")
+				.that(summary.wasDeferred())
+				.isFalse();
+		assertWithMessage("Unexpected transition count")
+				.that(summary.getTransitionCount())
+				.isEqualTo(3L);
+		assertWithMessage("Unexpected count of inputs without a valid transition")
+				.that(summary.getNoValidTransitionCount())
+				.isEqualTo(2L);
+		assertWithMessage("Unexpected final states")
+				.that(summary.getStates())
+				.containsExactly(oddState);
+
+		summary = machine.evaluateInputs(new Integer[] { 1 });
+		assertWithMessage("Counts should only cover the inputs evaluated by the call")
+				.that(summary.getTransitionCount())
+				.isEqualTo(1L);
+		assertWithMessage("Unexpected final state")
+				.that(summary.getState())
+				.isEqualTo(evenState);
+
+		summary = machine.evaluateInputs(Collections.emptyList());
+		assertWithMessage("An empty batch should be summarized by the call")
+				.that(summary.wasDeferred())
+				.isFalse();
+		assertWithMessage("An empty batch should follow no transitions")
+				.that(summary.getTransitionCount())
+				.isEqualTo(0L);
+		assertWithMessage("An empty batch should leave the machine's states as they were")
+				.that(summary.getStates())
+				.containsExactly(evenState);
+	}
+
+	@Test
+	public void testSubmachineReusedWhenReentered() {
+		assertSubmachineReused(StateMachineBuilder.forMatchingInputTypes(createRetryingGraph()));
+		assertSubmachineReused(StateMachineBuilder.forMatchingInputTypes(createRetryingGraph()).setThreadConfined(true));
+	}
+
+	@Test
+	public void testEvaluateInputDelegatedThroughNestedLevels() {
+		// Each level's start state is a submachine state of the level within it, and the innermost
+		// level finishes on 1, so one input should finish every level in turn.
+		State<Integer> innermostStartState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(innermostStartState)
+				.addTransition(innermostStartState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(2).build(), 1).build())
+				.build();
+		for(int level = 0; level < 3; level++) {
+			SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(graph).build();
+			graph = new StateGraphBuilder<>(submachineState)
+					.addTransition(submachineState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(2).build(), 2).build())
+					.build();
+		}
+		SubmachineState<Integer> outerSubmachineState = new SubmachineStateBuilder<>(graph).build();
+		State<Integer> doneState = new StateBuilder<Integer>().build();
+		graph = new StateGraphBuilder<>(outerSubmachineState)
+				.addTransition(outerSubmachineState, TransitionBuilder.forExpectedInputs(doneState, 2).build())
+				.build();
+
+		List<Integer> evaluationDepths = new ArrayList<>();
+		List<Integer> evaluatedInputs = new ArrayList<>();
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void beforeEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+						evaluationDepths.add(machine.getStates().size());
+					}
+
+					@Override
+					public void afterEvaluatingInput(Integer input, StateMachine<?, Integer> machine) {
+						evaluatedInputs.add(input);
+					}
+				})
+				.build();
+		machine.start();
+
+		machine.evaluateInput(1);
+
+		assertWithMessage("Each level should have been notified of the input, outermost first")
+				.that(evaluationDepths)
+				.containsExactly(5, 4, 3, 2, 1).inOrder();
+		assertWithMessage("Each level should have evaluated its submachine's result, innermost first")
+				.that(evaluatedInputs)
+				.containsExactly(1, 2, 2, 2, 2).inOrder();
+		assertWithMessage("The results should have finished every level")
+				.that(machine.getStates())
+				.containsExactly(doneState);
+	}
+
+	@Test
+	public void testInputEvaluatedOnSubmachineDuringDelegation() {
+		assertInputEvaluatedOnSubmachineDuringDelegation(false);
+		assertInputEvaluatedOnSubmachineDuringDelegation(true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void assertInputEvaluatedOnSubmachineDuringDelegation(boolean threadConfined) {
+		// Entering the inner machine's second state evaluates another input on it, which should be
+		// queued and finish the inner machine before the outer machine checks for a result.
+		State<Integer> innerStartState = new StateBuilder<Integer>().build();
+		State<Integer> innerState = new StateBuilder<Integer>().setDescription("Inner").build();
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 1).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(3).build(), 2).build())
+				.build();
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph).build();
+		State<Integer> doneState = new StateBuilder<Integer>().build();
+		StateGraph<Integer> graph = new StateGraphBuilder<>(submachineState)
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(doneState, 3).build())
+				.build();
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph)
+				.setThreadConfined(threadConfined)
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						if(state == innerState) {
+							((StateMachine<Integer, Integer>) machine).evaluateInput(2);
+						}
+					}
+				})
+				.build();
+		machine.start();
+
+		machine.evaluateInput(1);
+
+		assertWithMessage("The input queued on the submachine should have finished it")
+				.that(machine.getStates())
+				.containsExactly(doneState);
+	}
+
+	private static void assertSubmachineReused(StateMachineBuilder<Integer, Integer> builder) {
+		List<StateMachine<?, Integer>> innerStartMachines = new ArrayList<>();
+		StateMachine<Integer, Integer> machine = builder
+				.addEventListener(new StateMachineEventListener<Integer>() {
+					@Override
+					public void afterStateEntered(State<Integer> state, StateMachine<?, Integer> machine) {
+						if("Inner start".equals(state.getDescription())) {
+							innerStartMachines.add(machine);
+						}
+					}
+				})
+				.build();
+		machine.start();
+
+		machine.evaluateInputs(new Integer[] { 1, 2, 1 });
+
+		assertWithMessage("The submachine state should have been entered twice")
+				.that(innerStartMachines.size())
+				.isEqualTo(2);
+		assertWithMessage("The submachine should have been reused when its state was reentered")
+				.that(innerStartMachines.get(1))
+				.isSameInstanceAs(innerStartMachines.get(0));
+		assertWithMessage("The reused submachine should have restarted")
+				.that(machine.getStates().get(1).getDescription())
+				.isEqualTo("Inner start");
+	}
+
+	/** Creates a graph that enters a submachine state on 1, which finishes on 2 and returns to the start state. */
+	private static StateGraph<Integer> createRetryingGraph() {
+		State<Integer> innerStartState = new StateBuilder<Integer>().setDescription("Inner start").build();
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(3).build(), 2).build())
+				.build();
+
+		State<Integer> startState = new StateBuilder<Integer>().build();
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph).build();
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1).build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 3).build())
+				.build();
+	}
+
 	private static StateMachine<Object, Object> createStateMachineWithMockDependencies() {
 		return new StateMachineBuilder<Object,Object>(mock(StateGraph.class), mock(InputAdapter.class)).build();
 	}
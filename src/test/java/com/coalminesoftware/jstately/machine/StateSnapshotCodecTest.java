@@ -0,0 +1,146 @@
+package com.coalminesoftware.jstately.machine;
+
+import com.coalminesoftware.jstately.graph.StateGraph;
+import com.coalminesoftware.jstately.graph.StateGraphBuilder;
+import com.coalminesoftware.jstately.graph.state.FinalStateBuilder;
+import com.coalminesoftware.jstately.graph.state.State;
+import com.coalminesoftware.jstately.graph.state.StateBuilder;
+import com.coalminesoftware.jstately.graph.state.SubmachineState;
+import com.coalminesoftware.jstately.graph.state.SubmachineStateBuilder;
+import com.coalminesoftware.jstately.graph.transition.TransitionBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class StateSnapshotCodecTest {
+	private final List<String> events = new ArrayList<>();
+
+	@Test
+	public void testRestore() {
+		StateGraph<Integer> graph = createGraph();
+		StateSnapshotCodec<Integer> codec = new StateSnapshotCodec<>(graph);
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+		machine.evaluateInput(1);
+		machine.evaluateInput(10);
+		byte[] snapshot = codec.snapshot(machine);
+
+		assertWithMessage("A machine nested two deep in a small graph should take three bytes")
+				.that(snapshot.length)
+				.isEqualTo(3);
+
+		events.clear();
+		StateMachine<Integer, Integer> restoredMachine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		codec.restore(restoredMachine, snapshot);
+
+		assertWithMessage("Restoring a machine should not notify listeners")
+				.that(events)
+				.isEmpty();
+		assertWithMessage("The restored machine should have the snapshot's states")
+				.that(restoredMachine.getStates())
+				.isEqualTo(machine.getStates());
+
+		// Evaluating further inputs should behave as it would have on the original machine.
+		machine.evaluateInput(10);
+		List<String> expectedEvents = new ArrayList<>(events);
+		events.clear();
+		restoredMachine.evaluateInput(10);
+
+		assertWithMessage("The restored machine should follow the same transitions")
+				.that(events)
+				.isEqualTo(expectedEvents);
+		assertWithMessage("The restored machine should end in the same states")
+				.that(restoredMachine.getStates())
+				.isEqualTo(machine.getStates());
+	}
+
+	@Test
+	public void testRestoreUnstartedMachine() {
+		StateGraph<Integer> graph = createGraph();
+		StateSnapshotCodec<Integer> codec = new StateSnapshotCodec<>(graph);
+
+		StateMachine<Integer, Integer> machine = StateMachineBuilder.forMatchingInputTypes(graph).build();
+		machine.start();
+		codec.restore(machine, codec.snapshot(StateMachineBuilder.forMatchingInputTypes(graph).build()));
+
+		assertWithMessage("Restoring a snapshot of an unstarted machine should leave the machine unstarted")
+				.that(machine.hasStarted())
+				.isFalse();
+	}
+
+	@Test
+	public void testRestoreCompactMachine() {
+		StateGraph<Integer> graph = createGraph();
+		StateSnapshotCodec<Integer> codec = new StateSnapshotCodec<>(graph);
+		FlyweightStateMachine<Integer> flyweight = new FlyweightStateMachine<>(codec.getGraph());
+
+		CompactMachine<Integer> machine = flyweight.start();
+		flyweight.evaluateInput(machine, 1);
+		events.clear();
+		CompactMachine<Integer> restoredMachine = codec.restore(codec.snapshot(machine));
+
+		assertWithMessage("Restoring a machine should not notify listeners")
+				.that(events)
+				.isEmpty();
+		assertWithMessage("The restored machine should have the snapshot's states")
+				.that(flyweight.getStates(restoredMachine))
+				.isEqualTo(flyweight.getStates(machine));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRestoreWithUnknownStateId() {
+		StateGraph<Integer> graph = createGraph();
+		new StateSnapshotCodec<>(graph).restore(StateMachineBuilder.forMatchingInputTypes(graph).build(), new byte[] { 1, 100 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRestoreWithMissingSubmachineState() {
+		StateGraph<Integer> graph = createGraph();
+		StateSnapshotCodec<Integer> codec = new StateSnapshotCodec<>(graph);
+		int submachineStateId = codec.getGraph().getStateId(codec.getGraph().getStartState()) + 1;
+
+		codec.restore(StateMachineBuilder.forMatchingInputTypes(graph).build(), new byte[] { 1, (byte) submachineStateId });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRestoreWithTruncatedSnapshot() {
+		StateGraph<Integer> graph = createGraph();
+		new StateSnapshotCodec<>(graph).restore(StateMachineBuilder.forMatchingInputTypes(graph).build(), new byte[] { 2, 1 });
+	}
+
+	/**
+	 * Creates a graph whose start state leads, on input 1, into a submachine state. The submachine
+	 * moves to its inner state on input 10, and finishes on a second 10.
+	 */
+	private StateGraph<Integer> createGraph() {
+		State<Integer> innerStartState = recordingState("inner start");
+		State<Integer> innerState = recordingState("inner");
+		StateGraph<Integer> innerGraph = new StateGraphBuilder<>(innerStartState)
+				.addTransition(innerStartState, TransitionBuilder.forExpectedInputs(innerState, 10).build())
+				.addTransition(innerState, TransitionBuilder.forExpectedInputs(new FinalStateBuilder<>(20).build(), 10).build())
+				.build();
+
+		State<Integer> startState = recordingState("start");
+		SubmachineState<Integer> submachineState = new SubmachineStateBuilder<>(innerGraph)
+				.setEntranceListener(() -> events.add("enter submachine"))
+				.setExitListener(() -> events.add("exit submachine"))
+				.build();
+
+		return new StateGraphBuilder<>(startState)
+				.addTransition(startState, TransitionBuilder.forExpectedInputs(submachineState, 1).build())
+				.addTransition(submachineState, TransitionBuilder.forExpectedInputs(startState, 20).build())
+				.build();
+	}
+
+	private State<Integer> recordingState(String description) {
+		return new StateBuilder<Integer>()
+				.setDescription(description)
+				.setEntranceListener(() -> events.add("enter " + description))
+				.setExitListener(() -> events.add("exit " + description))
+				.build();
+	}
+}
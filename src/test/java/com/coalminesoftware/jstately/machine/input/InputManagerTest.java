@@ -6,8 +6,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class InputManagerTest {
@@ -43,6 +45,44 @@ public class InputManagerTest {
 		assertThat(manager.hasNext(), is(false));
 	}
 
+	@Test
+	public void testNextAndHasNextWithPushInputAdapter() {
+		InputManager<List<Integer>, Integer> manager = new InputManager<>(new TestPushInputAdapter());
+
+		assertThat(manager.hasNext(), is(false));
+
+		manager.queueInput(Arrays.asList(1, 2));
+		manager.queueInput(Collections.<Integer>emptyList());
+		manager.queueInput(Arrays.asList(3, null));
+
+		assertThat(manager.hasNext(), is(true));
+		assertThat(manager.next(), is(1));
+		assertThat(manager.hasNext(), is(true));
+		assertThat(manager.next(), is(2));
+		assertThat(manager.hasNext(), is(true));
+		assertThat(manager.next(), is(3));
+		assertThat(manager.hasNext(), is(true));
+		assertThat(manager.next(), is(nullValue()));
+
+		assertThat(manager.hasNext(), is(false));
+	}
+
+	@Test
+	public void testPushInputAdapterIteration() {
+		Iterator<Integer> iterator = new TestPushInputAdapter().adaptInput(Arrays.asList(1, 2));
+
+		assertThat(iterator.next(), is(1));
+		assertThat(iterator.next(), is(2));
+		assertThat(iterator.hasNext(), is(false));
+	}
+
+	private class TestPushInputAdapter implements PushInputAdapter<List<Integer>,Integer> {
+		@Override
+		public void adaptInput(List<Integer> integers, Consumer<? super Integer> transitionInputSink) {
+			integers.forEach(transitionInputSink);
+		}
+	}
+
 	private class TestInputAdapter implements InputAdapter<List<Integer>,Integer> {
 		@Override
 		public Iterator<Integer> adaptInput(List<Integer> integers) {
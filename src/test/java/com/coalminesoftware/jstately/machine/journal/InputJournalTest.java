@@ -0,0 +1,196 @@
+package com.coalminesoftware.jstately.machine.journal;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.coalminesoftware.jstately.test.InputCodecs.INTEGER_CODEC;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class InputJournalTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = temporaryFolder.newFolder("journal").toPath();
+	}
+
+	@Test
+	public void testAppendAndRead() throws IOException {
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			assertWithMessage("The first input should have the first sequence number")
+					.that(journal.append(1))
+					.isEqualTo(0L);
+			assertWithMessage("Inputs appended together should have consecutive sequence numbers")
+					.that(journal.appendAll(Arrays.asList(2, null, 4)))
+					.isEqualTo(1L);
+
+			assertWithMessage("Every input should be read, in order")
+					.that(read(journal, 0))
+					.containsExactly(1, 2, null, 4)
+					.inOrder();
+			assertWithMessage("Inputs should be read from the given sequence number")
+					.that(read(journal, 2))
+					.containsExactly(null, 4)
+					.inOrder();
+		}
+	}
+
+	@Test
+	public void testReopenAcrossSegments() throws IOException {
+		// Each record takes 12 bytes, so each segment holds a few of them.
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC, 40)) {
+			for(int input = 0; input < 20; input++) {
+				journal.append(input);
+			}
+		}
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC, 40)) {
+			assertWithMessage("Reopening the journal should continue its sequence numbers")
+					.that(journal.append(20))
+					.isEqualTo(20L);
+			assertWithMessage("Inputs should be read across segments")
+					.that(read(journal, 9))
+					.containsExactly(9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20)
+					.inOrder();
+
+			journal.deleteBefore(10);
+			assertWithMessage("Inputs in segments that weren't deleted should still be read")
+					.that(read(journal, 10))
+					.containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20)
+					.inOrder();
+		}
+	}
+
+	@Test
+	public void testWriteThenSync() throws IOException {
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			assertWithMessage("Written inputs should have consecutive sequence numbers")
+					.that(journal.write(Arrays.asList(1, 2)))
+					.isEqualTo(0L);
+
+			// Syncing again, as after a failed force, shouldn't append the inputs again.
+			journal.sync(2);
+			journal.sync(2);
+			assertWithMessage("Each input should be read once")
+					.that(read(journal, 0))
+					.containsExactly(1, 2)
+					.inOrder();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSyncBeyondAppendedInputs() throws IOException {
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			journal.append(1);
+			journal.sync(2);
+		}
+	}
+
+	@Test
+	public void testPartiallyWrittenRecordIsDiscarded() throws IOException {
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			journal.appendAll(Arrays.asList(1, 2));
+		}
+
+		// Simulate a crash partway through writing a record, followed by zeroes.
+		Path segment = Files.list(directory).findFirst().get();
+		try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 2);
+			channel.write(java.nio.ByteBuffer.allocate(16), channel.size());
+		}
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			assertWithMessage("The partially written record should be discarded")
+					.that(journal.append(3))
+					.isEqualTo(1L);
+			assertWithMessage("Complete records should be kept")
+					.that(read(journal, 0))
+					.containsExactly(1, 3)
+					.inOrder();
+		}
+	}
+
+	@Test
+	public void testRecordLongerThanSegmentIsDiscarded() throws IOException {
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			journal.appendAll(Arrays.asList(1, 2));
+		}
+
+		// Simulate a corrupt header claiming a record far longer than the segment.
+		Path segment = Files.list(directory).findFirst().get();
+		try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(8);
+			header.putInt(Integer.MAX_VALUE - 8).putInt(0);
+			header.flip();
+			channel.write(header, channel.size());
+		}
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC)) {
+			assertWithMessage("The corrupt record should be discarded")
+					.that(journal.append(3))
+					.isEqualTo(2L);
+			assertWithMessage("Complete records should be kept")
+					.that(read(journal, 0))
+					.containsExactly(1, 2, 3)
+					.inOrder();
+		}
+	}
+
+	@Test
+	public void testConcurrentAppends() throws IOException, InterruptedException {
+		int threadCount = 8;
+		int inputsPerThread = 200;
+		Set<Long> sequences = ConcurrentHashMap.newKeySet();
+
+		try(InputJournal<Integer> journal = InputJournal.open(directory, INTEGER_CODEC, 1024)) {
+			List<Thread> threads = new ArrayList<>();
+			for(int i = 0; i < threadCount; i++) {
+				int thread = i;
+				threads.add(new Thread(() -> {
+					for(int input = 0; input < inputsPerThread; input++) {
+						try {
+							sequences.add(journal.append(thread * inputsPerThread + input));
+						} catch(IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				}));
+			}
+			for(Thread thread : threads) {
+				thread.start();
+			}
+			for(Thread thread : threads) {
+				thread.join();
+			}
+
+			assertWithMessage("Every input should have its own sequence number")
+					.that(sequences.size())
+					.isEqualTo(threadCount * inputsPerThread);
+			assertWithMessage("Every input should be read")
+					.that(read(journal, 0).size())
+					.isEqualTo(threadCount * inputsPerThread);
+		}
+	}
+
+	private static List<Integer> read(InputJournal<Integer> journal, long fromSequence) throws IOException {
+		List<Integer> inputs = new ArrayList<>();
+		journal.forEach(fromSequence, inputs::add);
+		return inputs;
+	}
+}
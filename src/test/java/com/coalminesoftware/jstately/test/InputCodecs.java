@@ -0,0 +1,35 @@
+package com.coalminesoftware.jstately.test;
+
+import com.coalminesoftware.jstately.machine.journal.InputCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public final class InputCodecs {
+	private InputCodecs() { }
+
+	public static final InputCodec<Integer> INTEGER_CODEC = new InputCodec<Integer>() {
+		@Override
+		public void encode(Integer input, DataOutput output) throws IOException {
+			output.writeInt(input);
+		}
+
+		@Override
+		public Integer decode(DataInput input) throws IOException {
+			return input.readInt();
+		}
+	};
+
+	public static final InputCodec<Long> LONG_CODEC = new InputCodec<Long>() {
+		@Override
+		public void encode(Long input, DataOutput output) throws IOException {
+			output.writeLong(input);
+		}
+
+		@Override
+		public Long decode(DataInput input) throws IOException {
+			return input.readLong();
+		}
+	};
+}